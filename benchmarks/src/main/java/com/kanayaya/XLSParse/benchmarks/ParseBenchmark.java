@@ -0,0 +1,226 @@
+package com.kanayaya.XLSParse.benchmarks;
+
+import com.kanayaya.XLSParse.InnerClassImplementation.XLSCell;
+import com.kanayaya.XLSParse.InnerClassImplementation.XLSTableParser;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.openjdk.jmh.annotations.*;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость fluent API по сравнению с ручным циклом на Apache POI.
+ * <p>Все варианты читают один и тот же файл потоково, так что разница между ними -- цена условий и наполнителей.
+ * Запуск части матрицы: {@code java -jar target/benchmarks.jar ParseBenchmark -p rows=10000 -p columns=4}</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class ParseBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    private int rows;
+    @Param({"4", "40"})
+    private int columns;
+
+    private Path path;
+    /**
+     * Последний созданный DTO. Запись в поле не даёт JIT выбросить создание и заполнение DTO
+     */
+    private Object last;
+    private XLSTableParser startRowSearch;
+    private XLSTableParser stopCondition;
+    private XLSTableParser sequentialColumns;
+    private XLSTableParser numberedColumns;
+    private XLSTableParser stringifiedColumns;
+    private XLSTableParser columnarColumns;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        path = Workbooks.get(rows, columns);
+
+        startRowSearch = XLSTableParser.fromSheet(Workbooks.SHEET)
+                .findRowWhereCell(0).stringValueContains(Workbooks.SUMMARY)
+                .noSkip()
+                .endIf(row -> true)
+                .getEntityFrom(() -> new Object[1])
+                .thenForColumn(0, (dto, cell) -> dto[0] = cell)
+                .thenPutInto(this::consume);
+
+        stopCondition = table()
+                .getEntityFrom(() -> new Object[1])
+                .thenForColumn(0, (dto, cell) -> dto[0] = cell)
+                .thenPutInto(this::consume);
+
+        XLSTableParser.EntityFillerSequential<Object[]> sequential = table()
+                .getEntityFrom(() -> new Object[columns])
+                .thenForNextColumn((dto, cell) -> dto[0] = value(cell));
+        for (int c = 1; c < columns; c++) {
+            int column = c;
+            sequential = sequential.thenForNextColumn((dto, cell) -> dto[column] = value(cell));
+        }
+        sequentialColumns = sequential.thenPutInto(this::consume);
+
+        XLSTableParser.EntityFillerNumberChooser<Object[]> numbered = table()
+                .getEntityFrom(() -> new Object[columns])
+                .thenForColumn(0, (dto, cell) -> dto[0] = value(cell));
+        for (int c = 1; c < columns; c++) {
+            int column = c;
+            numbered = numbered.thenForColumn(column, (dto, cell) -> dto[column] = value(cell));
+        }
+        numberedColumns = numbered.thenPutInto(this::consume);
+
+        XLSTableParser.EntityFillerNumberChooser<String[]> stringified = table()
+                .getEntityFrom(() -> new String[columns])
+                .thenForColumnStringified(0, (dto, s) -> dto[0] = s);
+        for (int c = 1; c < columns; c++) {
+            int column = c;
+            stringified = stringified.thenForColumnStringified(column, (dto, s) -> dto[column] = s);
+        }
+        stringifiedColumns = stringified.thenPutInto(this::consume);
+
+        XLSTableParser.ColumnCollector columnar = table().collectColumns().longColumn("column 0", 0);
+        for (int c = 1; c < columns; c++) {
+            columnar = c % 3 == 1 ? columnar.stringColumn("column " + c, c) : columnar.doubleColumn("column " + c, c);
+        }
+        columnarColumns = columnar.thenPutInto(this::consume);
+    }
+
+    /**
+     * Поиск начала таблицы: условие проверяется на каждом ряду листа, таблица из одного ряда в самом конце
+     */
+    @Benchmark
+    public Object startRowSearch() throws Exception {
+        return startRowSearch.parse(path);
+    }
+
+    /**
+     * Условие конца таблицы на каждом ряду данных при заполнении одного столбца
+     */
+    @Benchmark
+    public Object stopCondition() throws Exception {
+        return stopCondition.parse(path);
+    }
+
+    @Benchmark
+    public Object sequentialColumns() throws Exception {
+        return sequentialColumns.parse(path);
+    }
+
+    @Benchmark
+    public Object numberedColumns() throws Exception {
+        return numberedColumns.parse(path);
+    }
+
+    @Benchmark
+    public Object stringifiedColumns() throws Exception {
+        return stringifiedColumns.parse(path);
+    }
+
+    /**
+     * Те же столбцы, что и в {@link #numberedColumns()}, но в {@link com.kanayaya.XLSParse.InnerClassImplementation.ColumnarTable} без DTO на ряд
+     */
+    @Benchmark
+    public Object columnarColumns() throws Exception {
+        return columnarColumns.parse(path);
+    }
+
+    /**
+     * Базовая линия для {@link #stringifiedColumns()}: тот же результат ручным циклом на {@link XSSFSheetXMLHandler}
+     */
+    @Benchmark
+    public Object rawPoiStringified() throws Exception {
+        OPCPackage pkg = OPCPackage.open(path.toFile(), PackageAccess.READ);
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            XMLReader xml = XMLHelper.newXMLReader();
+            xml.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), new ReadOnlySharedStringsTable(pkg),
+                    new RawTable(), new DataFormatter(), false));
+            try (InputStream sheet = reader.getSheetsData().next()) {
+                xml.parse(new InputSource(sheet));
+            }
+        } finally {
+            pkg.revert();
+        }
+        return last;
+    }
+
+    private XLSTableParser.EndConditionLinker table() {
+        return XLSTableParser.fromSheet(Workbooks.SHEET)
+                .findRowWhereCell(0).stringValueEquals(Workbooks.TITLE)
+                .thenSkip(1)
+                .endIfCell(0).isNotNumeric();
+    }
+
+    private void consume(Object dto) {
+        last = dto;
+    }
+
+    private static Object value(XLSCell cell) {
+        switch (cell.getCellType()) {
+            case NUMERIC:
+                return cell.getNumericCellValue();
+            case STRING:
+                return cell.getStringCellValue();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Ряды от заголовка "title" (не включая его) до первого ряда с нечисловым первым столбцом
+     */
+    private final class RawTable implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private boolean started;
+        private boolean finished;
+        private boolean inTable;
+        private String[] dto;
+
+        @Override
+        public void startRow(int rowNum) {
+            inTable = started && !finished;
+            dto = inTable ? new String[columns] : null;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (inTable && !finished) consume(dto);
+        }
+
+        @Override
+        public void cell(String reference, String formattedValue, XSSFComment comment) {
+            int column = reference.charAt(1) >= 'A' ? (reference.charAt(0) - 'A' + 1) * 26 + reference.charAt(1) - 'A' : reference.charAt(0) - 'A';
+            if (column == 0 && !started) {
+                started = Workbooks.TITLE.equals(formattedValue);
+                return;
+            }
+            if (!inTable) return;
+            if (column == 0 && !isNumber(formattedValue)) {
+                finished = true;
+                return;
+            }
+            if (column < columns) dto[column] = formattedValue;
+        }
+
+        private boolean isNumber(String value) {
+            try {
+                Double.parseDouble(value);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.kanayaya.XLSParse.benchmarks;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Детерминированные книги для бенчмарков.
+ * <p>Лист "data": ряд 0 -- заголовок с "title" в первом столбце, ряды 1..rows -- данные, за ними ряд с "summary".
+ * Первый столбец -- номер ряда, остальные по кругу: число, строка из ограниченного словаря, число в процентном формате.
+ * Книги пишутся через {@link SXSSFWorkbook} и кэшируются в {@code target/benchmark-workbooks}</p>
+ */
+final class Workbooks {
+    static final String SHEET = "data";
+    static final String TITLE = "title";
+    static final String SUMMARY = "summary";
+    private static final Path DIRECTORY = Path.of("target", "benchmark-workbooks");
+
+    private Workbooks() {
+    }
+
+    /**
+     * @param rows Количество рядов данных
+     * @param columns Количество столбцов
+     * @return Путь к книге, созданной при первом запросе
+     */
+    static synchronized Path get(int rows, int columns) throws IOException {
+        Path path = DIRECTORY.resolve(String.format("rows-%d-columns-%d.xlsx", rows, columns));
+        if (Files.exists(path)) return path;
+        Files.createDirectories(DIRECTORY);
+        Path temp = Files.createTempFile(DIRECTORY, "workbook", ".tmp");
+        SXSSFWorkbook book = new SXSSFWorkbook(1000);
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            CellStyle percent = book.createCellStyle();
+            percent.setDataFormat(book.createDataFormat().getFormat("0.00%"));
+            Sheet sheet = book.createSheet(SHEET);
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue(TITLE);
+            for (int c = 1; c < columns; c++) header.createCell(c).setCellValue("column " + c);
+            for (int r = 1; r <= rows; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue(r);
+                for (int c = 1; c < columns; c++) {
+                    switch (c % 3) {
+                        case 0:
+                            row.createCell(c).setCellValue((r * 31L + c) % 100_000 / 10.0);
+                            break;
+                        case 1:
+                            row.createCell(c).setCellValue("value " + (r * 7 + c) % 5_000);
+                            break;
+                        default:
+                            Cell cell = row.createCell(c);
+                            cell.setCellValue((r + c) % 1_000 / 1_000.0);
+                            cell.setCellStyle(percent);
+                    }
+                }
+            }
+            sheet.createRow(rows + 1).createCell(0).setCellValue(SUMMARY);
+            book.write(out);
+        } finally {
+            book.close();
+            book.dispose();
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return path;
+    }
+}
@@ -0,0 +1,318 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import org.apache.poi.ss.usermodel.CellType;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.function.BiConsumer;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Генератор и план столбцов DTO, собранные по аннотациям {@link Column}.
+ * <p>Конструктор и сеттеры находятся один раз на класс и превращаются через {@link LambdaMetafactory}
+ * в обычные лямбды, так что заполнение ряда не использует отражение. Примитивные поля заполняются
+ * через {@link ObjDoubleConsumer}, {@link ObjIntConsumer} и {@link ObjLongConsumer} без упаковки.
+ * Поля без сеттера заполняются через {@link MethodHandle}</p>
+ * @param <T> Тип DTO
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+final class AnnotatedEntity<T> {
+    private static final ClassValue<AnnotatedEntity<?>> CACHE = new ClassValue<>() {
+        @Override
+        protected AnnotatedEntity<?> computeValue(Class<?> type) {
+            return bind(type);
+        }
+    };
+
+    private final Supplier<T> generator;
+    private final ColumnPlan.Builder<T> columns;
+
+    /**
+     * @param type Класс DTO
+     * @return Привязка класса, созданная при первом запросе
+     * @throws IllegalArgumentException Если у класса нет конструктора без параметров, нет полей с {@link Column}
+     * или тип поля не поддерживается
+     */
+    @SuppressWarnings("unchecked")
+    static <T> AnnotatedEntity<T> of(Class<T> type) {
+        return (AnnotatedEntity<T>) CACHE.get(type);
+    }
+
+    Supplier<T> getGenerator() {
+        return generator;
+    }
+
+    ColumnPlan.Builder<T> getColumns() {
+        return columns;
+    }
+
+    private static <T> AnnotatedEntity<T> bind(Class<T> type) {
+        Supplier<T> generator = constructor(lookup(type), type);
+        ColumnPlan.Builder<T> columns = ColumnPlan.builder();
+        int bound = 0;
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                Column column = field.getAnnotation(Column.class);
+                if (column == null) continue;
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers()))
+                    throw new IllegalArgumentException("Поле с @Column не может быть static или final: " + field);
+                boolean byIndex = column.index() != Integer.MIN_VALUE;
+                boolean byHeader = !column.header().isEmpty();
+                if (byIndex == byHeader)
+                    throw new IllegalArgumentException("В @Column нужно задать ровно одно из index и header: " + field);
+                if (byIndex && column.index() < CellCodes.LAST)
+                    throw new IllegalArgumentException("Неверный номер столбца " + column.index() + ": " + field);
+                ColumnPlan.CellFiller<T> filler = filler(type, field);
+                columns = byIndex ? columns.column(column.index(), filler) : columns.header(column.header(), column.matching(), filler);
+                bound++;
+            }
+        }
+        if (bound == 0)
+            throw new IllegalArgumentException("В классе " + type.getName() + " нет полей с @Column");
+        return new AnnotatedEntity<>(generator, columns);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Supplier<T> constructor(MethodHandles.Lookup lookup, Class<T> type) {
+        try {
+            MethodHandle constructor = lookup.findConstructor(type, MethodType.methodType(void.class));
+            CallSite site = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class), constructor, MethodType.methodType(type));
+            return (Supplier<T>) site.getTarget().invoke();
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("У класса DTO " + type.getName() + " нет доступного конструктора без параметров", e);
+        } catch (Throwable e) {
+            throw new IllegalArgumentException("Не удалось создать генератор для класса DTO " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Приватный доступ выдаётся только к членам самого класса, поэтому поля и сеттеры суперклассов
+     * привязываются через поиск, созданный для объявившего их класса
+     */
+    private static MethodHandles.Lookup lookup(Class<?> type) {
+        try {
+            return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Нет доступа к классу DTO " + type.getName(), e);
+        }
+    }
+
+    private static <T> ColumnPlan.CellFiller<T> filler(Class<T> type, Field field) {
+        Class<?> fieldType = field.getType();
+        if (fieldType == double.class) {
+            ObjDoubleConsumer<T> setter = setter(type, field, ObjDoubleConsumer.class, "accept",
+                    MethodType.methodType(void.class, Object.class, double.class));
+            return (dto, cell, formatting) -> {
+                if (isNumeric(cell)) setter.accept(dto, cell.getNumericCellValue());
+                else if (isText(cell)) setter.accept(dto, Double.parseDouble(cell.getStringCellValue().trim()));
+            };
+        }
+        if (fieldType == int.class) {
+            ObjIntConsumer<T> setter = setter(type, field, ObjIntConsumer.class, "accept",
+                    MethodType.methodType(void.class, Object.class, int.class));
+            return (dto, cell, formatting) -> {
+                if (isNumeric(cell)) setter.accept(dto, intValue(cell));
+                else if (isText(cell)) setter.accept(dto, Integer.parseInt(cell.getStringCellValue().trim()));
+            };
+        }
+        if (fieldType == long.class) {
+            ObjLongConsumer<T> setter = setter(type, field, ObjLongConsumer.class, "accept",
+                    MethodType.methodType(void.class, Object.class, long.class));
+            return (dto, cell, formatting) -> {
+                if (isNumeric(cell)) setter.accept(dto, longValue(cell));
+                else if (isText(cell)) setter.accept(dto, Long.parseLong(cell.getStringCellValue().trim()));
+            };
+        }
+        BiConsumer<T, Object> setter = setter(type, field, BiConsumer.class, "accept",
+                MethodType.methodType(void.class, Object.class, Object.class));
+        if (fieldType == String.class)
+            return (dto, cell, formatting) -> {
+                if (cell != null && type(cell) != CellType.BLANK) setter.accept(dto, formatting.format(cell));
+            };
+        if (fieldType == Double.class)
+            return (dto, cell, formatting) -> {
+                if (isNumeric(cell)) setter.accept(dto, cell.getNumericCellValue());
+                else if (isText(cell)) setter.accept(dto, Double.valueOf(cell.getStringCellValue().trim()));
+            };
+        if (fieldType == Integer.class)
+            return (dto, cell, formatting) -> {
+                if (isNumeric(cell)) setter.accept(dto, intValue(cell));
+                else if (isText(cell)) setter.accept(dto, Integer.valueOf(cell.getStringCellValue().trim()));
+            };
+        if (fieldType == Long.class)
+            return (dto, cell, formatting) -> {
+                if (isNumeric(cell)) setter.accept(dto, longValue(cell));
+                else if (isText(cell)) setter.accept(dto, Long.valueOf(cell.getStringCellValue().trim()));
+            };
+        if (fieldType == boolean.class || fieldType == Boolean.class)
+            return (dto, cell, formatting) -> {
+                if (cell == null) return;
+                if (type(cell) == CellType.BOOLEAN) setter.accept(dto, cell.getBooleanCellValue());
+                else if (isText(cell)) setter.accept(dto, Boolean.valueOf(cell.getStringCellValue().trim()));
+            };
+        if (fieldType == BigDecimal.class)
+            return (dto, cell, formatting) -> {
+                if (isNumeric(cell)) setter.accept(dto, decimal(cell));
+                else if (isText(cell)) setter.accept(dto, new BigDecimal(cell.getStringCellValue().trim()));
+            };
+        if (fieldType == LocalDate.class)
+            return (dto, cell, formatting) -> {
+                if (isNumeric(cell)) setter.accept(dto, cell.getLocalDateTimeCellValue().toLocalDate());
+                else if (isText(cell)) setter.accept(dto, LocalDate.parse(cell.getStringCellValue().trim()));
+            };
+        if (fieldType == LocalDateTime.class)
+            return (dto, cell, formatting) -> {
+                if (isNumeric(cell)) setter.accept(dto, cell.getLocalDateTimeCellValue());
+                else if (isText(cell)) setter.accept(dto, LocalDateTime.parse(cell.getStringCellValue().trim()));
+            };
+        throw new IllegalArgumentException("Тип поля не поддерживается в @Column: " + field);
+    }
+
+    /**
+     * Создаёт реализацию функционального интерфейса, кладущую значение в поле: через сеттер {@code setИмяПоля},
+     * если он есть, иначе через {@link MethodHandle} поля
+     */
+    @SuppressWarnings("unchecked")
+    private static <S> S setter(Class<?> type, Field field, Class<?> setterType, String method, MethodType erased) {
+        String name = "set" + Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
+        try {
+            Method found = findSetter(type, name, field.getType());
+            if (found != null) {
+                MethodHandles.Lookup lookup = lookup(found.getDeclaringClass());
+                MethodHandle target = lookup.unreflect(found);
+                Class<?> value = erased.parameterType(1) == Object.class ? MethodType.methodType(field.getType()).wrap().returnType() : field.getType();
+                CallSite site = LambdaMetafactory.metafactory(lookup, method, MethodType.methodType(setterType),
+                        erased, target, MethodType.methodType(void.class, found.getDeclaringClass(), value));
+                return (S) site.getTarget().invoke();
+            }
+            MethodHandle handle = lookup(field.getDeclaringClass()).unreflectSetter(field).asType(erased);
+            if (setterType == ObjDoubleConsumer.class)
+                return (S) (ObjDoubleConsumer<Object>) (dto, value) -> invoke(handle, dto, value);
+            if (setterType == ObjIntConsumer.class)
+                return (S) (ObjIntConsumer<Object>) (dto, value) -> invoke(handle, dto, value);
+            if (setterType == ObjLongConsumer.class)
+                return (S) (ObjLongConsumer<Object>) (dto, value) -> invoke(handle, dto, value);
+            return (S) (BiConsumer<Object, Object>) (dto, value) -> invoke(handle, dto, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Нет доступа к полю " + field, e);
+        } catch (Throwable e) {
+            throw new IllegalArgumentException("Не удалось привязать поле " + field, e);
+        }
+    }
+
+    private static Method findSetter(Class<?> type, String name, Class<?> parameter) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            try {
+                Method method = current.getDeclaredMethod(name, parameter);
+                if (!Modifier.isStatic(method.getModifiers())) return method;
+            } catch (NoSuchMethodException ignored) {
+            }
+        }
+        return null;
+    }
+
+    private static void invoke(MethodHandle handle, Object dto, double value) {
+        try {
+            handle.invokeExact(dto, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static void invoke(MethodHandle handle, Object dto, int value) {
+        try {
+            handle.invokeExact(dto, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static void invoke(MethodHandle handle, Object dto, long value) {
+        try {
+            handle.invokeExact(dto, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static void invoke(MethodHandle handle, Object dto, Object value) {
+        try {
+            handle.invokeExact(dto, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) return (RuntimeException) e;
+        if (e instanceof Error) throw (Error) e;
+        return new RuntimeException(e);
+    }
+
+    private static CellType type(XLSCell cell) {
+        CellType type = cell.getCellType();
+        return type == CellType.FORMULA ? cell.getCachedFormulaResultType() : type;
+    }
+
+    private static boolean isNumeric(XLSCell cell) {
+        return cell != null && type(cell) == CellType.NUMERIC;
+    }
+
+    private static boolean isText(XLSCell cell) {
+        return cell != null && type(cell) == CellType.STRING && !cell.getStringCellValue().isBlank();
+    }
+
+    /**
+     * Целое значение числовой ячейки для поля {@code int}/{@code Integer}
+     *
+     * @throws NumberFormatException Если число дробное или не помещается в {@code int}
+     */
+    private static int intValue(XLSCell cell) {
+        double value = cell.getNumericCellValue();
+        if (value != Math.rint(value) || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+            throw new NumberFormatException("Значение ячейки не является целым числом типа int: " + value);
+        return (int) value;
+    }
+
+    /**
+     * Целое значение числовой ячейки для поля {@code long}/{@code Long}
+     *
+     * @throws NumberFormatException Если число дробное или не помещается в {@code long}
+     */
+    private static long longValue(XLSCell cell) {
+        double value = cell.getNumericCellValue();
+        if (value != Math.rint(value) || value < -0x1p63 || value >= 0x1p63)
+            throw new NumberFormatException("Значение ячейки не является целым числом типа long: " + value);
+        return (long) value;
+    }
+
+    /**
+     * Десятичное значение числовой ячейки. Берётся из записанного в файле текста числа, чтобы не получить
+     * двоичную погрешность {@code double}
+     */
+    private static BigDecimal decimal(XLSCell cell) {
+        String raw = cell.getCellType() == CellType.NUMERIC ? cell.getRawValue() : null;
+        if (raw != null) {
+            try {
+                return new BigDecimal(raw);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return BigDecimal.valueOf(cell.getNumericCellValue());
+    }
+}
@@ -0,0 +1,199 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Получатель, передающий DTO потребителю в отдельном потоке через ограниченную очередь.
+ * <p>Парсер кладёт DTO в очередь и продолжает разбор рядов; если очередь заполнена, он ждёт потребителя.
+ * Потребитель забирает DTO из очереди пачками, чтобы реже захватывать её блокировку, и получает их
+ * в порядке рядов листа. Исключение потребителя перебрасывается в поток парсинга при следующем DTO
+ * или в конце таблицы; в конце таблицы очередь дочитывается до конца. После ошибки парсинга очередь
+ * отбрасывается, и парсер дожидается, пока потребитель вернётся из текущего вызова.</p>
+ * <p>Если пул отклоняет задачу потребителя, парсинг прерывается сразу. Если пул принял задачу, но не начал её
+ * за {@value #START_TIMEOUT_SECONDS} с, а парсеру нужно ждать потребителя, задача отменяется и парсинг прерывается
+ * {@link IllegalStateException}</p>
+ * @param <T> Тип DTO
+ */
+final class AsyncSink<T> implements TableSink<T> {
+    /**
+     * Метка конца таблицы в очереди
+     */
+    private static final Object END = new Object();
+    /**
+     * Сколько секунд ждать, пока пул начнёт задачу потребителя
+     */
+    static final int START_TIMEOUT_SECONDS = 30;
+    private final BlockingQueue<Object> queue;
+    private final Consumer<? super T> consumer;
+    private final int capacity;
+    private final CompletableFuture<Void> worker;
+    /**
+     * Задача потребителя занята: либо она начала работу, либо отменена до начала. Занять её можно один раз
+     */
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private final long created = System.nanoTime();
+    private volatile Throwable failure;
+    private volatile boolean aborted;
+
+    private AsyncSink(int capacity, Consumer<? super T> consumer, Executor executor) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.consumer = consumer;
+        this.capacity = capacity;
+        try {
+            this.worker = CompletableFuture.runAsync(this::drain, executor);
+        } catch (RejectedExecutionException e) {
+            throw new RejectedExecutionException("Пул отклонил задачу потребителя таблицы", e);
+        }
+    }
+
+    /**
+     * @param capacity Вместимость очереди между парсером и потребителем
+     * @param consumer Потребитель DTO. Вызывается из одного потока, не из потока парсинга
+     * @param executor Пул, в котором работает потребитель, или {@code null}, чтобы создавать поток на каждую таблицу
+     * @return Фабрика получателей, по одному на проход по таблице
+     */
+    static <T> Supplier<TableSink<T>> of(int capacity, Consumer<? super T> consumer, Executor executor) {
+        if (capacity < 1) throw new IllegalArgumentException("Вместимость очереди должна быть положительной, но пришло " + capacity);
+        Executor pool = executor == null ? AsyncSink::startThread : executor;
+        return () -> new AsyncSink<>(capacity, consumer, pool);
+    }
+
+    @Override
+    public void accept(T dto) {
+        rethrowFailure();
+        put(dto);
+    }
+
+    @Override
+    public void finish() {
+        put(END);
+        try {
+            while (true) {
+                try {
+                    worker.get(100, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    checkStarted();
+                } catch (ExecutionException e) {
+                    failure = e.getCause();
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        rethrowFailure();
+    }
+
+    /**
+     * Отбрасывает очередь и дожидается, пока потребитель вернётся из текущего вызова.
+     * Если задача потребителя ещё не начата, она отменяется без ожидания
+     */
+    @Override
+    public void abort() {
+        aborted = true;
+        queue.clear();
+        queue.offer(END);
+        if (cancelPending()) return;
+        try {
+            worker.join();
+        } catch (CompletionException | CancellationException ignored) {
+            // Ошибка потребителя после ошибки парсинга не важна
+        }
+    }
+
+    private void drain() {
+        if (!claimed.compareAndSet(false, true)) return;
+        List<Object> batch = new ArrayList<>(capacity);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                for (Object item : batch) {
+                    if (item == END) return;
+                    if (failure == null && !aborted) deliver(item);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deliver(Object item) {
+        try {
+            consumer.accept((T) item);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Кладёт элемент в очередь, ожидая свободного места. Ожидание прерывается, если поток потребителя завершился
+     * или так и не начался
+     */
+    private void put(Object item) {
+        try {
+            while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                if (worker.isDone()) {
+                    rethrowFailure();
+                    throw new IllegalStateException("Поток потребителя завершился до конца таблицы");
+                }
+                checkStarted();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException Если пул не начал задачу потребителя за {@value #START_TIMEOUT_SECONDS} с.
+     * Задача при этом отменяется
+     */
+    private void checkStarted() {
+        if (System.nanoTime() - created < TimeUnit.SECONDS.toNanos(START_TIMEOUT_SECONDS) || !cancelPending()) return;
+        throw new IllegalStateException("Пул не начал задачу потребителя таблицы за " + START_TIMEOUT_SECONDS + " с");
+    }
+
+    /**
+     * Отменяет задачу потребителя, если она ещё не начата
+     * @return {@code true}, если задача отменена и потребитель не будет вызван
+     */
+    private boolean cancelPending() {
+        if (!claimed.compareAndSet(false, true)) return false;
+        worker.cancel(false);
+        return true;
+    }
+
+    private void rethrowFailure() {
+        Throwable cause = failure;
+        if (cause == null) return;
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        throw new RuntimeException(cause);
+    }
+
+    private static void startThread(Runnable task) {
+        Thread thread = new Thread(task, "xls-async-consumer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
@@ -0,0 +1,141 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Парсинг пакета файлов одной инструкцией с ограничением суммарного размера одновременно открытых книг.
+ * <p>Размер книги оценивается без её открытия: для XLSX -- как сумма распакованных размеров элементов архива,
+ * для XLS -- как размер файла. Новый файл открывается, только когда его оценка укладывается в свободный остаток бюджета.
+ * Файл, оценка которого больше всего бюджета, обрабатывается в одиночку</p>
+ */
+@Slf4j
+final class BatchParsing {
+    private BatchParsing() {
+    }
+
+    /**
+     * @param files Файлы для парсинга
+     * @param memoryBudget Бюджет суммарного оценочного размера одновременно открытых книг в байтах
+     * @param executor Пул потоков или {@code null} для пула по умолчанию, закрываемого по окончании
+     * @param parser Парсинг одного файла
+     * @return Результаты в порядке файлов
+     */
+    static List<FileParseResult> run(Collection<Path> files, long memoryBudget, @Nullable Executor executor, FileParser parser) {
+        if (memoryBudget <= 0) throw new IllegalArgumentException("Бюджет памяти должен быть положительным, но пришло " + memoryBudget);
+        ExecutorService ownPool = executor == null ? defaultExecutor() : null;
+        Executor pool = ownPool == null ? executor : ownPool;
+        MemoryBudget budget = new MemoryBudget(memoryBudget);
+        List<CompletableFuture<FileParseResult>> results = new ArrayList<>(files.size());
+        try {
+            for (Path file : files) {
+                long estimate;
+                try {
+                    estimate = Math.min(estimateSize(file), memoryBudget);
+                } catch (IOException e) {
+                    results.add(CompletableFuture.completedFuture(new FileParseResult(file, null, e)));
+                    continue;
+                }
+                budget.acquire(estimate);
+                try {
+                    results.add(CompletableFuture.supplyAsync(() -> parseOne(file, parser), pool)
+                            .whenComplete((result, error) -> budget.release(estimate)));
+                } catch (RejectedExecutionException e) {
+                    budget.release(estimate);
+                    throw e;
+                }
+            }
+            List<FileParseResult> done = new ArrayList<>(results.size());
+            for (CompletableFuture<FileParseResult> result : results) done.add(result.join());
+            return done;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            if (ownPool != null) ownPool.shutdown();
+        }
+    }
+
+    private static FileParseResult parseOne(Path file, FileParser parser) {
+        try {
+            return new FileParseResult(file, parser.parse(file), null);
+        } catch (Exception e) {
+            log.warn("Не удалось разобрать файл {}", file, e);
+            return new FileParseResult(file, null, e);
+        }
+    }
+
+    /**
+     * @param file Файл книги
+     * @return Оценка размера книги после распаковки в байтах
+     */
+    static long estimateSize(Path file) throws IOException {
+        if (FileMagic.valueOf(file.toFile()) != FileMagic.OOXML) return Files.size(file);
+        long size = 0;
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                size += entry.getSize() >= 0 ? entry.getSize() : entry.getCompressedSize();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Виртуальные потоки, если среда выполнения их поддерживает (Java 21+), иначе пул по числу процессоров
+     */
+    private static ExecutorService defaultExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * Парсинг одного файла пакета
+     */
+    @FunctionalInterface
+    interface FileParser {
+        /**
+         * @param file Файл книги
+         * @return Статистика парсинга файла
+         * @throws Exception в случае ошибки.
+         */
+        ParseReport parse(Path file) throws Exception;
+    }
+
+    /**
+     * Счётный бюджет байтов, в пределах которого открываются книги
+     */
+    private static final class MemoryBudget {
+        private long available;
+
+        private MemoryBudget(long available) {
+            this.available = available;
+        }
+
+        synchronized void acquire(long bytes) throws InterruptedException {
+            while (available < bytes) wait();
+            available -= bytes;
+        }
+
+        synchronized void release(long bytes) {
+            available += bytes;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Получатель, собирающий DTO в порции фиксированного размера.
+ * <p>Буферы выделяются один раз на таблицу и переиспользуются: потребитель получает неизменяемое представление
+ * буфера, которое действительно только на время вызова. Без пула порция передаётся потребителю в вызывающем
+ * потоке. С пулом буферов два: пока один передаётся потребителю в пуле, второй заполняется, так что
+ * парсинг следующей порции идёт одновременно с записью предыдущей</p>
+ * @param <T> Тип DTO
+ */
+final class BatchingSink<T> implements TableSink<T> {
+    private final int size;
+    private final Consumer<? super List<T>> consumer;
+    private final @Nullable Executor executor;
+    private List<T> filling;
+    private List<T> spare;
+    private CompletableFuture<Void> flushing = CompletableFuture.completedFuture(null);
+
+    private BatchingSink(int size, Consumer<? super List<T>> consumer, @Nullable Executor executor) {
+        this.size = size;
+        this.consumer = consumer;
+        this.executor = executor;
+        this.filling = new ArrayList<>(size);
+        this.spare = executor == null ? null : new ArrayList<>(size);
+    }
+
+    /**
+     * @param size Размер порции
+     * @param consumer Потребитель порций
+     * @param executor Пул для передачи порций потребителю или {@code null}, чтобы передавать их в вызывающем потоке
+     * @return Фабрика получателей, по одному на проход по таблице
+     */
+    static <T> Supplier<TableSink<T>> of(int size, Consumer<? super List<T>> consumer, @Nullable Executor executor) {
+        if (size < 1) throw new IllegalArgumentException("Размер порции должен быть положительным, но пришло " + size);
+        return () -> new BatchingSink<>(size, consumer, executor);
+    }
+
+    @Override
+    public void accept(T dto) {
+        filling.add(dto);
+        if (filling.size() == size) flush();
+    }
+
+    @Override
+    public void finish() {
+        if (!filling.isEmpty()) flush();
+        await();
+    }
+
+    private void flush() {
+        if (executor == null) {
+            deliver(filling);
+            return;
+        }
+        await();
+        List<T> batch = filling;
+        filling = spare;
+        spare = batch;
+        flushing = CompletableFuture.runAsync(() -> deliver(batch), executor);
+    }
+
+    private void deliver(List<T> batch) {
+        try {
+            consumer.accept(Collections.unmodifiableList(batch));
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Дожидается передачи предыдущей порции и перебрасывает исключение потребителя в вызывающий поток
+     */
+    private void await() {
+        try {
+            flushing.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.NonNull;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+
+/**
+ * Приведение ячеек к строке для методов {@code *Stringified}.
+ * <p>{@link DataFormatter} дорог в создании и не потокобезопасен, поэтому каждый поток получает свой экземпляр
+ * и переиспользует его для всех ячеек и книг. Разобранные форматы ("0.00%", форматы дат) кэшируются
+ * внутри экземпляра, так что каждый формат разбирается один раз на поток, а не на каждую ячейку</p>
+ */
+final class CellFormatting {
+    /**
+     * Форматирование с локалью по умолчанию. Следит за сменой локали через {@link org.apache.poi.util.LocaleUtil}
+     */
+    static final CellFormatting DEFAULT = new CellFormatting(null, false, null);
+    private final @Nullable Locale locale;
+    /**
+     * Выдавать ли для формул их значение вместо текста формулы
+     */
+    private final boolean formulaValues;
+    /**
+     * Пул, через который проходят строки ячеек, или {@code null}
+     */
+    private final @Nullable StringPool pool;
+    private final ThreadLocal<DataFormatter> formatters;
+
+    private CellFormatting(@Nullable Locale locale, boolean formulaValues, @Nullable StringPool pool) {
+        this.locale = locale;
+        this.formulaValues = formulaValues;
+        this.pool = pool;
+        this.formatters = ThreadLocal.withInitial(() -> {
+            DataFormatter formatter = locale == null ? new DataFormatter() : new DataFormatter(locale);
+            formatter.setUseCachedValuesForFormulaCells(formulaValues);
+            return formatter;
+        });
+    }
+
+    /**
+     * @param locale Локаль, по которой форматируются числа и даты
+     * @return Такое же форматирование с заданной локалью
+     */
+    CellFormatting withLocale(@NonNull Locale locale) {
+        return new CellFormatting(locale, formulaValues, pool);
+    }
+
+    /**
+     * @return Такое же форматирование, выдающее для формул их значение вместо текста формулы
+     */
+    CellFormatting withFormulaValues() {
+        return formulaValues ? this : new CellFormatting(locale, true, pool);
+    }
+
+    /**
+     * @param pool Пул строк
+     * @return Такое же форматирование, пропускающее строки ячеек через пул
+     */
+    CellFormatting withPool(@NonNull StringPool pool) {
+        return new CellFormatting(locale, formulaValues, pool);
+    }
+
+    /**
+     * @return Локаль форматирования или {@code null}, если используется локаль по умолчанию
+     */
+    @Nullable Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * @param cell Ячейка или {@code null}
+     * @return Строковое представление ячейки, пустая строка для {@code null}
+     */
+    String format(@Nullable XLSCell cell) {
+        if (cell == null) return "";
+        String value = cell.getFormattedValue(formatters.get());
+        return pool == null ? value : pool.intern(value);
+    }
+}
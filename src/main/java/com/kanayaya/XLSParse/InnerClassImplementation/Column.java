@@ -0,0 +1,35 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Связывает поле DTO со столбцом таблицы для {@code getEntityFrom(Class)}.
+ * <p>Задаётся ровно одно из двух: {@link #index()} или {@link #header()}. Значение кладётся через сеттер
+ * {@code setИмяПоля}, если он есть, иначе прямо в поле. Поддерживаются поля типов {@code String}, {@code double},
+ * {@code int}, {@code long}, {@code boolean} (и их обёрток), {@link java.math.BigDecimal},
+ * {@link java.time.LocalDate} и {@link java.time.LocalDateTime}. Пустые и отсутствующие ячейки оставляют
+ * поле нетронутым</p>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Column {
+    /**
+     * @return Номер столбца <b>ИЛИ</b> код из класса {@link CellCodes}
+     */
+    int index() default Integer.MIN_VALUE;
+
+    /**
+     * @return Заголовок столбца в ряду, удовлетворившем условию начала таблицы
+     */
+    String header() default "";
+
+    /**
+     * @return Способ сравнения {@link #header()} с текстом ячеек
+     */
+    HeaderMatching matching() default HeaderMatching.EXACT;
+}
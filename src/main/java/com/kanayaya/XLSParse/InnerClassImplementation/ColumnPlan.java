@@ -0,0 +1,252 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Плоский план заполнения DTO из ряда: массив пар (столбец, наполнитель), проходимый одним циклом.
+ * <p>Номера первой и последней ячейки ряда вычисляются один раз на ряд и только если они нужны плану</p>
+ * @param <T> Тип DTO
+ */
+final class ColumnPlan<T> {
+    /**
+     * Столбец задан абсолютным номером
+     */
+    private static final byte ABSOLUTE = 0;
+    /**
+     * Столбец задан смещением от первой заполненной ячейки ряда
+     */
+    private static final byte FROM_FIRST = 1;
+    /**
+     * Столбец -- последняя ячейка ряда по {@link XLSRow#getLastCellNum()}
+     */
+    private static final byte LAST = 2;
+    /**
+     * Столбец задан заголовком в ряду начала таблицы. Номер становится известен в {@link #resolve}
+     */
+    private static final byte HEADER = 3;
+
+    private final byte[] anchors;
+    private final int[] offsets;
+    private final String[] headers;
+    private final HeaderMatching[] matchings;
+    private final CellFiller<T>[] fillers;
+    private final boolean needsFirst;
+    private final boolean needsLast;
+    private final boolean needsHeaders;
+
+    private ColumnPlan(List<Step<T>> steps) {
+        int size = steps.size();
+        anchors = new byte[size];
+        offsets = new int[size];
+        headers = new String[size];
+        matchings = new HeaderMatching[size];
+        @SuppressWarnings("unchecked")
+        CellFiller<T>[] fillers = new CellFiller[size];
+        boolean needsFirst = false;
+        boolean needsLast = false;
+        boolean needsHeaders = false;
+        for (int i = 0; i < size; i++) {
+            Step<T> step = steps.get(i);
+            anchors[i] = step.anchor;
+            offsets[i] = step.offset;
+            headers[i] = step.header;
+            matchings[i] = step.matching;
+            fillers[i] = step.filler;
+            needsFirst |= step.anchor == FROM_FIRST;
+            needsLast |= step.anchor == LAST;
+            needsHeaders |= step.anchor == HEADER;
+        }
+        this.fillers = fillers;
+        this.needsFirst = needsFirst;
+        this.needsLast = needsLast;
+        this.needsHeaders = needsHeaders;
+    }
+
+    private ColumnPlan(byte[] anchors, int[] offsets, String[] headers, HeaderMatching[] matchings, CellFiller<T>[] fillers, boolean needsFirst, boolean needsLast) {
+        this.anchors = anchors;
+        this.offsets = offsets;
+        this.headers = headers;
+        this.matchings = matchings;
+        this.fillers = fillers;
+        this.needsFirst = needsFirst;
+        this.needsLast = needsLast;
+        this.needsHeaders = false;
+    }
+
+    /**
+     * @param <T> Тип DTO
+     * @return Пустой набор шагов плана
+     */
+    static <T> Builder<T> builder() {
+        return new Builder<>(List.of());
+    }
+
+    /**
+     * @param filler Наполнитель DTO из ячейки
+     * @param <T> Тип DTO
+     * @return Наполнитель столбца плана
+     */
+    static <T> CellFiller<T> ofCell(@NonNull UncheckedBiConsumer<T, XLSCell> filler) {
+        return (dto, cell, formatting) -> filler.acceptUnchecked(dto, cell);
+    }
+
+    /**
+     * @param filler Наполнитель DTO из строкового представления ячейки
+     * @param <T> Тип DTO
+     * @return Наполнитель столбца плана, приводящий ячейку к строке форматированием книги
+     */
+    static <T> CellFiller<T> ofString(@NonNull UncheckedBiConsumer<T, String> filler) {
+        return (dto, cell, formatting) -> filler.acceptUnchecked(dto, formatting.format(cell));
+    }
+
+    /**
+     * @return Есть ли в плане столбцы, заданные заголовком
+     */
+    boolean needsHeaders() {
+        return needsHeaders;
+    }
+
+    /**
+     * Находит столбцы, заданные заголовком, в ряду заголовков. Заголовок сравнивается со строковым представлением
+     * ячейки способом, заданным для столбца. Если подходящих ячеек несколько, берётся самая левая.
+     * <p>Вызывается один раз на проход по таблице: в получившемся плане все столбцы заданы номерами,
+     * и ряды данных заполняются без поиска заголовков</p>
+     * @param header Ряд заголовков
+     * @param formatting Форматирование ячеек книги
+     * @return План, в котором все столбцы заданы номерами
+     * @throws IllegalArgumentException Если заголовок не найден в ряду
+     */
+    ColumnPlan<T> resolve(XLSRow header, CellFormatting formatting) {
+        if (!needsHeaders) return this;
+        List<String> texts = new ArrayList<>();
+        for (int cellNum = 0; cellNum < header.getLastCellNum(); cellNum++) {
+            XLSCell cell = header.getCell(cellNum);
+            texts.add(cell == null ? null : formatting.format(cell));
+        }
+        Map<HeaderMatching, Map<String, Integer>> columns = new EnumMap<>(HeaderMatching.class);
+        byte[] anchors = this.anchors.clone();
+        int[] offsets = this.offsets.clone();
+        for (int i = 0; i < anchors.length; i++) {
+            if (anchors[i] != HEADER) continue;
+            Integer cellNum = columns.computeIfAbsent(matchings[i], matching -> index(texts, matching)).get(headers[i]);
+            if (cellNum == null)
+                throw new IllegalArgumentException(String.format("Столбец с заголовком \"%s\" не найден в ряду %d", headers[i], header.getRowNum()));
+            anchors[i] = ABSOLUTE;
+            offsets[i] = cellNum;
+        }
+        return new ColumnPlan<>(anchors, offsets, headers, matchings, fillers, needsFirst, needsLast);
+    }
+
+    private static Map<String, Integer> index(List<String> texts, HeaderMatching matching) {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int cellNum = 0; cellNum < texts.size(); cellNum++) {
+            String text = texts.get(cellNum);
+            if (text != null) columns.putIfAbsent(matching.key(text), cellNum);
+        }
+        return columns;
+    }
+
+    /**
+     * Заполняет DTO из ряда, проходя по всем столбцам плана
+     * @param dto DTO для заполнения
+     * @param row Ряд таблицы
+     * @param formatting Форматирование ячеек книги
+     * @param recorder Счётчики таблицы, в которые попадают отсутствующие ячейки
+     * @throws RowParseException Если наполнитель бросил исключение. Исходное исключение -- в причине
+     */
+    void fill(T dto, XLSRow row, CellFormatting formatting, TableReport.Recorder recorder) {
+        if (needsHeaders) throw new IllegalStateException("Столбцы, заданные заголовком, не найдены: ряд начала таблицы не прочитан");
+        int first = needsFirst ? row.getFirstCellNum() : 0;
+        int last = needsLast ? row.getLastCellNum() : 0;
+        for (int i = 0; i < fillers.length; i++) {
+            byte anchor = anchors[i];
+            int cellNum = anchor == ABSOLUTE ? offsets[i] : anchor == FROM_FIRST ? first + offsets[i] : last;
+            XLSCell cell = row.getCell(cellNum);
+            if (cell == null) recorder.nullCell(row.getRowNum(), cellNum);
+            try {
+                fillers[i].fill(dto, cell, formatting);
+            } catch (Exception e) {
+                throw new RowParseException(row.getRowNum(), cellNum, e);
+            }
+        }
+    }
+
+    /**
+     * Наполнитель DTO из одной ячейки столбца
+     * @param <T> Тип DTO
+     */
+    @FunctionalInterface
+    interface CellFiller<T> {
+        void fill(T dto, XLSCell cell, CellFormatting formatting) throws Exception;
+    }
+
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    private static final class Step<T> {
+        private final byte anchor;
+        private final int offset;
+        private final String header;
+        private final HeaderMatching matching;
+        private final CellFiller<T> filler;
+    }
+
+    /**
+     * Неизменяемый набор шагов плана. Каждый метод возвращает новый набор
+     * @param <T> Тип DTO
+     */
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    static final class Builder<T> {
+        private final List<Step<T>> steps;
+
+        /**
+         * @param cellNum Номер столбца <b>ИЛИ</b> код из класса {@link CellCodes}
+         * @param filler Наполнитель DTO из ячейки
+         * @return Набор с добавленным шагом
+         */
+        Builder<T> column(int cellNum, @NonNull CellFiller<T> filler) {
+            if (cellNum == CellCodes.FIRST) return with(new Step<>(FROM_FIRST, 0, null, null, filler));
+            if (cellNum == CellCodes.LAST) return with(new Step<>(LAST, 0, null, null, filler));
+            return with(new Step<>(ABSOLUTE, cellNum, null, null, filler));
+        }
+
+        /**
+         * @param offset Смещение столбца от первой заполненной ячейки ряда
+         * @param filler Наполнитель DTO из ячейки
+         * @return Набор с добавленным шагом
+         */
+        Builder<T> fromFirst(int offset, @NonNull CellFiller<T> filler) {
+            return with(new Step<>(FROM_FIRST, offset, null, null, filler));
+        }
+
+        /**
+         * @param header Заголовок столбца в ряду начала таблицы
+         * @param matching Способ сравнения заголовков
+         * @param filler Наполнитель DTO из ячейки
+         * @return Набор с добавленным шагом
+         */
+        Builder<T> header(@NonNull String header, @NonNull HeaderMatching matching, @NonNull CellFiller<T> filler) {
+            return with(new Step<>(HEADER, -1, matching.key(header), matching, filler));
+        }
+
+        /**
+         * @return План, собранный в плоские массивы
+         */
+        ColumnPlan<T> compile() {
+            return new ColumnPlan<>(steps);
+        }
+
+        private Builder<T> with(Step<T> step) {
+            List<Step<T>> steps = new ArrayList<>(this.steps.size() + 1);
+            steps.addAll(this.steps);
+            steps.add(step);
+            return new Builder<>(steps);
+        }
+    }
+}
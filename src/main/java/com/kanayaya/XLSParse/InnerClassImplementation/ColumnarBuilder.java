@@ -0,0 +1,192 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import org.apache.poi.ss.usermodel.CellType;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Накопитель {@link ColumnarTable} на один проход по таблице.
+ * <p>Используется вместо DTO: каждый ряд дописывает значения в растущие массивы столбцов, так что на ряд
+ * не создаётся ни одного объекта, кроме новых строк словаря</p>
+ */
+final class ColumnarBuilder {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Тип столбца
+     */
+    enum Kind {
+        DOUBLE, LONG, STRING
+    }
+
+    private final String[] names;
+    private final Accumulator[] columns;
+    private int rows;
+
+    private ColumnarBuilder(String[] names, Kind[] kinds) {
+        this.names = names;
+        this.columns = new Accumulator[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            switch (kinds[i]) {
+                case DOUBLE:
+                    columns[i] = new DoubleAccumulator();
+                    break;
+                case LONG:
+                    columns[i] = new LongAccumulator();
+                    break;
+                default:
+                    columns[i] = new StringAccumulator();
+            }
+        }
+    }
+
+    /**
+     * @param column Номер столбца в порядке задания
+     * @return Наполнитель, дописывающий ячейку в этот столбец текущего ряда
+     */
+    static ColumnPlan.CellFiller<ColumnarBuilder> filler(int column) {
+        return (builder, cell, formatting) -> builder.columns[column].append(builder.rows, cell, formatting);
+    }
+
+    /**
+     * @param names Имена столбцов
+     * @param kinds Типы столбцов
+     * @param consumer Получает готовую таблицу в конце каждого прохода
+     * @return Фабрика получателей, каждый со своим накопителем
+     */
+    static TableSink.OwnGenerator<ColumnarBuilder> sink(String[] names, Kind[] kinds, Consumer<? super ColumnarTable> consumer) {
+        return () -> {
+            ColumnarBuilder builder = new ColumnarBuilder(names, kinds);
+            return new TableSink<>() {
+                @Override
+                public Supplier<ColumnarBuilder> generator(Supplier<ColumnarBuilder> generator) {
+                    return builder::startRow;
+                }
+
+                @Override
+                public void accept(ColumnarBuilder dto) {
+                    builder.rows++;
+                }
+
+                @Override
+                public void finish() {
+                    consumer.accept(builder.build());
+                }
+            };
+        };
+    }
+
+    /**
+     * Начинает заполнение ряда. Отметки пустых ячеек ряда, пропущенного по политике ошибок,
+     * остаются на месте следующего ряда, поэтому снимаются перед каждым рядом. Отметки пропущенного
+     * последнего ряда не попадают в таблицу, потому что её маски обрезаются по количеству рядов
+     * @return Этот накопитель
+     */
+    private ColumnarBuilder startRow() {
+        for (Accumulator column : columns) column.nulls.clear(rows);
+        return this;
+    }
+
+    private ColumnarTable build() {
+        Map<String, ColumnarTable.Column> built = new LinkedHashMap<>();
+        for (int i = 0; i < columns.length; i++) built.put(names[i], columns[i].build(rows));
+        return new ColumnarTable(rows, built);
+    }
+
+    private static boolean isNumeric(XLSCell cell) {
+        CellType type = cell.getCellType();
+        return type == CellType.NUMERIC || type == CellType.FORMULA && cell.getCachedFormulaResultType() == CellType.NUMERIC;
+    }
+
+    private static int grow(int capacity, int row) {
+        return Math.max(row + 1, capacity + (capacity >> 1));
+    }
+
+    private abstract static class Accumulator {
+        protected final BitSet nulls = new BitSet();
+
+        abstract void append(int row, @Nullable XLSCell cell, CellFormatting formatting);
+
+        abstract ColumnarTable.Column build(int rows);
+    }
+
+    private static final class DoubleAccumulator extends Accumulator {
+        private double[] values = new double[INITIAL_CAPACITY];
+
+        @Override
+        void append(int row, @Nullable XLSCell cell, CellFormatting formatting) {
+            if (row >= values.length) values = Arrays.copyOf(values, grow(values.length, row));
+            if (cell != null && isNumeric(cell)) values[row] = cell.getNumericCellValue();
+            else nulls.set(row);
+        }
+
+        @Override
+        ColumnarTable.Column build(int rows) {
+            return new ColumnarTable.DoubleColumn(Arrays.copyOf(values, rows), nulls.get(0, rows));
+        }
+    }
+
+    private static final class LongAccumulator extends Accumulator {
+        private long[] values = new long[INITIAL_CAPACITY];
+
+        @Override
+        void append(int row, @Nullable XLSCell cell, CellFormatting formatting) {
+            if (row >= values.length) values = Arrays.copyOf(values, grow(values.length, row));
+            if (cell != null && isNumeric(cell)) values[row] = longValue(cell);
+            else nulls.set(row);
+        }
+
+        /**
+         * @throws NumberFormatException Если число дробное или не помещается в {@code long}
+         */
+        private static long longValue(XLSCell cell) {
+            double value = cell.getNumericCellValue();
+            if (value != Math.rint(value) || value < -0x1p63 || value >= 0x1p63)
+                throw new NumberFormatException("Значение ячейки не является целым числом типа long: " + value);
+            return (long) value;
+        }
+
+        @Override
+        ColumnarTable.Column build(int rows) {
+            return new ColumnarTable.LongColumn(Arrays.copyOf(values, rows), nulls.get(0, rows));
+        }
+    }
+
+    private static final class StringAccumulator extends Accumulator {
+        private int[] codes = new int[INITIAL_CAPACITY];
+        private final Map<String, Integer> index = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+
+        @Override
+        void append(int row, @Nullable XLSCell cell, CellFormatting formatting) {
+            if (row >= codes.length) codes = Arrays.copyOf(codes, grow(codes.length, row));
+            if (cell == null) {
+                codes[row] = -1;
+                nulls.set(row);
+                return;
+            }
+            String value = formatting.format(cell);
+            Integer code = index.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                index.put(value, code);
+                dictionary.add(value);
+            }
+            codes[row] = code;
+        }
+
+        @Override
+        ColumnarTable.Column build(int rows) {
+            return new ColumnarTable.StringColumn(Arrays.copyOf(codes, rows), dictionary, nulls.get(0, rows));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Таблица, собранная по столбцам: числовые столбцы хранятся в массивах {@code double[]} и {@code long[]},
+ * строковые -- словарём и массивом {@code int[]} кодов. Отсутствующие и неподходящие по типу ячейки отмечаются
+ * битовой маской столбца. Дробное или не помещающееся в {@code long} число в целочисленном столбце пустым
+ * не считается: это ошибка ряда, которая обрабатывается по политике ошибок таблицы.
+ * <p>Массивы не копируются при выдаче: их нельзя изменять, если таблицу читает кто-то ещё</p>
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class ColumnarTable {
+    private final int rowCount;
+    private final @NonNull Map<String, Column> columns;
+
+    /**
+     * @return Количество рядов таблицы
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return Имена столбцов в порядке их задания
+     */
+    public @NonNull List<String> getColumnNames() {
+        return Collections.unmodifiableList(new ArrayList<>(columns.keySet()));
+    }
+
+    /**
+     * @param name Имя столбца, заданного через {@code doubleColumn}
+     * @return Значения столбца; на месте пустых ячеек 0
+     */
+    public double @NonNull [] getDoubles(@NonNull String name) {
+        return column(name, DoubleColumn.class).values;
+    }
+
+    /**
+     * @param name Имя столбца, заданного через {@code longColumn}
+     * @return Значения столбца; на месте пустых ячеек 0
+     */
+    public long @NonNull [] getLongs(@NonNull String name) {
+        return column(name, LongColumn.class).values;
+    }
+
+    /**
+     * @param name Имя столбца, заданного через {@code stringColumn}
+     * @return Коды значений столбца -- индексы в {@link #getDictionary(String)}; на месте пустых ячеек -1
+     */
+    public int @NonNull [] getCodes(@NonNull String name) {
+        return column(name, StringColumn.class).codes;
+    }
+
+    /**
+     * @param name Имя столбца, заданного через {@code stringColumn}
+     * @return Различные значения столбца в порядке их первого появления
+     */
+    public @NonNull List<String> getDictionary(@NonNull String name) {
+        return column(name, StringColumn.class).dictionary;
+    }
+
+    /**
+     * @param name Имя столбца, заданного через {@code stringColumn}
+     * @param row Номер ряда таблицы, начиная с 0
+     * @return Значение ячейки или {@code null}, если она пуста
+     */
+    public @Nullable String getString(@NonNull String name, int row) {
+        StringColumn column = column(name, StringColumn.class);
+        int code = column.codes[row];
+        return code < 0 ? null : column.dictionary.get(code);
+    }
+
+    /**
+     * @param name Имя столбца
+     * @param row Номер ряда таблицы, начиная с 0
+     * @return {@code true}, если ячейки нет или её тип не подходит столбцу
+     */
+    public boolean isNull(@NonNull String name, int row) {
+        return column(name, Column.class).nulls.get(row);
+    }
+
+    /**
+     * @param name Имя столбца
+     * @return Количество пустых ячеек столбца
+     */
+    public int getNullCount(@NonNull String name) {
+        return column(name, Column.class).nulls.cardinality();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Таблица по столбцам: %d рядов, столбцы %s", rowCount, columns.keySet());
+    }
+
+    private <C extends Column> C column(String name, Class<C> type) {
+        Column column = columns.get(name);
+        if (column == null) throw new IllegalArgumentException("Столбец не задан: " + name);
+        if (!type.isInstance(column)) throw new IllegalArgumentException(String.format("Столбец \"%s\" не является %s", name, type.getSimpleName()));
+        return type.cast(column);
+    }
+
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    abstract static class Column {
+        private final BitSet nulls;
+    }
+
+    static final class DoubleColumn extends Column {
+        private final double[] values;
+
+        DoubleColumn(double[] values, BitSet nulls) {
+            super(nulls);
+            this.values = values;
+        }
+    }
+
+    static final class LongColumn extends Column {
+        private final long[] values;
+
+        LongColumn(long[] values, BitSet nulls) {
+            super(nulls);
+            this.values = values;
+        }
+    }
+
+    static final class StringColumn extends Column {
+        private final int[] codes;
+        private final List<String> dictionary;
+
+        StringColumn(int[] codes, List<String> dictionary, BitSet nulls) {
+            super(nulls);
+            this.codes = codes;
+            this.dictionary = Collections.unmodifiableList(dictionary);
+        }
+    }
+}
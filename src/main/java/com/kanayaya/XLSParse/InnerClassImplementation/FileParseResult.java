@@ -0,0 +1,51 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+
+/**
+ * Результат парсинга одного файла из пакета, обработанного {@link XLSTableParser#parseAll}.
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class FileParseResult {
+    private final @NonNull Path path;
+    private final @Nullable ParseReport report;
+    private final @Nullable Exception failure;
+
+    /**
+     * @return Путь к файлу
+     */
+    public @NonNull Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return Статистика парсинга файла, как у {@link XLSTableParser#parse(Path)}, или {@code null}, если парсинг прервала ошибка
+     */
+    public @Nullable ParseReport getReport() {
+        return report;
+    }
+
+    /**
+     * @return Ошибка, прервавшая парсинг файла, или {@code null}, если файл разобран полностью
+     */
+    public @Nullable Exception getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return {@code true}, если файл разобран без ошибок
+     */
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+
+    @Override
+    public String toString() {
+        return failure == null ? path + ": OK" : path + ": " + failure;
+    }
+}
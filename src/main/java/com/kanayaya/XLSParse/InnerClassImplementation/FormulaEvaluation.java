@@ -0,0 +1,25 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+/**
+ * Откуда берутся значения ячеек с формулами для условий и наполнителей DTO.
+ * <p>При любом способе методы {@code *Stringified} выдают значение формулы, а не её текст.
+ * Вычислять формулы можно только в книге, целиком прочитанной в память. При потоковом чтении
+ * все способы используют сохранённые в файле значения</p>
+ */
+public enum FormulaEvaluation {
+    /**
+     * Значения, сохранённые в файле при последнем пересчёте в Excel. Формулы не вычисляются.
+     * Самый быстрый способ, но для книг, созданных программно и не открывавшихся в Excel, значений может не быть
+     */
+    CACHED,
+    /**
+     * Формула вычисляется при первом обращении к ячейке. Один вычислитель на книгу на весь парсинг
+     * запоминает результаты, так что общие зависимости вычисляются один раз
+     */
+    ON_DEMAND,
+    /**
+     * Все формулы книги вычисляются перед парсингом, затем используются их значения.
+     * Выгоднее {@link #ON_DEMAND}, если таблицы читают большую часть формул книги
+     */
+    ALL
+}
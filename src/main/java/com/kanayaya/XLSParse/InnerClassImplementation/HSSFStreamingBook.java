@@ -0,0 +1,362 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.apache.poi.EncryptedDocumentException;
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.EventWorkbookBuilder;
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.HSSFUserException;
+import org.apache.poi.hssf.model.HSSFFormulaParser;
+import org.apache.poi.hssf.record.*;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.DocumentInputStream;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.util.NumberToTextConverter;
+import org.apache.poi.util.IOUtils;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Потоковое представление книги XLS (BIFF8), читающее поток записей без построения {@link HSSFWorkbook}.
+ * <p>Глобальная часть книги (имена листов, общие строки, форматы) разбирается один раз через {@link HSSFEventFactory}.
+ * Ряды листа вытягиваются из потока записей, начиная с позиции листа, по одному на каждый запрос.
+ * В памяти держатся только общие строки, форматы и текущий ряд.</p>
+ * <p>Ряды без ячеек возвращаются, если для них есть запись {@link RowRecord}, как и пустые {@code <row>} в XLSX.
+ * Зашифрованные книги не поддерживаются</p>
+ */
+class HSSFStreamingBook implements XLSBook {
+    private final POIFSFileSystem fs;
+    private final String workbookEntry;
+    private final FormatTrackingHSSFListener formats = new FormatTrackingHSSFListener(null);
+    private final EventWorkbookBuilder.SheetRecordCollectingListener globals = new EventWorkbookBuilder.SheetRecordCollectingListener(null);
+    private final List<String> sheetNames = new ArrayList<>();
+    /**
+     * Номера листов по именам. Имена сравниваются без учёта регистра, как в Excel и {@link XSSFWorkbookAdapter}
+     */
+    private final Map<String, Integer> sheetIndexes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final List<Integer> sheetPositions = new ArrayList<>();
+    private final HSSFWorkbook stubWorkbook;
+    private final @Nullable SSTRecord sst;
+    private boolean date1904;
+
+    /**
+     * @param fs Открытая файловая система OLE2 с книгой XLS. Закрывать её должен вызывающий код
+     * @throws IOException Если книга не читается, зашифрована или файл не является книгой XLS
+     */
+    HSSFStreamingBook(@NonNull POIFSFileSystem fs) throws IOException {
+        this.fs = fs;
+        try {
+            this.workbookEntry = HSSFWorkbook.getWorkbookDirEntryName(fs.getRoot());
+        } catch (EncryptedDocumentException e) {
+            throw new IOException("Зашифрованные книги не поддерживаются", e);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Файл не является книгой XLS (BIFF8): " + e.getMessage(), e);
+        }
+        readGlobals();
+        for (BoundSheetRecord sheet : globals.getBoundSheetRecords()) {
+            sheetIndexes.putIfAbsent(sheet.getSheetname(), sheetNames.size());
+            sheetNames.add(sheet.getSheetname());
+            sheetPositions.add(sheet.getPositionOfBof());
+        }
+        this.sst = globals.getSSTRecord();
+        this.stubWorkbook = globals.getStubHSSFWorkbook();
+    }
+
+    @Override
+    public @Nullable XLSSheet getSheet(String name) {
+        Integer index = sheetIndexes.get(name);
+        return index == null ? null : new StreamingSheet(sheetNames.get(index), sheetPositions.get(index));
+    }
+
+    @Override
+    public String getSheetName(int index) {
+        if (index < 0 || index >= sheetNames.size())
+            throw new IllegalArgumentException("Sheet index (" + index + ") is out of range (0.." + (sheetNames.size() - 1) + ")");
+        return sheetNames.get(index);
+    }
+
+    /**
+     * Разбирает записи глобальной части книги до первой записи {@link EOFRecord}
+     */
+    private void readGlobals() throws IOException {
+        HSSFRequest request = new HSSFRequest();
+        request.addListenerForAllRecords(new AbortableHSSFListener() {
+            @Override
+            public short abortableProcessRecord(org.apache.poi.hssf.record.Record record) throws HSSFUserException {
+                if (record instanceof FilePassRecord) throw new HSSFUserException("Зашифрованные книги XLS не поддерживаются");
+                if (record instanceof DateWindow1904Record) date1904 = ((DateWindow1904Record) record).getWindowing() == 1;
+                formats.processRecordInternally(record);
+                globals.processRecordInternally(record);
+                return record instanceof EOFRecord ? (short) 1 : 0;
+            }
+        });
+        try (DocumentInputStream in = fs.createDocumentInputStream(workbookEntry)) {
+            new HSSFEventFactory().abortableProcessEvents(request, in);
+        } catch (HSSFUserException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @AllArgsConstructor
+    private final class StreamingSheet implements XLSSheet {
+        private final String name;
+        private final int position;
+
+        @Override
+        public String getSheetName() {
+            return name;
+        }
+
+        @Override
+        public Stream<XLSRow> rows(int start) {
+            DocumentInputStream in = null;
+            try {
+                synchronized (fs) {
+                    in = fs.createDocumentInputStream(workbookEntry);
+                    IOUtils.skipFully(in, position);
+                }
+                DocumentInputStream source = in;
+                return StreamSupport.stream(new RowSpliterator(new RecordInputStream(new LockedInputStream(in)), start), false)
+                        .onClose(source::close);
+            } catch (IOException e) {
+                if (in != null) in.close();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Вытягивает ряды из потока записей листа. Записи ячеек одного ряда идут в файле подряд
+     */
+    private final class RowSpliterator extends Spliterators.AbstractSpliterator<XLSRow> {
+        private final RecordInputStream records;
+        private final int start;
+        private List<ValueCell> cells = new ArrayList<>();
+        private int rowNum = -1;
+        private int depth;
+        private boolean finished;
+        private @Nullable FormulaRecord pendingFormula;
+        /**
+         * Номера рядов из записей {@link RowRecord}, до ячеек которых чтение ещё не дошло. Записи рядов блока
+         * идут перед его ячейками, по возрастанию номеров
+         */
+        private final Deque<Integer> declared = new ArrayDeque<>();
+        private final Deque<XLSRow> ready = new ArrayDeque<>();
+
+        private RowSpliterator(RecordInputStream records, int start) {
+            super(Long.MAX_VALUE, ORDERED | NONNULL);
+            this.records = records;
+            this.start = start;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super XLSRow> action) {
+            while (ready.isEmpty() && !finished && records.hasNextRecord()) {
+                records.nextRecord();
+                short sid = records.getSid();
+                if (sid == BOFRecord.sid) {
+                    depth++;
+                    records.readRemainder();
+                } else if (sid == EOFRecord.sid) {
+                    records.readRemainder();
+                    if (--depth == 0) {
+                        finished = true;
+                        finishSheet();
+                    }
+                } else if (depth == 1 && sid == RowRecord.sid) {
+                    int declaredRow = ((RowRecord) RecordFactory.createSingleRecord(records)).getRowNumber();
+                    if (declaredRow >= start) declared.add(declaredRow);
+                } else if (depth == 1 && isCellRecord(sid)) {
+                    acceptRecord(RecordFactory.createSingleRecord(records));
+                } else {
+                    records.readRemainder();
+                }
+            }
+            if (ready.isEmpty() && !finished) {
+                finished = true;
+                finishSheet();
+            }
+            if (ready.isEmpty()) return false;
+            action.accept(ready.poll());
+            return true;
+        }
+
+        private void acceptRecord(org.apache.poi.hssf.record.Record record) {
+            if (!(record instanceof StringRecord)) flushFormula();
+            if (record instanceof StringRecord) {
+                if (pendingFormula != null) {
+                    String value = ((StringRecord) record).getString();
+                    addCell(pendingFormula, formula(pendingFormula), CellType.STRING, value, 0, value);
+                }
+                pendingFormula = null;
+            } else if (record instanceof MulRKRecord) {
+                for (NumberRecord number : RecordFactory.convertRKRecords((MulRKRecord) record)) acceptRecord(number);
+            } else if (record instanceof MulBlankRecord) {
+                for (BlankRecord blank : RecordFactory.convertBlankRecords((MulBlankRecord) record)) acceptRecord(blank);
+            } else if (record instanceof RKRecord) {
+                acceptRecord(RecordFactory.convertToNumberRecord((RKRecord) record));
+            } else if (record instanceof NumberRecord) {
+                double value = ((NumberRecord) record).getValue();
+                addCell((NumberRecord) record, null, CellType.NUMERIC, null, value, NumberToTextConverter.toText(value));
+            } else if (record instanceof LabelSSTRecord) {
+                LabelSSTRecord label = (LabelSSTRecord) record;
+                String value = sst == null ? "" : sst.getString(label.getSSTIndex()).getString();
+                addCell(label, null, CellType.STRING, value, 0, Integer.toString(label.getSSTIndex()));
+            } else if (record instanceof LabelRecord) {
+                addCell((LabelRecord) record, null, CellType.STRING, ((LabelRecord) record).getValue(), 0, null);
+            } else if (record instanceof BoolErrRecord) {
+                BoolErrRecord boolErr = (BoolErrRecord) record;
+                if (boolErr.isBoolean()) {
+                    addCell(boolErr, null, CellType.BOOLEAN, null, boolErr.getBooleanValue() ? 1 : 0, boolErr.getBooleanValue() ? "1" : "0");
+                } else {
+                    String error = FormulaError.forInt(boolErr.getErrorValue()).getString();
+                    addCell(boolErr, null, CellType.ERROR, error, 0, error);
+                }
+            } else if (record instanceof BlankRecord) {
+                addCell((BlankRecord) record, null, CellType.BLANK, null, 0, null);
+            } else if (record instanceof FormulaRecord) {
+                FormulaRecord formula = (FormulaRecord) record;
+                if (formula.hasCachedResultString()) {
+                    pendingFormula = formula;
+                } else {
+                    addFormula(formula);
+                }
+            }
+        }
+
+        /**
+         * Строковое значение формулы лежит в следующей за ней {@link StringRecord}. Если её нет,
+         * ячейка всё равно попадает в ряд — с пустым кэшированным значением
+         */
+        private void flushFormula() {
+            FormulaRecord formula = pendingFormula;
+            if (formula == null) return;
+            pendingFormula = null;
+            addFormula(formula);
+        }
+
+        private void addFormula(FormulaRecord formula) {
+            switch (formula.getCachedResultTypeEnum()) {
+                case STRING:
+                    addCell(formula, formula(formula), CellType.STRING, "", 0, "");
+                    break;
+                case BOOLEAN:
+                    boolean value = formula.getCachedBooleanValue();
+                    addCell(formula, formula(formula), CellType.BOOLEAN, null, value ? 1 : 0, value ? "1" : "0");
+                    break;
+                case ERROR:
+                    String error = FormulaError.forInt(formula.getCachedErrorValue()).getString();
+                    addCell(formula, formula(formula), CellType.ERROR, error, 0, error);
+                    break;
+                default:
+                    addCell(formula, formula(formula), CellType.NUMERIC, null, formula.getValue(), NumberToTextConverter.toText(formula.getValue()));
+            }
+        }
+
+        private void addCell(CellValueRecordInterface record, @Nullable String formula, CellType type,
+                             @Nullable String string, double number, @Nullable String raw) {
+            if (record.getRow() != rowNum) {
+                finishRow();
+                emitDeclared(record.getRow());
+                rowNum = record.getRow();
+            }
+            if (rowNum < start) return;
+            cells.add(new ValueCell(rowNum, record.getColumn(), type, formula, string, number, raw,
+                    (short) formats.getFormatIndex(record), formats.getFormatString(record), date1904));
+        }
+
+        private void finishRow() {
+            if (!cells.isEmpty()) {
+                ready.add(new ValueRow(rowNum, cells));
+                cells = new ArrayList<>();
+            }
+        }
+
+        /**
+         * Возвращает ряды без ячеек, объявленные записями {@link RowRecord} до ряда {@code next}
+         * @param next Номер ряда, ячейки которого начинаются
+         */
+        private void emitDeclared(int next) {
+            while (!declared.isEmpty() && declared.peek() <= next) {
+                int declaredRow = declared.poll();
+                if (declaredRow < next) ready.add(new ValueRow(declaredRow, List.of()));
+            }
+        }
+
+        private void finishSheet() {
+            flushFormula();
+            finishRow();
+            emitDeclared(Integer.MAX_VALUE);
+        }
+
+        private String formula(FormulaRecord record) {
+            try {
+                return HSSFFormulaParser.toFormulaString(stubWorkbook, record.getParsedExpression());
+            } catch (RuntimeException e) {
+                return "";
+            }
+        }
+    }
+
+    /**
+     * Поток, читающий книгу под общей блокировкой файловой системы.
+     * <p>{@link POIFSFileSystem}, открытая из файла, читает блоки через общий канал со сменой позиции,
+     * поэтому листы, читаемые одновременно из разных потоков, не должны читать блоки параллельно</p>
+     */
+    private final class LockedInputStream extends FilterInputStream {
+        private LockedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            synchronized (fs) {
+                return super.read();
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            synchronized (fs) {
+                return super.read(b, off, len);
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            synchronized (fs) {
+                return super.skip(n);
+            }
+        }
+    }
+
+    private static boolean isCellRecord(short sid) {
+        switch (sid) {
+            case NumberRecord.sid:
+            case RKRecord.sid:
+            case MulRKRecord.sid:
+            case LabelSSTRecord.sid:
+            case LabelRecord.sid:
+            case BoolErrRecord.sid:
+            case BlankRecord.sid:
+            case MulBlankRecord.sid:
+            case FormulaRecord.sid:
+            case StringRecord.sid:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Способ сравнения заголовка столбца с текстом ячейки ряда заголовков.
+ * <p>Пробелы по краям не учитываются ни в одном из способов</p>
+ */
+public enum HeaderMatching {
+    /**
+     * Точное совпадение
+     */
+    EXACT,
+    /**
+     * Совпадение без учёта регистра
+     */
+    IGNORE_CASE,
+    /**
+     * Совпадение без учёта регистра, знаков препинания и количества пробелов между словами:
+     * {@code "Unit  price, USD"} совпадает с {@code "unit price usd"}
+     */
+    NORMALIZED;
+
+    private static final Pattern PUNCTUATION = Pattern.compile("[\\p{Punct}\\s]+");
+
+    /**
+     * @param header Текст заголовка
+     * @return Ключ, по которому сравниваются заголовки этим способом
+     */
+    String key(String header) {
+        String trimmed = header.trim();
+        switch (this) {
+            case IGNORE_CASE:
+                return trimmed.toLowerCase(Locale.ROOT);
+            case NORMALIZED:
+                return PUNCTUATION.matcher(trimmed.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+            default:
+                return trimmed;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Поиск всех подстрок из набора за один проход по тексту (автомат Ахо -- Корасик).
+ * <p>Переходы каждого состояния хранятся отсортированным массивом символов, поиск перехода -- двоичный.
+ * Номера подстрок, оканчивающихся в состоянии, уже включают подстроки по суффиксным ссылкам,
+ * так что на каждом символе текста не нужно ходить по ссылкам отдельно. Автомат неизменяем и потокобезопасен</p>
+ */
+final class MarkerMatcher {
+    private static final int[] NONE = new int[0];
+
+    private final char[][] keys;
+    private final int[][] targets;
+    private final int[] fail;
+    private final int[][] outputs;
+    private final int size;
+
+    /**
+     * @param markers Непустые подстроки. Номер подстроки -- её индекс в массиве
+     */
+    MarkerMatcher(String[] markers) {
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        ends.add(new ArrayList<>());
+        for (int id = 0; id < markers.length; id++) {
+            int state = 0;
+            for (int i = 0; i < markers[id].length(); i++) {
+                Integer next = trie.get(state).get(markers[id].charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(state).put(markers[id].charAt(i), next);
+                    trie.add(new TreeMap<>());
+                    ends.add(new ArrayList<>());
+                }
+                state = next;
+            }
+            ends.get(state).add(id);
+        }
+        int states = trie.size();
+        keys = new char[states][];
+        targets = new int[states][];
+        for (int state = 0; state < states; state++) {
+            TreeMap<Character, Integer> children = trie.get(state);
+            keys[state] = new char[children.size()];
+            targets[state] = new int[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> child : children.entrySet()) {
+                keys[state][i] = child.getKey();
+                targets[state][i++] = child.getValue();
+            }
+        }
+        fail = new int[states];
+        outputs = new int[states][];
+        outputs[0] = NONE;
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[0]) queue.add(child);
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            int[] own = ends.get(state).stream().mapToInt(Integer::intValue).toArray();
+            int[] inherited = outputs[fail[state]];
+            outputs[state] = inherited.length == 0 ? own : concat(own, inherited);
+            for (int i = 0; i < keys[state].length; i++) {
+                int child = targets[state][i];
+                fail[child] = state == 0 ? 0 : next(fail[state], keys[state][i]);
+                queue.add(child);
+            }
+        }
+        size = markers.length;
+    }
+
+    /**
+     * @return Количество подстрок в наборе
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param text Текст
+     * @param found Куда отмечаются номера найденных подстрок
+     */
+    void match(CharSequence text, BitSet found) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = next(state, text.charAt(i));
+            for (int id : outputs[state]) found.set(id);
+        }
+    }
+
+    private int next(int state, char c) {
+        while (true) {
+            int i = Arrays.binarySearch(keys[state], c);
+            if (i >= 0) return targets[state][i];
+            if (state == 0) return 0;
+            state = fail[state];
+        }
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        int[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
@@ -0,0 +1,172 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Режим параллельного заполнения DTO одной таблицы.
+ * <p>Поиск начала и конца таблицы идёт последовательно в вызывающем потоке. Найденные ряды
+ * собираются в порции, порции заполняются в пуле потоков, а готовые DTO передаются потребителю
+ * в вызывающем потоке -- в порядке листа или в порядке готовности порций</p>
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+final class ParallelFilling {
+    /**
+     * Количество рядов в одной порции, отдаваемой в пул
+     */
+    private static final int CHUNK_SIZE = 256;
+    private final int threads;
+    private final @Nullable Executor executor;
+    private final boolean ordered;
+
+    /**
+     * @param threads Количество потоков собственного пула, создаваемого на время парсинга таблицы
+     * @param ordered Передавать ли DTO потребителю в порядке рядов листа
+     * @return Режим с собственным пулом
+     */
+    static ParallelFilling ofThreads(int threads, boolean ordered) {
+        if (threads < 1) throw new IllegalArgumentException("Количество потоков должно быть положительным, но пришло " + threads);
+        return new ParallelFilling(threads, null, ordered);
+    }
+
+    /**
+     * @param executor Пул, в котором заполняются DTO. Закрывать его должен вызывающий код
+     * @param ordered Передавать ли DTO потребителю в порядке рядов листа
+     * @return Режим с внешним пулом
+     */
+    static ParallelFilling ofExecutor(Executor executor, boolean ordered) {
+        int threads = executor instanceof ForkJoinPool ? ((ForkJoinPool) executor).getParallelism() : Runtime.getRuntime().availableProcessors();
+        return new ParallelFilling(threads, executor, ordered);
+    }
+
+    /**
+     * Заполняет DTO из рядов таблицы и передаёт их потребителю
+     * @param rows Ряды таблицы, уже ограниченные условиями начала и конца
+     * @param materializer Создаёт и заполняет DTO из ряда. Вызывается из потоков пула
+     * @param consumer Потребитель DTO. Вызывается только из вызывающего потока
+     * @param <T> Тип DTO
+     */
+    <T> void fill(Stream<XLSRow> rows, Function<XLSRow, T> materializer, Consumer<? super T> consumer) {
+        ExecutorService ownPool = executor == null ? new ForkJoinPool(threads) : null;
+        Executor pool = ownPool == null ? executor : ownPool;
+        int window = threads * 2;
+        Deque<FutureTask<List<T>>> inFlight = new ArrayDeque<>();
+        CompletionService<List<T>> completion = ordered ? null : new ExecutorCompletionService<>(pool);
+        Set<Future<List<T>>> submitted = new HashSet<>();
+        Running running = new Running();
+        boolean completed = false;
+        try {
+            Iterator<XLSRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                List<XLSRow> chunk = new ArrayList<>(CHUNK_SIZE);
+                while (chunk.size() < CHUNK_SIZE && iterator.hasNext()) chunk.add(iterator.next());
+                Callable<List<T>> task = () -> {
+                    if (!running.enter()) return List.of();
+                    try {
+                        return materialize(chunk, materializer, running);
+                    } finally {
+                        running.exit();
+                    }
+                };
+                if (ordered) {
+                    FutureTask<List<T>> future = new FutureTask<>(task);
+                    inFlight.add(future);
+                    pool.execute(future);
+                    while (!inFlight.isEmpty() && (inFlight.size() >= window || inFlight.peek().isDone()))
+                        deliver(inFlight.poll(), consumer);
+                } else {
+                    submitted.add(completion.submit(task));
+                    if (submitted.size() >= window) deliverNext(completion, submitted, consumer);
+                }
+            }
+            while (!inFlight.isEmpty()) deliver(inFlight.poll(), consumer);
+            while (!submitted.isEmpty()) deliverNext(completion, submitted, consumer);
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            if (!completed) {
+                running.abort();
+                inFlight.forEach(future -> future.cancel(true));
+                submitted.forEach(future -> future.cancel(true));
+                running.awaitIdle();
+            }
+            if (ownPool != null) ownPool.shutdownNow();
+        }
+    }
+
+    private static <T> List<T> materialize(List<XLSRow> chunk, Function<XLSRow, T> materializer, Running running) {
+        List<T> result = new ArrayList<>(chunk.size());
+        for (XLSRow row : chunk) {
+            if (running.aborted) break;
+            result.add(materializer.apply(row));
+        }
+        return result;
+    }
+
+    private static <T> void deliverNext(CompletionService<List<T>> completion, Set<Future<List<T>>> submitted, Consumer<? super T> consumer) throws InterruptedException {
+        Future<List<T>> future = completion.take();
+        submitted.remove(future);
+        deliver(future, consumer);
+    }
+
+    private static <T> void deliver(Future<List<T>> future, Consumer<? super T> consumer) throws InterruptedException {
+        try {
+            future.get().forEach(consumer);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Учёт порций, выполняющихся в пуле. После ошибки новые порции не начинаются, начатые прекращают заполнять ряды,
+     * а вызывающий поток дожидается их, чтобы наполнители не вызывались после выхода из {@link #fill}
+     */
+    private static final class Running {
+        private volatile boolean aborted;
+        private int active;
+
+        synchronized boolean enter() {
+            if (aborted) return false;
+            active++;
+            return true;
+        }
+
+        synchronized void exit() {
+            if (--active == 0) notifyAll();
+        }
+
+        synchronized void abort() {
+            aborted = true;
+        }
+
+        synchronized void awaitIdle() {
+            boolean interrupted = false;
+            while (active > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+}
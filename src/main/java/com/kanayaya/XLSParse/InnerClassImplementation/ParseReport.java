@@ -0,0 +1,66 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Результат вызова {@code parse}: статистика по каждой таблице цепочки {@link XLSTableParser}.
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class ParseReport {
+    private final @NonNull List<TableReport> tables;
+    private final @NonNull List<TitleIndex.Rows> titleRows;
+    private final boolean fromCache;
+
+    /**
+     * @return Статистика таблиц в порядке их задания в цепочке
+     */
+    public @NonNull List<TableReport> getTables() {
+        return tables;
+    }
+
+    /**
+     * @return Ряды заголовков, найденные по {@link TitleIndex} таблицами цепочки, по одному набору на индекс и лист
+     */
+    public @NonNull List<TitleIndex.Rows> getTitleRows() {
+        return titleRows;
+    }
+
+    /**
+     * @return {@code true}, если DTO переданы из {@link ParseResultCache}, а не разобраны из книги.
+     * Тогда статистика таблиц и ряды заголовков {@link TitleIndex} -- сохранённые при исходном парсинге
+     */
+    public boolean isFromCache() {
+        return fromCache;
+    }
+
+    /**
+     * @return Общее количество DTO, созданных во всех таблицах
+     */
+    public long getRowsEmitted() {
+        return tables.stream().mapToLong(TableReport::getRowsEmitted).sum();
+    }
+
+    /**
+     * @return Общее количество отсутствующих ячеек во всех таблицах
+     */
+    public long getNullCellCount() {
+        return tables.stream().mapToLong(TableReport::getNullCellCount).sum();
+    }
+
+    /**
+     * @return Ошибки рядов, пропущенных по {@link RowErrorPolicy}, во всех таблицах
+     */
+    public @NonNull List<RowParseException> getErrors() {
+        return tables.stream().flatMap(table -> table.getErrors().stream()).collect(Collectors.toUnmodifiableList());
+    }
+
+    @Override
+    public String toString() {
+        return tables.stream().map(TableReport::toString).collect(Collectors.joining("\n"));
+    }
+}
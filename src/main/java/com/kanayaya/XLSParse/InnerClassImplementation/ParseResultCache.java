@@ -0,0 +1,543 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Кэш результатов парсинга в каталоге на локальном диске: повторный парсинг неизменённого файла той же инструкцией
+ * передаёт потребителям сохранённые DTO вместо чтения книги.
+ * <p>Подключается через {@link XLSTableParser#parse(Path, ParseResultCache)}. Ключ записи -- SHA-256 от содержимого
+ * файла и версии инструкции, заданной в {@link XLSTableParser#withPlanVersion(String)}: сами условия и наполнители
+ * (лямбды) сравнить нельзя, поэтому версию нужно менять при любом изменении инструкции, влияющем на DTO,
+ * в том числе локали и способа получения формул</p>
+ * <p>DTO сохраняются стандартной сериализацией Java и должны быть {@link java.io.Serializable}. Если DTO не сериализуется
+ * или получатель таблицы подменяет генератор DTO (как {@link XLSTableParser.ColumnCollector#thenPutInto} у таблиц {@code collectColumns()}), парсинг проходит как обычно,
+ * но результат не сохраняется. При попадании DTO передаются в порядке, в котором их получили при исходном парсинге,
+ * а {@link ParseReport} содержит его статистику и ряды заголовков {@link TitleIndex}</p>
+ * <p>При чтении записи допускаются только классы, которые были сериализованы при её сохранении (их имена хранятся
+ * в конце записи), статистика парсинга и значения из {@code java.lang}, {@code java.util}, {@code java.time}
+ * и {@code java.math}. Классы платформы из других пакетов не допускаются никогда: если такой класс встречается
+ * в DTO или в ошибке ряда уже при записи, результат не сохраняется, а запись с таким классом считается повреждённой</p>
+ * <p>Когда суммарный размер записей превышает бюджет, удаляются давно не использованные. Один каталог можно
+ * разделять между парсерами и потоками: записи появляются в каталоге целиком, переименованием готового файла</p>
+ */
+@Slf4j
+public final class ParseResultCache {
+    private static final String SUFFIX = ".bin";
+    /**
+     * Версия формата записей. Записи другого формата считаются промахами и удаляются
+     */
+    private static final int FORMAT = 3;
+    /**
+     * Наибольшая вложенность объектов в записи
+     */
+    private static final int MAX_DEPTH = 64;
+    /**
+     * Наибольшая длина массива в записи
+     */
+    private static final int MAX_ARRAY = 1 << 24;
+    /**
+     * Пакеты JDK, классы которых допускаются в записи. Подпакеты не допускаются
+     */
+    private static final Set<String> JDK_PACKAGES = Set.of("java.lang", "java.util", "java.time", "java.math");
+    /**
+     * Пакеты классов платформы. Их классы допускаются в записи только из {@link #JDK_PACKAGES}
+     */
+    private static final List<String> PLATFORM_PACKAGES = List.of("java.", "javax.", "jdk.", "sun.", "com.sun.");
+    /**
+     * Наибольшее количество имён классов в записи
+     */
+    private static final int MAX_CLASSES = 1 << 16;
+    /**
+     * Через сколько DTO сбрасывать таблицу ссылок сериализации, чтобы она не удерживала все записанные DTO
+     */
+    private static final int RESET_EVERY = 1024;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param directory Каталог записей. Создаётся, если его нет
+     * @param maxBytes Бюджет суммарного размера записей в байтах
+     * @throws IOException Если каталог не удалось создать
+     * @throws IllegalArgumentException Если бюджет не положителен
+     */
+    public ParseResultCache(@NonNull Path directory, long maxBytes) throws IOException {
+        if (maxBytes <= 0) throw new IllegalArgumentException("Бюджет кэша результатов должен быть положительным, но пришло " + maxBytes);
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param file Файл книги
+     * @param chain Цепочка с заданной версией
+     * @return Ключ записи: SHA-256 от версии инструкции, количества таблиц и содержимого файла
+     */
+    String key(Path file, ParserChain chain) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(String.valueOf(chain.getPlanVersion()).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(Integer.toString(chain.getTableCount()).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(file)) {
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) digest.update(buffer, 0, read);
+        }
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return key.toString();
+    }
+
+    /**
+     * Передаёт сохранённые DTO получателям таблиц цепочки.
+     * <p>Если запись не читается до того, как передан первый DTO, она удаляется, и вызов считается промахом</p>
+     * @param key Ключ записи
+     * @param chain Цепочка, таблицам которой передаются DTO
+     * @return Статистика исходного парсинга или {@code null} при промахе
+     * @throws IOException Если запись оказалась повреждена после того, как часть DTO уже передана
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable ParseReport replay(String key, ParserChain chain) throws IOException {
+        Path entry = directory.resolve(key + SUFFIX);
+        FileChannel file;
+        try {
+            file = FileChannel.open(entry);
+        } catch (NoSuchFileException e) {
+            misses.increment();
+            return null;
+        }
+        TableFiller<?>[] tables = chain.tables();
+        List<TitleIndex> indexes = chain.titleIndexes();
+        List<TableSink<Object>> sinks = new ArrayList<>(tables.length);
+        long delivered = 0;
+        try (ObjectInputStream in = open(file)) {
+            if (in.readInt() != FORMAT || in.readInt() != tables.length) throw new InvalidObjectException("Формат записи не совпадает");
+            for (TableFiller<?> table : tables) sinks.add((TableSink<Object>) table.newSink());
+            for (int index = in.readInt(); index >= 0; index = in.readInt()) {
+                if (index >= tables.length) throw new InvalidObjectException("Неверный номер таблицы: " + index);
+                Object dto = in.readObject();
+                sinks.get(index).accept(dto);
+                delivered++;
+            }
+            Object reports = in.readObject();
+            if (!(reports instanceof List)) throw new InvalidObjectException("Статистика парсинга не найдена");
+            List<TitleIndex.Rows> titleRows = readTitleRows(in, indexes);
+            for (TableSink<Object> sink : sinks) sink.finish();
+            sinks.clear();
+            touch(entry);
+            hits.increment();
+            return new ParseReport(List.copyOf((List<TableReport>) reports), titleRows, true);
+        } catch (IOException | ClassNotFoundException e) {
+            sinks.forEach(TableSink::abort);
+            Files.deleteIfExists(entry);
+            if (delivered > 0) throw new IOException(String.format("Запись кэша результатов %s повреждена, передано DTO: %d", entry, delivered), e);
+            log.warn("Запись кэша результатов {} не читается и удалена, книга будет разобрана заново", entry, e);
+            misses.increment();
+            return null;
+        } catch (RuntimeException | Error e) {
+            sinks.forEach(TableSink::abort);
+            throw e;
+        }
+    }
+
+    /**
+     * Читает ряды заголовков, записанные в {@link Recording#commit(ParseReport)}
+     * @param indexes Индексы заголовков цепочки
+     */
+    private static List<TitleIndex.Rows> readTitleRows(ObjectInputStream in, List<TitleIndex> indexes) throws IOException, ClassNotFoundException {
+        int count = in.readInt();
+        if (count < 0) throw new InvalidObjectException("Неверное количество листов с заголовками: " + count);
+        List<TitleIndex.Rows> titleRows = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            int position = in.readInt();
+            if (position < 0 || position >= indexes.size()) throw new InvalidObjectException("Неверный номер индекса заголовков: " + position);
+            TitleIndex index = indexes.get(position);
+            String sheetName = in.readUTF();
+            Object rows = in.readObject();
+            if (!(rows instanceof int[][]) || ((int[][]) rows).length != index.getTitles().size()) {
+                throw new InvalidObjectException("Ряды заголовков не совпадают с индексом " + index);
+            }
+            for (int[] title : (int[][]) rows) {
+                if (title == null) throw new InvalidObjectException("Ряды заголовков не совпадают с индексом " + index);
+            }
+            titleRows.add(new TitleIndex.Rows(index, sheetName, (int[][]) rows));
+        }
+        return List.copyOf(titleRows);
+    }
+
+    /**
+     * @param channel Канал записи. Закрывается вместе с потоком, а также если поток не удалось открыть
+     * @return Поток записи с фильтром классов
+     */
+    private ObjectInputStream open(FileChannel channel) throws IOException {
+        try {
+            Set<String> classes = readClasses(channel);
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0))));
+            in.setObjectInputFilter(filter(classes));
+            return in;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Читает имена классов, записанные в конце записи в {@link Recording#commit(ParseReport)}: за ними следует
+     * смещение их начала. Позиция канала после чтения не определена
+     */
+    private static Set<String> readClasses(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < Long.BYTES) throw new InvalidObjectException("Запись обрезана");
+        ByteBuffer tail = ByteBuffer.allocate(Long.BYTES);
+        while (tail.hasRemaining()) {
+            if (channel.read(tail, size - Long.BYTES + tail.position()) < 0) throw new InvalidObjectException("Запись обрезана");
+        }
+        long offset = tail.flip().getLong();
+        if (offset < 0 || offset > size - Long.BYTES) throw new InvalidObjectException("Неверное смещение списка классов: " + offset);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(offset))));
+        int count = in.readInt();
+        if (count < 0 || count > MAX_CLASSES) throw new InvalidObjectException("Неверное количество классов: " + count);
+        Set<String> classes = new HashSet<>();
+        for (int i = 0; i < count; i++) classes.add(in.readUTF());
+        return classes;
+    }
+
+    /**
+     * @param recorded Имена классов, сериализованных при сохранении записи
+     * @return Фильтр, допускающий в записи только известные классы и ограничивающий её вложенность и размер
+     */
+    private ObjectInputFilter filter(Set<String> recorded) {
+        return info -> {
+            if (info.depth() > MAX_DEPTH || info.arrayLength() > MAX_ARRAY || info.streamBytes() > maxBytes) return ObjectInputFilter.Status.REJECTED;
+            Class<?> type = info.serialClass();
+            if (type == null) return ObjectInputFilter.Status.UNDECIDED;
+            while (type.isArray()) type = type.getComponentType();
+            return type.isPrimitive() || type == TableReport.class || type == RowParseException.class
+                    || JDK_PACKAGES.contains(type.getPackageName()) || recorded.contains(type.getName()) && !isPlatform(type)
+                    ? ObjectInputFilter.Status.ALLOWED : ObjectInputFilter.Status.REJECTED;
+        };
+    }
+
+    /**
+     * @return {@code true}, если класс из пакета платформы, не входящего в {@link #JDK_PACKAGES}
+     */
+    private static boolean isPlatform(Class<?> type) {
+        String name = type.getName();
+        return !JDK_PACKAGES.contains(type.getPackageName()) && PLATFORM_PACKAGES.stream().anyMatch(name::startsWith);
+    }
+
+    /**
+     * @param key Ключ записи
+     * @param chain Цепочка, DTO таблиц которой записываются
+     * @return Запись результата, которую нужно закрыть после парсинга
+     * @throws IOException Если не удалось создать временный файл в каталоге кэша
+     */
+    Recording record(String key, ParserChain chain) throws IOException {
+        return new Recording(key, Files.createTempFile(directory, key, ".tmp"), chain.getTableCount(), chain.titleIndexes());
+    }
+
+    private static void touch(Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            log.warn("Не удалось отметить использование записи кэша результатов {}", entry, e);
+        }
+    }
+
+    /**
+     * Удаляет давно не использованные записи, пока их суммарный размер больше бюджета
+     */
+    private synchronized void trim() throws IOException {
+        List<Entry> entries = entries();
+        long bytes = entries.stream().mapToLong(entry -> entry.size).sum();
+        entries.sort(Comparator.comparingLong(entry -> entry.used));
+        for (Entry entry : entries) {
+            if (bytes <= maxBytes) break;
+            Files.deleteIfExists(entry.path);
+            bytes -= entry.size;
+        }
+    }
+
+    private List<Entry> entries() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Entry> entries = new ArrayList<>();
+            for (Path path : files.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).collect(Collectors.toList())) {
+                try {
+                    entries.add(new Entry(path, Files.size(path), Files.getLastModifiedTime(path).toMillis()));
+                } catch (NoSuchFileException e) {
+                    // запись удалена другим парсером
+                }
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * @return Бюджет суммарного размера записей в байтах
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return Суммарный размер записей в каталоге в байтах
+     * @throws IOException Если каталог не читается
+     */
+    public long getBytes() throws IOException {
+        return entries().stream().mapToLong(entry -> entry.size).sum();
+    }
+
+    /**
+     * @return Количество записей в каталоге
+     * @throws IOException Если каталог не читается
+     */
+    public int size() throws IOException {
+        return entries().size();
+    }
+
+    /**
+     * @return Количество парсингов, DTO которых переданы из кэша
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Количество парсингов, для которых записи не было
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Удаляет все записи из каталога. Счётчики не сбрасываются
+     * @throws IOException Если каталог не читается или запись не удаляется
+     */
+    public synchronized void clear() throws IOException {
+        for (Entry entry : entries()) Files.deleteIfExists(entry.path);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Кэш результатов %s: бюджет %d байт, попаданий %d, промахов %d", directory, maxBytes, getHits(), getMisses());
+    }
+
+    private static final class Entry {
+        private final Path path;
+        private final long size;
+        private final long used;
+
+        private Entry(Path path, long size, long used) {
+            this.path = path;
+            this.size = size;
+            this.used = used;
+        }
+    }
+
+    /**
+     * Поток сериализации, запоминающий имена всех записанных классов. Классы платформы вне {@link #JDK_PACKAGES}
+     * отклоняются уже при записи, потому что фильтр чтения их не допустит
+     */
+    private static final class ClassRecordingOutput extends ObjectOutputStream {
+        private final Set<String> classes = new TreeSet<>();
+
+        private ClassRecordingOutput(OutputStream out) throws IOException {
+            super(out);
+        }
+
+        @Override
+        protected void annotateClass(Class<?> cl) throws IOException {
+            Class<?> type = cl;
+            while (type.isArray()) type = type.getComponentType();
+            if (type.isPrimitive() || JDK_PACKAGES.contains(type.getPackageName())) return;
+            if (isPlatform(type)) throw new InvalidClassException(type.getName(), "класс платформы не допускается в записи кэша");
+            classes.add(type.getName());
+        }
+
+        @Override
+        protected void annotateProxyClass(Class<?> cl) throws IOException {
+            throw new InvalidClassException(cl.getName(), "прокси-классы не допускаются в записи кэша");
+        }
+    }
+
+    /**
+     * Запись результата одного парсинга во временный файл. Попадает в кэш только после {@link #commit(ParseReport)}.
+     * <p>Ошибки записи не прерывают парсинг: запись прекращается, и результат не сохраняется</p>
+     */
+    final class Recording implements Closeable {
+        private final String key;
+        private final Path temp;
+        /**
+         * Индексы заголовков цепочки: ряды заголовков записываются с номером индекса в этом списке
+         */
+        private final List<TitleIndex> indexes;
+        private final ClassRecordingOutput out;
+        private long written;
+        private boolean disabled;
+        private boolean committed;
+
+        private Recording(String key, Path temp, int tableCount, List<TitleIndex> indexes) throws IOException {
+            this.key = key;
+            this.temp = temp;
+            this.indexes = indexes;
+            try {
+                this.out = new ClassRecordingOutput(new BufferedOutputStream(Files.newOutputStream(temp)));
+                out.writeInt(FORMAT);
+                out.writeInt(tableCount);
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+        }
+
+        /**
+         * @param index Порядковый номер таблицы в цепочке
+         * @param sink Получатель DTO таблицы
+         * @return Получатель, записывающий каждый DTO перед передачей в {@code sink}
+         */
+        <T> TableSink<T> sink(int index, TableSink<T> sink) {
+            return new TableSink<>() {
+                @Override
+                public Supplier<T> generator(Supplier<T> generator) {
+                    Supplier<T> own = sink.generator(generator);
+                    if (own != generator) disable(String.format("получатель таблицы %d сам создаёт DTO", index), null);
+                    return own;
+                }
+
+                @Override
+                public void accept(T dto) {
+                    write(index, dto);
+                    sink.accept(dto);
+                }
+
+                @Override
+                public void finish() {
+                    sink.finish();
+                }
+
+                @Override
+                public void abort() {
+                    sink.abort();
+                }
+            };
+        }
+
+        /**
+         * Таблицы могут выполняться в разных потоках, поэтому DTO записываются по одному
+         */
+        private synchronized void write(int index, Object dto) {
+            if (disabled) return;
+            try {
+                out.writeInt(index);
+                out.writeUnshared(dto);
+                if (++written % RESET_EVERY == 0) out.reset();
+            } catch (IOException e) {
+                disable("DTO не сериализуется или содержит класс платформы, недопустимый в записи", e);
+            }
+        }
+
+        private synchronized void disable(String reason, @Nullable Exception e) {
+            if (disabled) return;
+            disabled = true;
+            log.warn("Результат парсинга не будет сохранён в кэш: {}", reason, e);
+        }
+
+        /**
+         * Сохраняет запись в кэш и удаляет давно не использованные записи сверх бюджета
+         * @param report Статистика парсинга и ряды заголовков, сохраняемые вместе с DTO
+         */
+        void commit(ParseReport report) {
+            synchronized (this) {
+                if (disabled) return;
+                try {
+                    out.writeInt(-1);
+                    out.writeObject(new ArrayList<>(report.getTables()));
+                    out.writeInt(report.getTitleRows().size());
+                    for (TitleIndex.Rows rows : report.getTitleRows()) {
+                        out.writeInt(indexes.indexOf(rows.getIndex()));
+                        out.writeUTF(rows.getSheetName());
+                        out.writeObject(rows.byTitle());
+                    }
+                    out.close();
+                    long offset = Files.size(temp);
+                    try (DataOutputStream trailer = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp, StandardOpenOption.APPEND)))) {
+                        trailer.writeInt(out.classes.size());
+                        for (String name : out.classes) trailer.writeUTF(name);
+                        trailer.writeLong(offset);
+                    }
+                } catch (IOException e) {
+                    disable("статистика не сериализуется", e);
+                    return;
+                }
+                committed = true;
+            }
+            try {
+                Files.move(temp, directory.resolve(key + SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                trim();
+            } catch (IOException e) {
+                log.warn("Не удалось сохранить результат парсинга в кэш {}", directory, e);
+            }
+        }
+
+        /**
+         * Удаляет временный файл, если запись не сохранена в кэш
+         */
+        @Override
+        public void close() throws IOException {
+            synchronized (this) {
+                if (!committed) {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        // запись всё равно удаляется
+                    }
+                }
+            }
+            Files.deleteIfExists(temp);
+        }
+    }
+}
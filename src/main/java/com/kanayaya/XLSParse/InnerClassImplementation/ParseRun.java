@@ -0,0 +1,122 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Один проход цепочки {@link ParserChain} по книге: книга, настройки цепочки и собираемая статистика таблиц
+ */
+final class ParseRun {
+    @Getter
+    private final @NonNull XLSBook book;
+    /**
+     * Форматирование ячеек для методов {@code *Stringified}
+     */
+    @Getter
+    private final @NonNull CellFormatting formatting;
+    /**
+     * Каждая какая отсутствующая ячейка пишется в лог. 0 -- не писать
+     */
+    @Getter
+    private final int nullCellLogEvery;
+    /**
+     * Подсказки рядов начала таблиц или {@code null}, если они не используются
+     */
+    @Getter
+    private final @Nullable StartRowCache startRows;
+    /**
+     * Запись DTO для {@link ParseResultCache} или {@code null}, если результат не кэшируется
+     */
+    private final @Nullable ParseResultCache.Recording recording;
+    /**
+     * Статистика таблиц по их порядковым номерам в цепочке. Таблицы разных отрезков пишут в разные элементы
+     */
+    private final TableReport[] tables;
+    /**
+     * Ряды заголовков {@link TitleIndex}, найденные на листах за этот проход, по индексу и имени листа
+     */
+    private final Map<Map.Entry<TitleIndex, String>, TitleIndex.Rows> titleRows = new ConcurrentHashMap<>();
+    /**
+     * Заголовки последнего проверенного ряда по индексу и имени листа
+     */
+    private final Map<Map.Entry<TitleIndex, String>, TitleIndex.Matched> titleMatches = new ConcurrentHashMap<>();
+
+    ParseRun(@NonNull XLSBook book, @NonNull CellFormatting formatting, int nullCellLogEvery, @Nullable StartRowCache startRows,
+             @Nullable ParseResultCache.Recording recording, int tableCount) {
+        this.book = book;
+        this.formatting = formatting;
+        this.nullCellLogEvery = nullCellLogEvery;
+        this.startRows = startRows;
+        this.recording = recording;
+        this.tables = new TableReport[tableCount];
+    }
+
+    /**
+     * @param index Порядковый номер таблицы в цепочке
+     * @param report Статистика таблицы
+     */
+    void report(int index, @NonNull TableReport report) {
+        tables[index] = report;
+    }
+
+    /**
+     * @param index Порядковый номер таблицы в цепочке
+     * @param sink Получатель DTO таблицы
+     * @return Этот же получатель или, если результат кэшируется, получатель, записывающий DTO перед передачей
+     */
+    <T> TableSink<T> sink(int index, @NonNull TableSink<T> sink) {
+        return recording == null ? sink : recording.sink(index, sink);
+    }
+
+    /**
+     * Находит ряды заголовков индекса на листе при первом запросе, следующие запросы за этот проход получают те же ряды
+     * @param index Индекс заголовков
+     * @param sheet Лист
+     * @return Ряды заголовков на листе
+     */
+    TitleIndex.Rows titleRows(@NonNull TitleIndex index, @NonNull XLSSheet sheet) {
+        return titleRows.computeIfAbsent(Map.entry(index, sheet.getSheetName()), key -> index.scan(sheet));
+    }
+
+    /**
+     * @param index Индекс заголовков
+     * @param sheet Лист
+     * @return Заголовки последнего проверенного ряда листа, общие для таблиц этого прохода
+     */
+    TitleIndex.Matched titleMatches(@NonNull TitleIndex index, @NonNull XLSSheet sheet) {
+        return titleMatches.computeIfAbsent(Map.entry(index, sheet.getSheetName()), key -> new TitleIndex.Matched(index, sheet.getSheetName()));
+    }
+
+    /**
+     * @return Статистика выполненных таблиц в порядке цепочки
+     */
+    ParseReport toReport() {
+        return new ParseReport(Arrays.stream(tables).filter(Objects::nonNull).collect(Collectors.toUnmodifiableList()),
+                foundTitleRows(), false);
+    }
+
+    /**
+     * Ряды заголовков, найденные за проход: полным просмотром листа или, в {@link XLSTableParser#inSinglePass()},
+     * среди рядов, проверенных таблицами при поиске начала
+     * @return Ряды заголовков по листам и по первому найденному ряду, чтобы порядок не зависел от порядка выполнения таблиц
+     */
+    private List<TitleIndex.Rows> foundTitleRows() {
+        Map<Map.Entry<TitleIndex, String>, TitleIndex.Rows> found = new HashMap<>(titleRows);
+        titleMatches.forEach((key, matched) -> found.putIfAbsent(key, matched.toRows()));
+        return found.values().stream()
+                .sorted(Comparator.comparing(TitleIndex.Rows::getSheetName)
+                        .thenComparingInt(TitleIndex.Rows::firstRow)
+                        .thenComparing(rows -> String.join("\n", rows.getIndex().getTitles())))
+                .collect(Collectors.toUnmodifiableList());
+    }
+}
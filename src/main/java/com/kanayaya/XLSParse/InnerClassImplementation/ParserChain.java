@@ -0,0 +1,311 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Цепочка таблиц, заданных в {@link XLSTableParser}, разбитая на независимые отрезки.
+ * <p>Отрезок -- это таблицы, связанные через {@link XLSTableParser#thenContinueSameSheet()}:
+ * каждая следующая начинается с ряда, на котором закончилась предыдущая, поэтому выполняются они по порядку.
+ * Таблицы после {@link XLSTableParser#thenFromSheet(int)} и {@link XLSTableParser#thenRestartSameSheet()}
+ * начинают новый отрезок, не зависящий от предыдущих</p>
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+final class ParserChain {
+    /**
+     * Завершённые отрезки. Каждый начинается с нулевого ряда
+     */
+    private final List<Segment> segments;
+    /**
+     * Отрезок, к которому ещё можно присоединить таблицу, или {@code null}, если он пуст
+     */
+    private final @Nullable Segment open;
+    /**
+     * Пул для одновременного выполнения отрезков или {@code null} для выполнения по порядку
+     */
+    private final @Nullable Executor executor;
+    /**
+     * Форматирование ячеек для методов {@code *Stringified} во всех таблицах цепочки
+     */
+    private final CellFormatting formatting;
+    /**
+     * Каждая какая отсутствующая ячейка пишется в лог. 0 -- не писать
+     */
+    private final int nullCellLogEvery;
+    /**
+     * Количество таблиц в цепочке. Порядковый номер следующей таблицы
+     */
+    private final int tableCount;
+    /**
+     * Читать ли лист один раз для всех отрезков, которые его парсят
+     */
+    private final boolean singlePass;
+    /**
+     * Подсказки рядов начала таблиц или {@code null}, если они не используются
+     */
+    private final @Nullable StartRowCache startRows;
+    /**
+     * Способ получения значений формул или {@code null}, если книга читается как есть
+     */
+    private final @Nullable FormulaEvaluation formulas;
+    /**
+     * Версия инструкции для {@link ParseResultCache} или {@code null}, если она не задана
+     */
+    private final @Nullable String planVersion;
+
+    /**
+     * @return Цепочка без таблиц
+     */
+    static ParserChain empty() {
+        return new ParserChain(List.of(), null, null, CellFormatting.DEFAULT, 0, 0, false, null, null, null);
+    }
+
+    /**
+     * @param table Таблица, продолжающая текущий отрезок
+     * @return Цепочка, в которой следующая таблица начнётся с ряда, на котором закончилась {@code table}
+     */
+    ParserChain continuedWith(@NonNull TableFiller<?> table) {
+        return new ParserChain(segments, append(table), executor, formatting, nullCellLogEvery, tableCount + 1, singlePass, startRows, formulas, planVersion);
+    }
+
+    /**
+     * @param table Таблица, завершающая текущий отрезок
+     * @return Цепочка, в которой следующая таблица начнёт новый отрезок
+     */
+    ParserChain closedWith(@NonNull TableFiller<?> table) {
+        List<Segment> closed = new ArrayList<>(segments);
+        closed.add(append(table));
+        return new ParserChain(List.copyOf(closed), null, executor, formatting, nullCellLogEvery, tableCount + 1, singlePass, startRows, formulas, planVersion);
+    }
+
+    /**
+     * @param executor Пул, в котором независимые отрезки выполняются одновременно
+     * @return Такая же цепочка, выполняемая в пуле
+     */
+    ParserChain withExecutor(@NonNull Executor executor) {
+        return new ParserChain(segments, open, executor, formatting, nullCellLogEvery, tableCount, singlePass, startRows, formulas, planVersion);
+    }
+
+    /**
+     * @param formatting Форматирование ячеек для методов {@code *Stringified}
+     * @return Такая же цепочка с заданным форматированием
+     */
+    ParserChain withFormatting(@NonNull CellFormatting formatting) {
+        return new ParserChain(segments, open, executor, formatting, nullCellLogEvery, tableCount, singlePass, startRows, formulas, planVersion);
+    }
+
+    /**
+     * @return Форматирование ячеек цепочки
+     */
+    CellFormatting getFormatting() {
+        return formatting;
+    }
+
+    /**
+     * @param formulas Способ получения значений формул
+     * @return Такая же цепочка, форматирование которой выдаёт значения формул вместо их текста
+     */
+    ParserChain withFormulas(@NonNull FormulaEvaluation formulas) {
+        return new ParserChain(segments, open, executor, formatting.withFormulaValues(), nullCellLogEvery, tableCount, singlePass, startRows, formulas, planVersion);
+    }
+
+    /**
+     * @param nullCellLogEvery Каждая какая отсутствующая ячейка пишется в лог. 0 -- не писать
+     * @return Такая же цепочка с заданной частотой записи в лог
+     */
+    ParserChain withNullCellLogEvery(int nullCellLogEvery) {
+        return new ParserChain(segments, open, executor, formatting, nullCellLogEvery, tableCount, singlePass, startRows, formulas, planVersion);
+    }
+
+    /**
+     * @return Такая же цепочка, в которой отрезки одного листа читают его за один проход
+     */
+    ParserChain inSinglePass() {
+        return new ParserChain(segments, open, executor, formatting, nullCellLogEvery, tableCount, true, startRows, formulas, planVersion);
+    }
+
+    /**
+     * @param startRows Подсказки рядов начала таблиц
+     * @return Такая же цепочка, проверяющая сначала подсказанный ряд начала
+     */
+    ParserChain withStartRows(@NonNull StartRowCache startRows) {
+        return new ParserChain(segments, open, executor, formatting, nullCellLogEvery, tableCount, singlePass, startRows, formulas, planVersion);
+    }
+
+    /**
+     * @param planVersion Версия инструкции для {@link ParseResultCache}
+     * @return Такая же цепочка с заданной версией
+     */
+    ParserChain withPlanVersion(@NonNull String planVersion) {
+        return new ParserChain(segments, open, executor, formatting, nullCellLogEvery, tableCount, singlePass, startRows, formulas, planVersion);
+    }
+
+    /**
+     * @return Версия инструкции для {@link ParseResultCache} или {@code null}, если она не задана
+     */
+    @Nullable String getPlanVersion() {
+        return planVersion;
+    }
+
+    /**
+     * @return Количество таблиц в цепочке
+     */
+    int getTableCount() {
+        return tableCount;
+    }
+
+    /**
+     * @return Таблицы завершённых отрезков по их порядковым номерам в цепочке
+     */
+    TableFiller<?>[] tables() {
+        TableFiller<?>[] tables = new TableFiller<?>[tableCount];
+        for (Segment segment : segments) {
+            for (int i = 0; i < segment.tables.size(); i++) tables[segment.indexOf(i)] = segment.tables.get(i);
+        }
+        return tables;
+    }
+
+    /**
+     * @return Индексы заголовков, по которым ищутся таблицы завершённых отрезков, в порядке таблиц без повторов
+     */
+    List<TitleIndex> titleIndexes() {
+        Set<TitleIndex> indexes = new LinkedHashSet<>();
+        for (TableFiller<?> table : tables()) {
+            TitleIndex index = table.titleIndex();
+            if (index != null) indexes.add(index);
+        }
+        return List.copyOf(indexes);
+    }
+
+    /**
+     * Выполняет завершённые отрезки цепочки: по порядку или одновременно, если задан пул.
+     * Отрезки одного листа в режиме одного прохода выполняются вместе, как одна задача.
+     * <p>При одновременном выполнении дожидается всех отрезков и пробрасывает первую ошибку</p>
+     * @param book Книга для парсинга
+     * @return Статистика таблиц цепочки
+     */
+    ParseReport run(@NonNull XLSBook book) {
+        return run(book, null);
+    }
+
+    /**
+     * То же, что и {@link #run(XLSBook)}, но DTO всех таблиц записываются в {@code recording}
+     * @param book Книга для парсинга
+     * @param recording Запись результата для {@link ParseResultCache} или {@code null}
+     * @return Статистика таблиц цепочки
+     */
+    ParseReport run(@NonNull XLSBook book, @Nullable ParseResultCache.Recording recording) {
+        ParseRun run = newRun(book, recording);
+        runSegments(run);
+        return run.toReport();
+    }
+
+    /**
+     * Выполняет завершённые отрезки и таблицы открытого отрезка. Нужен таблице, которая продолжает цепочку,
+     * но выдаёт DTO лениво, по запросу вызывающего кода
+     * @param run Проход по книге
+     * @return Номер ряда, с которого начнётся следующая таблица открытого отрезка
+     */
+    int runBeforeOpenEnd(@NonNull ParseRun run) {
+        runSegments(run);
+        return open == null ? 0 : open.apply(run, 0);
+    }
+
+    /**
+     * @param book Книга для парсинга
+     * @return Проход по книге с местом для статистики всех таблиц цепочки и ещё одной, присоединяемой к ней
+     */
+    ParseRun newRun(@NonNull XLSBook book) {
+        return newRun(book, null);
+    }
+
+    private ParseRun newRun(XLSBook book, @Nullable ParseResultCache.Recording recording) {
+        return new ParseRun(formulas == null ? book : book.withFormulaEvaluation(formulas), formatting, nullCellLogEvery, startRows, recording, tableCount + 1);
+    }
+
+    private void runSegments(ParseRun run) {
+        List<Runnable> tasks = new ArrayList<>(segments.size());
+        if (singlePass) tasks.addAll(SinglePass.tasks(run, segments));
+        else segments.forEach(segment -> tasks.add(() -> segment.apply(run, 0)));
+        if (executor == null || tasks.size() < 2) {
+            tasks.forEach(Runnable::run);
+            return;
+        }
+        CompletableFuture<?>[] running = tasks.stream()
+                .map(task -> CompletableFuture.runAsync(task, executor))
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(running).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Порядковый номер следующей таблицы цепочки
+     */
+    int nextIndex() {
+        return tableCount;
+    }
+
+    private Segment append(TableFiller<?> table) {
+        if (open == null) return new Segment(List.of(table), tableCount);
+        List<TableFiller<?>> tables = new ArrayList<>(open.tables);
+        tables.add(table);
+        return new Segment(List.copyOf(tables), open.firstIndex);
+    }
+
+    /**
+     * Таблицы отрезка в порядке задания. Порядковые номера таблиц отрезка в цепочке идут подряд
+     */
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    static final class Segment {
+        private final List<TableFiller<?>> tables;
+        private final int firstIndex;
+
+        /**
+         * @return Таблицы отрезка в порядке задания
+         */
+        List<TableFiller<?>> getTables() {
+            return tables;
+        }
+
+        /**
+         * @param position Номер таблицы в отрезке
+         * @return Порядковый номер таблицы в цепочке
+         */
+        int indexOf(int position) {
+            return firstIndex + position;
+        }
+
+        /**
+         * Выполняет таблицы отрезка по порядку, каждую с ряда, на котором закончилась предыдущая
+         * @param run Проход по книге
+         * @param start Номер ряда, с которого начинается поиск первой таблицы
+         * @return Номер ряда, на котором закончилась последняя таблица
+         */
+        int apply(ParseRun run, int start) {
+            return applyFrom(run, 0, start);
+        }
+
+        /**
+         * То же, что и {@link #apply}, но начиная с таблицы {@code position} отрезка
+         */
+        int applyFrom(ParseRun run, int position, int start) {
+            for (int i = position; i < tables.size(); i++) start = tables.get(i).fillContinuing(run, indexOf(i), start);
+            return start;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.NonNull;
+import org.apache.poi.ss.usermodel.CellType;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Цепочка условий на ячейки, собранная в одну проверку ряда.
+ * <p>Условия связываются слева направо, как {@code ((a || b) && c)}: если результат уже известен
+ * по союзу, следующее условие не проверяется. Первые три столбца цепочки достаются из ряда не больше одного раза
+ * за проверку, и тип их ячеек тоже запрашивается один раз; их ячейки держатся в локальных переменных, так что
+ * проверка ряда ничего не создаёт. Столбцы дальше третьего достаются заново для каждого условия.
+ * Столбцы, до которых проверка не дошла, не достаются</p>
+ */
+final class RowCondition implements Predicate<XLSRow> {
+    /**
+     * Столбцы цепочки без повторов: номера или коды {@link CellCodes}
+     */
+    private final int[] columns;
+    /**
+     * Номер столбца в {@link #columns} для каждого условия
+     */
+    private final int[] slots;
+    private final CellTest[] tests;
+    /**
+     * Союз перед каждым условием: {@code true} -- "или", {@code false} -- "и". У первого не используется
+     */
+    private final boolean[] or;
+
+    private RowCondition(int[] columns, int[] slots, CellTest[] tests, boolean[] or) {
+        this.columns = columns;
+        this.slots = slots;
+        this.tests = tests;
+        this.or = or;
+    }
+
+    /**
+     * @param cellNum Номер столбца или код из {@link CellCodes}
+     * @param test Условие на ячейку
+     * @return Цепочка из одного условия
+     */
+    static RowCondition of(int cellNum, @NonNull CellTest test) {
+        return new RowCondition(new int[]{cellNum}, new int[]{0}, new CellTest[]{test}, new boolean[]{false});
+    }
+
+    /**
+     * @param or Союз: {@code true} -- "или", {@code false} -- "и"
+     * @param cellNum Номер столбца или код из {@link CellCodes}
+     * @param test Условие на ячейку
+     * @return Новая цепочка с условием в конце. Эта цепочка не меняется
+     */
+    RowCondition then(boolean or, int cellNum, @NonNull CellTest test) {
+        int slot = 0;
+        while (slot < columns.length && columns[slot] != cellNum) slot++;
+        int[] columns = slot < this.columns.length ? this.columns : Arrays.copyOf(this.columns, slot + 1);
+        columns[slot] = cellNum;
+        int size = tests.length;
+        int[] slots = Arrays.copyOf(this.slots, size + 1);
+        slots[size] = slot;
+        CellTest[] tests = Arrays.copyOf(this.tests, size + 1);
+        tests[size] = test;
+        boolean[] ors = Arrays.copyOf(this.or, size + 1);
+        ors[size] = or;
+        return new RowCondition(columns, slots, tests, ors);
+    }
+
+    @Override
+    public boolean test(XLSRow row) {
+        if (columns.length == 1) {
+            XLSCell cell = cell(row, columns[0]);
+            CellType type = cell == null ? null : cell.getCellType();
+            boolean result = tests[0].test(cell, type);
+            for (int i = 1; i < tests.length; i++) {
+                if (result != or[i]) result = tests[i].test(cell, type);
+            }
+            return result;
+        }
+        int fetched = 0;
+        XLSCell cell0 = null, cell1 = null, cell2 = null;
+        CellType type0 = null, type1 = null, type2 = null;
+        boolean result = false;
+        for (int i = 0; i < tests.length; i++) {
+            if (i > 0 && result == or[i]) continue;
+            int slot = slots[i];
+            XLSCell cell;
+            CellType type;
+            switch (slot) {
+                case 0:
+                    if ((fetched & 1) == 0) {
+                        cell0 = cell(row, columns[0]);
+                        type0 = cell0 == null ? null : cell0.getCellType();
+                        fetched |= 1;
+                    }
+                    cell = cell0;
+                    type = type0;
+                    break;
+                case 1:
+                    if ((fetched & 2) == 0) {
+                        cell1 = cell(row, columns[1]);
+                        type1 = cell1 == null ? null : cell1.getCellType();
+                        fetched |= 2;
+                    }
+                    cell = cell1;
+                    type = type1;
+                    break;
+                case 2:
+                    if ((fetched & 4) == 0) {
+                        cell2 = cell(row, columns[2]);
+                        type2 = cell2 == null ? null : cell2.getCellType();
+                        fetched |= 4;
+                    }
+                    cell = cell2;
+                    type = type2;
+                    break;
+                default:
+                    cell = cell(row, columns[slot]);
+                    type = cell == null ? null : cell.getCellType();
+            }
+            result = tests[i].test(cell, type);
+        }
+        return result;
+    }
+
+    /**
+     * @param cellNum Номер столбца или код из {@link CellCodes}
+     * @return Ячейка ряда или {@code null}
+     */
+    static @Nullable XLSCell cell(XLSRow row, int cellNum) {
+        return row.getCell(cellNum == CellCodes.FIRST ? row.getFirstCellNum() : cellNum == CellCodes.LAST ? row.getLastCellNum() : cellNum);
+    }
+
+    /**
+     * Условие на ячейку, получающее её тип, уже запрошенный цепочкой
+     */
+    @FunctionalInterface
+    interface CellTest {
+        /**
+         * @param cell Ячейка или {@code null}, если её нет в ряду
+         * @param type Тип ячейки или {@code null}, если её нет в ряду
+         * @return Выполняется ли условие
+         */
+        boolean test(@Nullable XLSCell cell, @Nullable CellType type);
+
+        /**
+         * @return Обратное условие
+         */
+        default CellTest negate() {
+            return (cell, type) -> !test(cell, type);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.NonNull;
+
+/**
+ * Что делать с рядом, из которого не удалось заполнить DTO: генератор или наполнитель столбца бросил исключение.
+ * <p>Задаётся для таблицы через {@link XLSTableParser#onRowError(RowErrorPolicy)}. Пропущенные ряды не передаются
+ * потребителю, а их ошибки ({@link RowParseException}) попадают в {@link TableReport#getErrors()}</p>
+ */
+public final class RowErrorPolicy {
+    private static final RowErrorPolicy FAIL_FAST = new RowErrorPolicy(0);
+    private static final RowErrorPolicy SKIP_ROWS = new RowErrorPolicy(Integer.MAX_VALUE);
+
+    private final int maxErrors;
+
+    private RowErrorPolicy(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * @return Политика по умолчанию: первая ошибка прерывает парсинг
+     */
+    public static @NonNull RowErrorPolicy failFast() {
+        return FAIL_FAST;
+    }
+
+    /**
+     * @return Политика, пропускающая все ряды с ошибками
+     */
+    public static @NonNull RowErrorPolicy skipRows() {
+        return SKIP_ROWS;
+    }
+
+    /**
+     * @param maxErrors Сколько рядов с ошибками можно пропустить, не меньше 0
+     * @return Политика, пропускающая до {@code maxErrors} рядов с ошибками. Следующая ошибка прерывает парсинг,
+     * а предыдущие добавляются к ней как {@link Throwable#getSuppressed()}
+     * @throws IllegalArgumentException Если {@code maxErrors} отрицательно
+     */
+    public static @NonNull RowErrorPolicy collectUpTo(int maxErrors) {
+        if (maxErrors < 0) throw new IllegalArgumentException("Количество ошибок не может быть отрицательным, но пришло " + maxErrors);
+        return maxErrors == 0 ? FAIL_FAST : new RowErrorPolicy(maxErrors);
+    }
+
+    /**
+     * @return Сколько рядов с ошибками можно пропустить
+     */
+    int getMaxErrors() {
+        return maxErrors;
+    }
+
+    @Override
+    public String toString() {
+        return maxErrors == 0 ? "Прерывать на первой ошибке" : maxErrors == Integer.MAX_VALUE ? "Пропускать ряды с ошибками"
+                : "Пропускать до " + maxErrors + " рядов с ошибками";
+    }
+}
@@ -0,0 +1,38 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+/**
+ * Ошибка заполнения DTO из одного ряда таблицы: номер ряда, номер столбца и исходное исключение в {@link #getCause()}.
+ * <p>Стек этого исключения не заполняется: он совпадал бы со стеком парсера, а место ошибки в пользовательском
+ * коде есть в стеке причины. Поэтому пропуск ряда по {@link RowErrorPolicy} стоит не дороже создания объекта</p>
+ */
+public final class RowParseException extends RuntimeException {
+    private final int rowNum;
+    private final int cellNum;
+
+    /**
+     * @param rowNum Номер ряда
+     * @param cellNum Номер столбца или -1, если ошибка в генераторе DTO
+     * @param cause Исключение генератора или наполнителя
+     */
+    RowParseException(int rowNum, int cellNum, Throwable cause) {
+        super(cellNum < 0
+                ? String.format("Ошибка создания DTO для ряда %d: %s", rowNum, cause)
+                : String.format("Ошибка заполнения DTO в ряду %d, столбце %d: %s", rowNum, cellNum, cause), cause, true, false);
+        this.rowNum = rowNum;
+        this.cellNum = cellNum;
+    }
+
+    /**
+     * @return Номер ряда листа
+     */
+    public int getRowNum() {
+        return rowNum;
+    }
+
+    /**
+     * @return Номер столбца или -1, если DTO не удалось создать генератором
+     */
+    public int getCellNum() {
+        return cellNum;
+    }
+}
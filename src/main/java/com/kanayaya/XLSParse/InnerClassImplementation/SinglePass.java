@@ -0,0 +1,232 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Выполнение нескольких отрезков цепочки, парсящих один лист, за одно чтение листа.
+ * <p>Каждый отрезок -- небольшой автомат над общим курсором рядов: текущая таблица отрезка ищет начало,
+ * пропускает ряды и проверяет условие конца. На ряду конца начинается следующая таблица отрезка, и этот же ряд
+ * подаётся ей, как при последовательном выполнении. Каждая таблица получает те же ряды, что и при
+ * последовательном выполнении. Чтение прекращается, когда закончились все таблицы всех отрезков</p>
+ * <p>Чтобы потребители получали DTO в том же порядке, что и без этого режима, DTO и завершение получателей
+ * каждого отрезка, кроме первого, откладываются в {@link Gate}, пока не закончатся все предыдущие отрезки.
+ * Отложенные DTO занимают память до конца предыдущих отрезков</p>
+ */
+final class SinglePass {
+    private SinglePass() {
+    }
+
+    /**
+     * Группирует отрезки по листу. Отрезки с параллельным заполнением и отрезки, лист которых не найден,
+     * выполняются отдельно, как обычно
+     * @param run Проход по книге
+     * @param segments Отрезки цепочки
+     * @return Задачи: по одной на лист и на каждый отрезок, выполняемый отдельно
+     */
+    static List<Runnable> tasks(ParseRun run, List<ParserChain.Segment> segments) {
+        Map<String, List<ParserChain.Segment>> bySheet = new LinkedHashMap<>();
+        Map<String, XLSSheet> sheets = new LinkedHashMap<>();
+        List<Runnable> tasks = new ArrayList<>();
+        for (ParserChain.Segment segment : segments) {
+            XLSSheet sheet = fusibleSheet(run, segment);
+            if (sheet == null) {
+                tasks.add(() -> segment.apply(run, 0));
+                continue;
+            }
+            sheets.putIfAbsent(sheet.getSheetName(), sheet);
+            bySheet.computeIfAbsent(sheet.getSheetName(), name -> new ArrayList<>()).add(segment);
+        }
+        bySheet.forEach((name, group) -> {
+            if (group.size() == 1) tasks.add(() -> group.get(0).apply(run, 0));
+            else tasks.add(() -> run(run, sheets.get(name), group));
+        });
+        return tasks;
+    }
+
+    private static XLSSheet fusibleSheet(ParseRun run, ParserChain.Segment segment) {
+        for (TableFiller<?> table : segment.getTables()) if (!table.isSequential()) return null;
+        try {
+            return segment.getTables().get(0).sheet(run.getBook());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void run(ParseRun run, XLSSheet sheet, List<ParserChain.Segment> segments) {
+        List<Cursor> cursors = new ArrayList<>(segments.size());
+        try {
+            for (int i = 0; i < segments.size(); i++) cursors.add(new Cursor(run, segments.get(i), i == 0 ? null : new Gate()));
+            try (Stream<XLSRow> rows = sheet.rows(0)) {
+                Iterator<XLSRow> iterator = rows.iterator();
+                int active = cursors.size();
+                while (active > 0 && iterator.hasNext()) {
+                    XLSRow row = iterator.next();
+                    active = 0;
+                    for (Cursor cursor : cursors) {
+                        cursor.offer(row);
+                        if (!cursor.isDone()) active++;
+                    }
+                    openGates(cursors);
+                }
+            }
+            for (Cursor cursor : cursors) {
+                cursor.finish();
+                openGates(cursors);
+            }
+        } catch (RuntimeException | Error e) {
+            cursors.forEach(Cursor::abort);
+            throw e;
+        }
+    }
+
+    /**
+     * Открывает отложенный вывод отрезка, как только закончились все предыдущие
+     */
+    private static void openGates(List<Cursor> cursors) {
+        for (int i = 1; i < cursors.size() && cursors.get(i - 1).isDone(); i++) cursors.get(i).open();
+    }
+
+    /**
+     * Текущая таблица отрезка и её проход
+     */
+    private static final class Cursor {
+        private final ParseRun run;
+        private final ParserChain.Segment segment;
+        /**
+         * Отложенный вывод отрезка или {@code null} для первого отрезка, который выводит DTO сразу
+         */
+        private final @Nullable Gate gate;
+        private int position;
+        private TableFiller<?>.Pass pass;
+        /**
+         * Последний ряд, поданный отрезку. С него начнутся оставшиеся таблицы, если лист закончится раньше них
+         */
+        private int lastRow;
+
+        private Cursor(ParseRun run, ParserChain.Segment segment, @Nullable Gate gate) {
+            this.run = run;
+            this.segment = segment;
+            this.gate = gate;
+            this.pass = segment.getTables().get(0).pass(run, segment.indexOf(0), 0, gate);
+        }
+
+        boolean isDone() {
+            return pass == null;
+        }
+
+        void offer(XLSRow row) {
+            if (pass == null) return;
+            lastRow = row.getRowNum();
+            while (!pass.offer(row)) {
+                pass.finish();
+                if (++position == segment.getTables().size()) {
+                    pass = null;
+                    return;
+                }
+                pass = segment.getTables().get(position).pass(run, segment.indexOf(position), row.getRowNum(), gate);
+            }
+        }
+
+        /**
+         * Завершает текущую таблицу, закончившуюся вместе с листом, и выполняет оставшиеся таблицы отрезка обычным образом.
+         * Вызывается, когда предыдущие отрезки уже завершены, поэтому вывод отрезка к этому моменту открыт
+         */
+        void finish() {
+            if (pass == null) return;
+            pass.finish();
+            pass = null;
+            segment.applyFrom(run, position + 1, lastRow);
+        }
+
+        void open() {
+            if (gate != null) gate.open();
+        }
+
+        void abort() {
+            if (gate != null) gate.abort();
+            else if (pass != null) pass.abort();
+        }
+    }
+
+    /**
+     * Отложенный вывод отрезка: DTO и завершение получателей его таблиц копятся, пока отрезок не станет первым
+     * незавершённым, и затем передаются в прежнем порядке. Получатели, которые сами создают DTO
+     * ({@link TableSink.OwnGenerator}), получают ряды сразу, а откладывается только их завершение
+     */
+    static final class Gate {
+        private final List<Runnable> pending = new ArrayList<>();
+        /**
+         * Получатели отрезка, ещё не завершённые и не прерванные
+         */
+        private final List<TableSink<?>> unfinished = new ArrayList<>();
+        private boolean open;
+
+        /**
+         * @param sink Получатель таблицы отрезка
+         * @return Получатель, передающий DTO в {@code sink}, когда вывод отрезка открыт
+         */
+        <T> TableSink<T> wrap(TableSink<T> sink) {
+            unfinished.add(sink);
+            return new TableSink<>() {
+                private boolean immediate;
+
+                @Override
+                public Supplier<T> generator(Supplier<T> generator) {
+                    Supplier<T> own = sink.generator(generator);
+                    immediate = own != generator;
+                    return own;
+                }
+
+                @Override
+                public void accept(T dto) {
+                    if (open || immediate) sink.accept(dto);
+                    else pending.add(() -> sink.accept(dto));
+                }
+
+                @Override
+                public void finish() {
+                    if (open) complete(sink);
+                    else pending.add(() -> complete(sink));
+                }
+
+                @Override
+                public void abort() {
+                    Gate.this.abort();
+                }
+            };
+        }
+
+        private void complete(TableSink<?> sink) {
+            unfinished.remove(sink);
+            sink.finish();
+        }
+
+        /**
+         * Передаёт отложенный вывод и дальше пропускает его сразу
+         */
+        void open() {
+            if (open) return;
+            open = true;
+            for (int i = 0; i < pending.size(); i++) pending.get(i).run();
+            pending.clear();
+        }
+
+        /**
+         * Отбрасывает отложенный вывод и прерывает все незавершённые получатели отрезка
+         */
+        void abort() {
+            pending.clear();
+            List<TableSink<?>> sinks = new ArrayList<>(unfinished);
+            unfinished.clear();
+            sinks.forEach(TableSink::abort);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Подсказки рядов начала таблиц для книг, созданных по одному шаблону.
+ * <p>Для каждой таблицы цепочки, листа и ряда, с которого начинается поиск, запоминается ряд, удовлетворивший
+ * условию начала. В следующей книге сначала проверяется только этот ряд: если он удовлетворяет условию, таблица
+ * начинается с него без проверки предыдущих рядов (попадание). Иначе лист просматривается как обычно (промах),
+ * и подсказка обновляется.</p>
+ * <p>Подсказка верна, только если в книгах шаблона до ряда начала нет других рядов, удовлетворяющих условию.
+ * При попадании предыдущие ряды не читаются и не входят в {@link TableReport#getRowsBeforeStart()}.
+ * Один кэш можно разделять между парсерами и потоками. Таблица узнаётся по номеру, выданному ей при создании,
+ * поэтому кэш не удерживает парсеры. Подсказки таблиц, которые больше не используются, вытесняются,
+ * когда число подсказок превышает размер кэша</p>
+ */
+public final class StartRowCache {
+    /**
+     * Размер кэша по умолчанию
+     */
+    public static final int DEFAULT_MAX_HINTS = 4096;
+
+    /**
+     * Подсказки в порядке обращения: первой идёт давно не использованная
+     */
+    private final Map<Key, Integer> hints;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Кэш на {@value #DEFAULT_MAX_HINTS} подсказок
+     */
+    public StartRowCache() {
+        this(DEFAULT_MAX_HINTS);
+    }
+
+    /**
+     * @param maxHints Сколько подсказок кэш держит одновременно
+     * @throws IllegalArgumentException Если размер не положителен
+     */
+    public StartRowCache(int maxHints) {
+        if (maxHints <= 0) throw new IllegalArgumentException("Размер кэша подсказок должен быть положительным, но пришло " + maxHints);
+        this.hints = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Integer> eldest) {
+                return size() > maxHints;
+            }
+        };
+    }
+
+    /**
+     * @return Количество таблиц, начало которых найдено по подсказке
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Количество таблиц, для которых подсказки не было или она не подошла
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Количество запомненных подсказок
+     */
+    public synchronized int size() {
+        return hints.size();
+    }
+
+    /**
+     * Удаляет все подсказки. Счётчики не сбрасываются
+     */
+    public synchronized void clear() {
+        hints.clear();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Подсказки рядов начала: %d, попаданий %d, промахов %d", size(), getHits(), getMisses());
+    }
+
+    /**
+     * @param table Номер таблицы, см. {@link TableFiller#getId()}
+     * @return Запомненный ряд начала или {@code null}
+     */
+    synchronized @Nullable Integer hint(long table, @NonNull String sheetName, int start) {
+        return hints.get(new Key(table, sheetName, start));
+    }
+
+    synchronized void remember(long table, @NonNull String sheetName, int start, int row) {
+        hints.put(new Key(table, sheetName, start), row);
+    }
+
+    void hit() {
+        hits.increment();
+    }
+
+    void miss() {
+        misses.increment();
+    }
+
+    /**
+     * Таблица сравнивается по номеру: у каждой таблицы цепочки свой
+     */
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    @EqualsAndHashCode
+    private static final class Key {
+        private final long table;
+        private final String sheetName;
+        private final int start;
+    }
+}
@@ -0,0 +1,132 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограниченный пул строк: одинаковые значения ячеек получают один и тот же экземпляр {@link String}.
+ * <p>Если DTO миллионы раз повторяют несколько сотен строк (коды валют, артикулы, регионы), в памяти остаётся
+ * по одному экземпляру каждой. Пул -- таблица фиксированного размера, разбитая на группы по {@value #WAYS} ячейки:
+ * строка хранится в одной из ячеек группы, выбранной по её хэшу. Новая строка вытесняет строку группы,
+ * которую не запрашивали с прошлой попытки вытеснения (второй шанс, как в CLOCK). Так столбцы с уникальными значениями не раздувают пул и не выталкивают
+ * из него частые строки, а лишь дают промахи. Доля попаданий показывает, выгоден ли пул для этих данных</p>
+ * <p>Подключается ко всей цепочке через {@link XLSTableParser#withStringPool(StringPool)} и действует на методы
+ * {@code *Stringified} и строковые поля {@link Column}. Для отдельных столбцов можно вызывать {@link #intern(String)}
+ * в своём наполнителе. Один пул можно разделять между парсерами и потоками</p>
+ */
+public final class StringPool {
+    private static final int WAYS = 4;
+    private final AtomicReferenceArray<String> slots;
+    /**
+     * Запрашивали ли строку ячейки с прошлой попытки её вытеснить. Гонки при записи лишь сдвигают момент вытеснения
+     */
+    private final boolean[] referenced;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * @param capacity Сколько строк пул держит одновременно, от 1 до 2<sup>30</sup>. Округляется вверх до степени двойки, не меньше {@value #WAYS}
+     * @throws IllegalArgumentException Если размер вне допустимых границ
+     */
+    public StringPool(int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Размер пула строк должен быть от 1 до " + MAX_CAPACITY + ", но пришло " + capacity);
+        }
+        int size = Math.max(WAYS, Integer.highestOneBit(capacity - 1) << 1);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.referenced = new boolean[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * @param value Строка или {@code null}
+     * @return Равная строка из пула, если она там есть, иначе эта же строка, которая может занять место в пуле
+     */
+    @Contract("null -> null; !null -> !null")
+    public @Nullable String intern(@Nullable String value) {
+        if (value == null) return null;
+        int h = value.hashCode();
+        int set = (h ^ (h >>> 16)) & mask & -WAYS;
+        int empty = -1;
+        int stale = -1;
+        for (int slot = set; slot < set + WAYS; slot++) {
+            String pooled = slots.get(slot);
+            if (value.equals(pooled)) {
+                referenced[slot] = true;
+                hits.increment();
+                return pooled;
+            }
+            if (pooled == null) {
+                if (empty < 0) empty = slot;
+            } else if (stale < 0 && !referenced[slot]) {
+                stale = slot;
+            }
+        }
+        int victim = empty >= 0 ? empty : stale;
+        if (victim >= 0) slots.lazySet(victim, value);
+        else for (int slot = set; slot < set + WAYS; slot++) referenced[slot] = false;
+        misses.increment();
+        return value;
+    }
+
+    /**
+     * @return Сколько строк пул держит одновременно
+     */
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    /**
+     * @return Количество строк, замененных экземпляром из пула
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Количество строк, которых не было в пуле
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Доля попаданий от 0 до 1, 0 -- если пулом ещё не пользовались
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return Количество строк в пуле
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < slots.length(); i++) if (slots.get(i) != null) size++;
+        return size;
+    }
+
+    /**
+     * Удаляет все строки из пула. Счётчики не сбрасываются
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+            referenced[i] = false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Пул строк: %d из %d, попаданий %d (%.1f%%), промахов %d",
+                size(), getCapacity(), getHits(), getHitRate() * 100, getMisses());
+    }
+}
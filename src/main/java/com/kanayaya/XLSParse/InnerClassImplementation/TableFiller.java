@@ -2,14 +2,19 @@ package com.kanayaya.XLSParse.InnerClassImplementation;
 
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.Iterator;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.*;
-import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Структура, содержащая инструкции для парсинга таблицы и метод, совершающий парсинг
@@ -17,14 +22,20 @@ import java.util.stream.IntStream;
  */
 @Slf4j
 class TableFiller<T> {
+    private static final AtomicLong IDS = new AtomicLong();
+
+    /**
+     * Номер таблицы, общий для её копий с другим режимом заполнения или политикой ошибок
+     */
+    private final long id;
     /**
-     * Функция, возвращающая {@link XSSFSheet} для парсинга. Нужна для задания логики доставания листа из {@link XSSFWorkbook}
+     * Функция, возвращающая {@link XLSSheet} для парсинга. Нужна для задания логики доставания листа из {@link XLSBook}
      */
-    private final Function<XSSFWorkbook, XSSFSheet> sheetGetter;
+    private final Function<XLSBook, XLSSheet> sheetGetter;
     /**
      * Предикат, определяющий, с какого ряда таблицы начинать парсинг
      */
-    private final Predicate<XSSFRow> startIf;
+    private final Predicate<XLSRow> startIf;
     /**
      * Количество рядов, пропускаемых перед началом парсинга таблицы.
      * Нужно если первые N рядов таблицы являются заголовками или их не нужно парсить
@@ -33,75 +44,427 @@ class TableFiller<T> {
     /**
      * Предикат, определяющий, на каком ряду таблицы закончить парсинг
      */
-    private final Predicate<XSSFRow> stopIf;
+    private final Predicate<XLSRow> stopIf;
     /**
      * Генератор новых DTO для наполнения данными парсинга. Генерируется новый DTO для каждого ряда таблицы.
      */
     private final Supplier<T> getter;
     /**
-     * Набор инструкций от первой ячейки, задающих метод парсинга каждого столбца каждого ряда
+     * Плоский план, задающий метод парсинга каждого столбца каждого ряда
      * таблицы.
      */
-    private final BiConsumer<T, XSSFRow> columnFiller;
+    private final ColumnPlan<T> columnFiller;
     /**
-     * Нужен для того, чтобы складывать туда созданные и наполненные DTO
+     * Создаёт на каждый проход по таблице получателя, куда складываются созданные и наполненные DTO
      */
-    private final Consumer<? super T> dtoConsumer;
+    private final Supplier<TableSink<T>> sinks;
+    /**
+     * Режим параллельного заполнения DTO или {@code null}, если таблица заполняется в вызывающем потоке
+     */
+    private final @Nullable ParallelFilling parallel;
+    /**
+     * Что делать с рядами, из которых не удалось заполнить DTO
+     */
+    private final RowErrorPolicy errors;
 
     TableFiller(
-            Function<XSSFWorkbook, XSSFSheet> sheetGetter,
-            BiConsumer<T, XSSFRow> columnFiller,
+            Function<XLSBook, XLSSheet> sheetGetter,
+            ColumnPlan<T> columnFiller,
+            Supplier<T> getter,
+            Predicate<XLSRow> rowFilter,
+            Predicate<XLSRow> stopIf,
+            int skip,
+            Supplier<TableSink<T>> sinks) {
+        this(IDS.incrementAndGet(), sheetGetter, columnFiller, getter, rowFilter, stopIf, skip, sinks, null, RowErrorPolicy.failFast());
+    }
+
+    private TableFiller(
+            long id,
+            Function<XLSBook, XLSSheet> sheetGetter,
+            ColumnPlan<T> columnFiller,
             Supplier<T> getter,
-            Predicate<XSSFRow> rowFilter,
-            Predicate<XSSFRow> stopIf,
+            Predicate<XLSRow> rowFilter,
+            Predicate<XLSRow> stopIf,
             int skip,
-            Consumer<? super T> filler) {
+            Supplier<TableSink<T>> sinks,
+            @Nullable ParallelFilling parallel,
+            RowErrorPolicy errors) {
+        this.id = id;
         this.sheetGetter = sheetGetter;
         this.columnFiller = columnFiller;
         this.getter = getter;
         this.startIf = rowFilter;
         this.stopIf = stopIf;
         this.skip = skip;
-        this.dtoConsumer = filler;
+        this.sinks = sinks;
+        this.parallel = parallel;
+        this.errors = errors;
+    }
+
+    /**
+     * @param parallel Режим параллельного заполнения DTO
+     * @return Такой же наполнитель, заполняющий DTO в заданном режиме
+     */
+    TableFiller<T> inParallel(@NonNull ParallelFilling parallel) {
+        if (sinks instanceof TableSink.OwnGenerator) {
+            throw new IllegalStateException("Получатель таблицы сам создаёт DTO, такая таблица заполняется только последовательно");
+        }
+        return new TableFiller<>(id, sheetGetter, columnFiller, getter, startIf, stopIf, skip, sinks, parallel, errors);
+    }
+
+    /**
+     * @param errors Что делать с рядами, из которых не удалось заполнить DTO
+     * @return Такой же наполнитель с заданной политикой ошибок
+     */
+    TableFiller<T> withErrorPolicy(@NonNull RowErrorPolicy errors) {
+        return new TableFiller<>(id, sheetGetter, columnFiller, getter, startIf, stopIf, skip, sinks, parallel, errors);
+    }
+
+    /**
+     * @return Номер таблицы, по которому {@link StartRowCache} хранит её подсказки
+     */
+    long getId() {
+        return id;
+    }
+
+    /**
+     * @return Новый получатель DTO таблицы, см. {@link TableSink}
+     */
+    TableSink<T> newSink() {
+        return sinks.get();
+    }
+
+    /**
+     * @return Заполняется ли таблица в вызывающем потоке, ряд за рядом
+     */
+    boolean isSequential() {
+        return parallel == null;
+    }
+
+    /**
+     * @return Индекс заголовков, по которому ищется начало таблицы, или {@code null}, если начало задано условием
+     */
+    @Nullable TitleIndex titleIndex() {
+        return startIf instanceof TitleIndex.Start ? ((TitleIndex.Start) startIf).getIndex() : null;
     }
 
     /**
-     * Метод для запуска парсинга таблицы.
-     * <p>Собирает данные после сбора инструкций и парсит по ним выбранную книгу</p>
      * @param book Книга, в которой находится таблица
-     * @param start Номер ряда, с которого начинается парсинг
-     * @return Ноль для следующего парсера
+     * @return Лист таблицы
+     * @throws IllegalArgumentException Если листа нет в книге
      */
-    int fillFrom(@NonNull XSSFWorkbook book, int start) {
-        fillContinuing(book, start);
-        return 0;
+    XLSSheet sheet(@NonNull XLSBook book) {
+        XLSSheet sheet = sheetGetter.apply(book);
+        if (sheet == null) throw new IllegalArgumentException("Лист для парсинга не найден в книге");
+        return sheet;
     }
 
     /**
      * Метод для запуска парсинга таблицы.
-     * <p>Собирает данные после сбора инструкций и парсит по ним выбранную книгу</p>
-     * @param book Книга, в которой находится таблица
+     * <p>Собирает данные после сбора инструкций и парсит по ним выбранную книгу.
+     * Статистика таблицы записывается в {@code run} по окончании парсинга</p>
+     * @param run Проход по книге, в которой находится таблица
+     * @param index Порядковый номер таблицы в цепочке
      * @param start Номер ряда, с которого начинается парсинг
      * @return Номер строки, на которой закончился парсинг
      */
-    int fillContinuing(@NonNull XSSFWorkbook book, int start) {
-        final AtomicInteger rowCounter = new AtomicInteger(start);
-        XSSFSheet sheet = sheetGetter.apply(book);
-        log.info(String.format("Начинаем парсинг XLS-листа \"%s\" со строки %d", sheet.getSheetName(), start));
-        if (start > sheet.getLastRowNum()) throw new IllegalArgumentException(String.format("Стартовый ряд (%d) не может быть больше максимального количества рядов на листе (%d)", start, sheet.getLastRowNum()));
-        IntStream.range(start, sheet.getLastRowNum() + 1)
-                .peek(rowCounter::set)
-                .mapToObj(sheet::getRow)
+    int fillContinuing(@NonNull ParseRun run, int index, int start) {
+        Table table = open(run, index, start);
+        TableReport.Recorder recorder = table.recorder;
+        try (Stream<XLSRow> rows = table.rows) {
+            TableSink<T> sink = table.sink;
+            Consumer<T> consumer = dto -> {
+                if (dto != null) recorder.consume(sink, dto);
+            };
+            try {
+                if (parallel == null) rows.forEach(row -> consumer.accept(table.materialize(row)));
+                else if (table.generator == getter) parallel.fill(rows, table::materialize, consumer);
+                else throw new IllegalStateException("Получатель таблицы подменил генератор DTO, параллельное заполнение невозможно");
+            } catch (RuntimeException | Error e) {
+                sink.abort();
+                throw e;
+            }
+            recorder.finish(sink);
+        }
+        table.report();
+        return table.lastRow.get();
+    }
+
+    /**
+     * Ленивый вариант {@link #fillContinuing}: DTO создаются по мере того, как вызывающий код их запрашивает.
+     * <p>Начало таблицы, получатель DTO и политика ошибок те же, что у {@link #fillContinuing}. Чтение листа
+     * прекращается, как только поток перестают читать. Поток нужно закрыть, чтобы освободить лист; получатель
+     * завершается, а статистика таблицы записывается в {@code run} при закрытии</p>
+     * @param run Проход по книге, в которой находится таблица
+     * @param index Порядковый номер таблицы в цепочке
+     * @param start Номер ряда, с которого начинается парсинг
+     * @return Последовательный поток DTO
+     */
+    Stream<T> stream(@NonNull ParseRun run, int index, int start) {
+        Table table = open(run, index, start);
+        AtomicBoolean failed = new AtomicBoolean();
+        return table.rows
+                .map(row -> {
+                    try {
+                        return table.materialize(row);
+                    } catch (RuntimeException | Error e) {
+                        failed.set(true);
+                        throw e;
+                    }
+                })
                 .filter(Objects::nonNull)
-                .dropWhile(startIf.negate())
-                .skip(skip)
-                .takeWhile(stopIf.negate())
-                .forEach(row ->  {
-                    T data = getter.get();
-                    columnFiller.accept(data, row);
-                    dtoConsumer.accept(data);
+                .peek(dto -> table.recorder.consume(table.sink, dto))
+                .onClose(() -> {
+                    if (failed.get()) table.sink.abort();
+                    else table.recorder.finish(table.sink);
+                    table.report();
                 });
-        return rowCounter.get();
+    }
+
+    /**
+     * Находит начало таблицы так же, как при обычном парсинге: по индексу заголовков, по подсказке ряда начала
+     * или проверкой условия начала на каждом ряду
+     * @param run Проход по книге, в которой находится таблица
+     * @param index Порядковый номер таблицы в цепочке
+     * @param start Номер ряда, с которого начинается поиск таблицы
+     * @return Открытая таблица. Её ряды нужно закрыть
+     */
+    private Table open(ParseRun run, int index, int start) {
+        XLSSheet sheet = sheet(run.getBook());
+        log.info("Начинаем парсинг XLS-листа \"{}\" со строки {}", sheet.getSheetName(), start);
+        TableReport.Recorder recorder = new TableReport.Recorder(sheet.getSheetName(), start, run.getNullCellLogEvery());
+        StartRowCache startRows = startIf instanceof TitleIndex.Start ? null : run.getStartRows();
+        Stream<XLSRow> located = startIf instanceof TitleIndex.Start ? titledRows(run, sheet, start, recorder)
+                : startRows == null ? null : hintedRows(startRows, sheet, start, recorder);
+        return new Table(run, index, sheet, start, recorder, located == null ? startRows : null,
+                located != null ? located : sheet.rows(start), located != null);
+    }
+
+    /**
+     * Одна таблица на время прохода: её ряды, получатель DTO и статистика
+     */
+    private final class Table {
+        private final ParseRun run;
+        private final int index;
+        private final XLSSheet sheet;
+        private final int start;
+        private final TableReport.Recorder recorder;
+        private final CellFormatting formatting;
+        /**
+         * Подсказки, в которые нужно запомнить найденный ряд начала, или {@code null}, если начало уже было известно
+         */
+        private final @Nullable StartRowCache startRows;
+        private final AtomicInteger lastRow;
+        private final AtomicReference<ColumnPlan<T>> plan = new AtomicReference<>(columnFiller);
+        /**
+         * Ряды таблицы: от ряда начала, за вычетом пропущенных, до ряда, удовлетворившего условию конца
+         */
+        private final Stream<XLSRow> rows;
+        private final TableSink<T> sink;
+        private final Supplier<T> generator;
+
+        private Table(ParseRun run, int index, XLSSheet sheet, int start, TableReport.Recorder recorder,
+                      @Nullable StartRowCache startRows, Stream<XLSRow> sheetRows, boolean started) {
+            this.run = run;
+            this.index = index;
+            this.sheet = sheet;
+            this.start = start;
+            this.recorder = recorder;
+            this.formatting = run.getFormatting();
+            this.startRows = startRows;
+            this.lastRow = new AtomicInteger(start);
+            this.rows = tableRows(sheetRows.peek(row -> lastRow.set(row.getRowNum())), started, recorder, plan, formatting);
+            this.sink = run.sink(index, sinks.get());
+            this.generator = sink.generator(getter);
+        }
+
+        private @Nullable T materialize(XLSRow row) {
+            return TableFiller.this.materialize(row, plan.get(), generator, formatting, recorder);
+        }
+
+        /**
+         * Запоминает найденный ряд начала и записывает статистику таблицы в проход по книге
+         */
+        private void report() {
+            if (startRows != null && recorder.getStartRowNum() >= 0) {
+                startRows.remember(id, sheet.getSheetName(), start, recorder.getStartRowNum());
+            }
+            run.report(index, recorder.toReport(skip));
+        }
+    }
+
+    /**
+     * Проверяет подсказанный ряд начала таблицы
+     * @param startRows Подсказки рядов начала
+     * @param sheet Лист таблицы
+     * @param start Номер ряда, с которого начинается поиск
+     * @param recorder Статистика таблицы
+     * @return Ряды листа с подсказанного ряда или {@code null}, если подсказки нет или ряд не удовлетворяет условию начала
+     */
+    private @Nullable Stream<XLSRow> hintedRows(StartRowCache startRows, XLSSheet sheet, int start, TableReport.Recorder recorder) {
+        Integer hint = startRows.hint(id, sheet.getSheetName(), start);
+        Stream<XLSRow> rows = hint != null && hint >= start ? rowsFrom(sheet, hint, recorder) : null;
+        if (rows != null) startRows.hit();
+        else startRows.miss();
+        return rows;
+    }
+
+    /**
+     * Переходит к ряду заголовка таблицы по индексу {@link TitleIndex}, найденному за этот проход
+     * @param run Проход по книге
+     * @param sheet Лист таблицы
+     * @param start Номер ряда, с которого начинается поиск
+     * @param recorder Статистика таблицы
+     * @return Ряды листа с ряда заголовка или {@code null}, если после {@code start} заголовка нет
+     */
+    private @Nullable Stream<XLSRow> titledRows(ParseRun run, XLSSheet sheet, int start, TableReport.Recorder recorder) {
+        TitleIndex.Start title = (TitleIndex.Start) startIf;
+        int row = run.titleRows(title.getIndex(), sheet).next(title.getId(), start);
+        return row < 0 ? null : rowsFrom(sheet, row, recorder);
+    }
+
+    /**
+     * Проверяет условие начала на заданном ряду. Если оно выполнено, ряд записывается в статистику как начало таблицы
+     * и больше не проверяется
+     * @param sheet Лист таблицы
+     * @param rowNum Номер ряда, который должен удовлетворять условию начала
+     * @param recorder Статистика таблицы
+     * @return Ряды листа с заданного ряда или {@code null}, если ряда нет или он не удовлетворяет условию начала
+     */
+    private @Nullable Stream<XLSRow> rowsFrom(XLSSheet sheet, int rowNum, TableReport.Recorder recorder) {
+        Stream<XLSRow> rows = sheet.rows(rowNum);
+        Iterator<XLSRow> iterator = rows.iterator();
+        XLSRow first = iterator.hasNext() ? iterator.next() : null;
+        if (first != null && first.getRowNum() == rowNum && recorder.test(startIf, first)) {
+            recorder.started(first);
+            Stream<XLSRow> rest = StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+            return Stream.concat(Stream.of(first), rest).onClose(rows::close);
+        }
+        rows.close();
+        return null;
+    }
+
+    /**
+     * Начинает проход по таблице, в который ряды подаются извне по одному, с того же ряда {@code start}.
+     * Нужен, чтобы несколько таблиц одного листа читали его за один проход, см. {@link SinglePass}.
+     * Заполняет DTO в вызывающем потоке, даже если задан параллельный режим
+     * @param run Проход по книге, в которой находится таблица
+     * @param index Порядковый номер таблицы в цепочке
+     * @param start Номер ряда, с которого начинается поиск таблицы
+     * @param gate Отложенный вывод отрезка таблицы или {@code null}, чтобы передавать DTO сразу
+     * @return Проход по таблице
+     */
+    Pass pass(@NonNull ParseRun run, int index, int start, @Nullable SinglePass.Gate gate) {
+        XLSSheet sheet = sheet(run.getBook());
+        log.info("Начинаем парсинг XLS-листа \"{}\" со строки {}", sheet.getSheetName(), start);
+        Predicate<XLSRow> startIf = this.startIf instanceof TitleIndex.Start ? ((TitleIndex.Start) this.startIf).in(run, sheet) : this.startIf;
+        TableSink<T> sink = run.sink(index, sinks.get());
+        return new Pass(run, index, startIf, new TableReport.Recorder(sheet.getSheetName(), start, run.getNullCellLogEvery()),
+                gate == null ? sink : gate.wrap(sink));
+    }
+
+    /**
+     * Проход по таблице с внешней подачей рядов. Повторяет {@link #tableRows}: поиск начала, пропуск, условие конца
+     */
+    final class Pass {
+        private final ParseRun run;
+        private final int index;
+        /**
+         * Условие начала таблицы на этот проход
+         */
+        private final Predicate<XLSRow> startIf;
+        private final TableReport.Recorder recorder;
+        private final CellFormatting formatting;
+        private final TableSink<T> sink;
+        private final Supplier<T> generator;
+        private ColumnPlan<T> plan = columnFiller;
+        private boolean started;
+        private int toSkip = skip;
+
+        private Pass(ParseRun run, int index, Predicate<XLSRow> startIf, TableReport.Recorder recorder, TableSink<T> sink) {
+            this.run = run;
+            this.index = index;
+            this.startIf = startIf;
+            this.recorder = recorder;
+            this.formatting = run.getFormatting();
+            this.sink = sink;
+            this.generator = sink.generator(getter);
+        }
+
+        /**
+         * @param row Очередной ряд листа
+         * @return {@code false}, если ряд удовлетворил условию конца таблицы: таблица закончилась, ряд ей не принадлежит
+         */
+        boolean offer(XLSRow row) {
+            if (!started) {
+                if (!recorder.testStart(startIf, row)) return true;
+                started = true;
+                plan = plan.resolve(row, formatting);
+            }
+            recorder.rowAfterStart();
+            if (toSkip > 0) {
+                toSkip--;
+                return true;
+            }
+            if (recorder.test(stopIf, row)) return false;
+            T dto = materialize(row, plan, generator, formatting, recorder);
+            if (dto != null) recorder.consume(sink, dto);
+            return true;
+        }
+
+        /**
+         * Завершает таблицу и записывает её статистику в проход по книге
+         */
+        void finish() {
+            recorder.finish(sink);
+            run.report(index, recorder.toReport(skip));
+        }
+
+        /**
+         * Освобождает получателя DTO после ошибки
+         */
+        void abort() {
+            sink.abort();
+        }
+    }
+
+    /**
+     * @param started Начинаются ли ряды с ряда, уже прошедшего условие начала
+     * @param plan План столбцов на этот проход. Если в нём есть столбцы, заданные заголовком, они находятся
+     *             в ряду, удовлетворившем условию начала
+     * @return Ряды таблицы: от ряда, удовлетворившего условию начала, за вычетом пропущенных, до ряда, удовлетворившего условию конца
+     */
+    private Stream<XLSRow> tableRows(Stream<XLSRow> rows, boolean started, TableReport.Recorder recorder, AtomicReference<ColumnPlan<T>> plan, CellFormatting formatting) {
+        return (started ? rows : rows.dropWhile(row -> !recorder.testStart(startIf, row)))
+                .peek(row -> {
+                    if (plan.get().needsHeaders()) plan.set(plan.get().resolve(row, formatting));
+                    recorder.rowAfterStart();
+                })
+                .skip(skip)
+                .takeWhile(row -> !recorder.test(stopIf, row));
+    }
+
+    /**
+     * Создаёт и заполняет DTO из ряда
+     * @return DTO или {@code null}, если ряд пропущен по политике ошибок
+     * @throws RowParseException Если политика ошибок не позволяет пропустить ряд
+     */
+    private @Nullable T materialize(XLSRow row, ColumnPlan<T> plan, Supplier<T> generator, CellFormatting formatting, TableReport.Recorder recorder) {
+        long started = System.nanoTime();
+        try {
+            T data;
+            try {
+                data = generator.get();
+            } catch (RuntimeException e) {
+                throw new RowParseException(row.getRowNum(), -1, e);
+            }
+            plan.fill(data, row, formatting, recorder);
+            return data;
+        } catch (RowParseException e) {
+            recorder.error(e, errors.getMaxErrors());
+            return null;
+        } finally {
+            recorder.addFillerNanos(System.nanoTime() - started);
+        }
     }
 }
-  
\ No newline at end of file
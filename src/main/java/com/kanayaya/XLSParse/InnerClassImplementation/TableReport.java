@@ -0,0 +1,234 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Статистика парсинга одной таблицы из цепочки {@link XLSTableParser}.
+ * <p>Время указано в наносекундах и включает только вызовы пользовательских условий, наполнителей и потребителя,
+ * без чтения самого листа. При параллельном заполнении время наполнителей суммируется по всем потокам</p>
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class TableReport implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Имя листа, на котором искалась таблица
+     */
+    private final @NonNull String sheetName;
+    /**
+     * Номер ряда, с которого начался поиск таблицы
+     */
+    private final int startRow;
+    /**
+     * Количество рядов, просмотренных до ряда, удовлетворившего условию начала таблицы
+     */
+    private final long rowsBeforeStart;
+    /**
+     * Количество рядов, пропущенных после начала таблицы
+     */
+    private final long rowsSkipped;
+    /**
+     * Количество рядов, из которых созданы DTO и переданы потребителю
+     */
+    private final long rowsEmitted;
+    /**
+     * Количество отсутствующих ({@code null}) ячеек по номерам столбцов
+     */
+    private final @NonNull SortedMap<Integer, Long> nullCells;
+    /**
+     * Время, проведённое в условиях начала и конца таблицы
+     */
+    private final long predicateNanos;
+    /**
+     * Время, проведённое в генераторе DTO и наполнителях столбцов
+     */
+    private final long fillerNanos;
+    /**
+     * Время, проведённое в потребителе DTO
+     */
+    private final long consumerNanos;
+    /**
+     * Ошибки рядов, пропущенных по {@link RowErrorPolicy}, в порядке рядов
+     */
+    private final @NonNull List<RowParseException> errors;
+
+    /**
+     * @return Общее количество отсутствующих ячеек во всех столбцах
+     */
+    public long getNullCellCount() {
+        return nullCells.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Лист \"%s\" с ряда %d: до начала %d, пропущено %d, создано DTO %d, пустых ячеек %s; " +
+                        "ошибок %d; условия %d мкс, наполнители %d мкс, потребитель %d мкс",
+                sheetName, startRow, rowsBeforeStart, rowsSkipped, rowsEmitted, nullCells, errors.size(),
+                predicateNanos / 1000, fillerNanos / 1000, consumerNanos / 1000);
+    }
+
+    /**
+     * Счётчики одной таблицы, заполняемые во время парсинга.
+     * <p>Условия и потребитель вызываются только из потока, читающего лист. Наполнители могут вызываться
+     * из потоков пула при параллельном заполнении, поэтому их счётчики потокобезопасны</p>
+     */
+    @Slf4j
+    static final class Recorder {
+        private final String sheetName;
+        private final int startRow;
+        private final int nullCellLogEvery;
+        private long rowsBeforeStart;
+        private int startRowNum = -1;
+        private long rowsAfterStart;
+        private long rowsEmitted;
+        private long predicateNanos;
+        private long consumerNanos;
+        private final LongAdder fillerNanos = new LongAdder();
+        private final AtomicLong nullCellCount = new AtomicLong();
+        private final Map<Integer, LongAdder> nullCells = new ConcurrentHashMap<>();
+        private final List<RowParseException> errors = new ArrayList<>();
+
+        /**
+         * @param sheetName Имя листа
+         * @param startRow Номер ряда, с которого начался поиск таблицы
+         * @param nullCellLogEvery Каждая какая отсутствующая ячейка пишется в лог. 0 -- не писать
+         */
+        Recorder(String sheetName, int startRow, int nullCellLogEvery) {
+            this.sheetName = sheetName;
+            this.startRow = startRow;
+            this.nullCellLogEvery = nullCellLogEvery;
+        }
+
+        /**
+         * Проверяет условие начала таблицы и считает ряды до её начала
+         */
+        boolean testStart(Predicate<XLSRow> startIf, XLSRow row) {
+            boolean started = test(startIf, row);
+            if (!started) rowsBeforeStart++;
+            else started(row);
+            return started;
+        }
+
+        /**
+         * Отмечает начало таблицы на ряду, уже прошедшем условие начала через {@link #test}
+         */
+        void started(XLSRow row) {
+            startRowNum = row.getRowNum();
+        }
+
+        /**
+         * @return Номер ряда, прошедшего условие начала, или -1, если таблица не найдена
+         */
+        int getStartRowNum() {
+            return startRowNum;
+        }
+
+        /**
+         * Отмечает ряд, прошедший условие начала таблицы
+         */
+        void rowAfterStart() {
+            rowsAfterStart++;
+        }
+
+        /**
+         * Проверяет условие с замером времени
+         */
+        boolean test(Predicate<XLSRow> predicate, XLSRow row) {
+            long start = System.nanoTime();
+            try {
+                return predicate.test(row);
+            } finally {
+                predicateNanos += System.nanoTime() - start;
+            }
+        }
+
+        /**
+         * Передаёт DTO потребителю с замером времени
+         */
+        <T> void consume(Consumer<? super T> consumer, T dto) {
+            long start = System.nanoTime();
+            try {
+                consumer.accept(dto);
+            } finally {
+                consumerNanos += System.nanoTime() - start;
+            }
+            rowsEmitted++;
+        }
+
+        /**
+         * Завершает получателя таблицы с замером времени, оно считается временем потребителя
+         */
+        void finish(TableSink<?> sink) {
+            long start = System.nanoTime();
+            try {
+                sink.finish();
+            } finally {
+                consumerNanos += System.nanoTime() - start;
+            }
+        }
+
+        void addFillerNanos(long nanos) {
+            fillerNanos.add(nanos);
+        }
+
+        /**
+         * Считает отсутствующую ячейку и, если задано, пишет в лог каждую {@code nullCellLogEvery}-ю из них
+         */
+        void nullCell(int rowNum, int cellNum) {
+            nullCells.computeIfAbsent(cellNum, key -> new LongAdder()).increment();
+            long count = nullCellCount.incrementAndGet();
+            if (nullCellLogEvery > 0 && (count - 1) % nullCellLogEvery == 0)
+                log.warn("Столбец ряда {} не содержит ячейку {} (null), всего пустых ячеек в таблице: {}", rowNum, cellNum, count);
+        }
+
+        /**
+         * Запоминает ошибку пропускаемого ряда или бросает её, если пропущено уже {@code maxErrors} рядов.
+         * Вызывается из потоков пула при параллельном заполнении
+         * @param maxErrors Сколько рядов с ошибками можно пропустить
+         * @throws RowParseException Если ряд нельзя пропустить. Ранее пропущенные ошибки добавлены к ней как подавленные
+         */
+        synchronized void error(RowParseException error, int maxErrors) {
+            if (errors.size() >= maxErrors) {
+                errors.forEach(error::addSuppressed);
+                throw error;
+            }
+            errors.add(error);
+        }
+
+        /**
+         * @param skip Количество рядов, которое таблица пропускает после начала
+         * @return Снимок счётчиков
+         */
+        TableReport toReport(int skip) {
+            SortedMap<Integer, Long> nulls = new TreeMap<>();
+            nullCells.forEach((cellNum, count) -> nulls.put(cellNum, count.sum()));
+            List<RowParseException> errors;
+            synchronized (this) {
+                errors = new ArrayList<>(this.errors);
+            }
+            errors.sort(Comparator.comparingInt(RowParseException::getRowNum));
+            return new TableReport(sheetName, startRow, rowsBeforeStart, Math.min(skip, rowsAfterStart), rowsEmitted,
+                    Collections.unmodifiableSortedMap(nulls), predicateNanos, fillerNanos.sum(), consumerNanos,
+                    Collections.unmodifiableList(errors));
+        }
+    }
+}
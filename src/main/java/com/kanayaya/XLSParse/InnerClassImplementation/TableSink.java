@@ -0,0 +1,61 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Получатель DTO одной таблицы на время одного парсинга.
+ * <p>Создаётся заново для каждого прохода по таблице, поэтому может хранить состояние (буферы, очереди),
+ * даже если одна и та же инструкция парсит несколько книг одновременно</p>
+ * @param <T> Тип DTO
+ */
+interface TableSink<T> extends Consumer<T> {
+    /**
+     * Позволяет получателю подменить генератор DTO на время прохода, например, чтобы каждый ряд заполнял
+     * один и тот же накопитель. Фабрика таких получателей должна быть {@link OwnGenerator}: таблицу с ней нельзя
+     * заполнять параллельно
+     * @param generator Генератор DTO из инструкции
+     * @return Генератор DTO на этот проход по таблице
+     */
+    default Supplier<T> generator(Supplier<T> generator) {
+        return generator;
+    }
+
+    /**
+     * Вызывается в вызывающем потоке после последнего DTO таблицы, если парсинг таблицы закончился без ошибок
+     */
+    void finish();
+
+    /**
+     * Вызывается в вызывающем потоке, если парсинг таблицы прервался ошибкой. Должен освободить ресурсы получателя
+     */
+    default void abort() {
+    }
+
+    /**
+     * Фабрика получателей, подменяющих генератор DTO, см. {@link #generator(Supplier)}.
+     * Таблица с такими получателями заполняется только последовательно
+     * @param <T> Тип DTO
+     */
+    @FunctionalInterface
+    interface OwnGenerator<T> extends Supplier<TableSink<T>> {
+    }
+
+    /**
+     * @param consumer Потребитель, получающий каждый DTO без буферизации
+     * @return Фабрика получателей, передающих DTO потребителю напрямую
+     */
+    static <T> Supplier<TableSink<T>> of(Consumer<? super T> consumer) {
+        TableSink<T> sink = new TableSink<>() {
+            @Override
+            public void accept(T dto) {
+                consumer.accept(dto);
+            }
+
+            @Override
+            public void finish() {
+            }
+        };
+        return () -> sink;
+    }
+}
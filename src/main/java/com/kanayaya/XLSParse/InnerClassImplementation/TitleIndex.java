@@ -0,0 +1,300 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.apache.poi.ss.usermodel.CellType;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Набор заголовков разделов, которые ищутся в одном столбце листа за один проход.
+ * <p>Для отчётов со многими разделами: вместо того чтобы каждая таблица искала свой заголовок, просматривая лист,
+ * при первом обращении к листу все ряды с заголовками находятся одним проходом, а каждая таблица,
+ * начатая через {@link XLSTableParser.StartConditionGetter#findRowTitled(TitleIndex, String)},
+ * сразу переходит к своему ряду. Строки ячеек проверяются на все заголовки сразу автоматом Ахо -- Корасик,
+ * так что проход линеен по рядам, а не по рядам, умноженным на разделы.
+ * Найденные ряды доступны в {@link ParseReport#getTitleRows()}. В {@link XLSTableParser#inSinglePass()} лист заранее
+ * не просматривается, и там оказываются ряды с заголовками, проверенные таблицами до своего начала, в том числе ряды начала</p>
+ * <p>Индекс неизменяем, его можно использовать в нескольких парсерах и потоках</p>
+ */
+public final class TitleIndex {
+    private final int cellNum;
+    private final String[] titles;
+    private final Map<String, Integer> ids;
+    private final MarkerMatcher matcher;
+
+    private TitleIndex(int cellNum, String[] titles) {
+        this.cellNum = cellNum;
+        this.titles = titles;
+        this.ids = new LinkedHashMap<>();
+        for (int id = 0; id < titles.length; id++) ids.put(titles[id], id);
+        this.matcher = new MarkerMatcher(titles);
+    }
+
+    /**
+     * @param cellNum Номер столбца <b>ИЛИ</b> код из класса {@link CellCodes} ({@link CellCodes#FIRST} или {@link CellCodes#LAST})
+     * @return Класс для задания заголовков
+     * @throws IllegalArgumentException В случае отрицательного номера столбца, не соответствующего коду из класса {@link CellCodes}
+     */
+    public static @NonNull Titles findRowsWhereCell(int cellNum) {
+        if (cellNum < -2) throw new IllegalArgumentException("Неверный номер столбца: " + cellNum);
+        return new Titles(cellNum);
+    }
+
+    /**
+     * @return Номер столбца или код из {@link CellCodes}, в котором ищутся заголовки
+     */
+    public int getCellNum() {
+        return cellNum;
+    }
+
+    /**
+     * @return Заголовки в порядке задания
+     */
+    public @NonNull List<String> getTitles() {
+        return List.of(titles);
+    }
+
+    /**
+     * @param title Заголовок индекса
+     * @return Условие начала таблицы: строковая ячейка столбца содержит заголовок
+     * @throws IllegalArgumentException Если заголовка нет в индексе
+     */
+    Start start(@NonNull String title) {
+        Integer id = ids.get(title);
+        if (id == null) throw new IllegalArgumentException(String.format("Заголовка \"%s\" нет в индексе %s", title, ids.keySet()));
+        return new Start(this, id);
+    }
+
+    /**
+     * Находит все ряды с заголовками за один проход по листу
+     * @param sheet Лист
+     * @return Ряды каждого заголовка
+     */
+    Rows scan(@NonNull XLSSheet sheet) {
+        int[][] rows = new int[titles.length][];
+        int[] counts = new int[titles.length];
+        BitSet found = new BitSet(titles.length);
+        try (Stream<XLSRow> sheetRows = sheet.rows(0)) {
+            sheetRows.forEach(row -> {
+                found.clear();
+                match(row, found);
+                for (int id = found.nextSetBit(0); id >= 0; id = found.nextSetBit(id + 1)) {
+                    if (rows[id] == null) rows[id] = new int[4];
+                    else if (counts[id] == rows[id].length) rows[id] = Arrays.copyOf(rows[id], counts[id] * 2);
+                    rows[id][counts[id]++] = row.getRowNum();
+                }
+            });
+        }
+        for (int id = 0; id < titles.length; id++) rows[id] = rows[id] == null ? new int[0] : Arrays.copyOf(rows[id], counts[id]);
+        return new Rows(this, sheet.getSheetName(), rows);
+    }
+
+    private void match(XLSRow row, BitSet found) {
+        XLSCell cell = RowCondition.cell(row, cellNum);
+        if (cell != null && cell.getCellType() == CellType.STRING) matcher.match(cell.getStringCellValue(), found);
+    }
+
+    private boolean matches(XLSRow row, int id) {
+        BitSet found = new BitSet(titles.length);
+        match(row, found);
+        return found.get(id);
+    }
+
+    @Override
+    public String toString() {
+        return "Заголовки в столбце " + cellNum + ": " + ids.keySet();
+    }
+
+    /**
+     * Номер последнего проверенного ряда листа и найденные в нём заголовки. Таблицы одного листа
+     * в {@link XLSTableParser#inSinglePass()} проверяют один и тот же ряд подряд, и строка ячейки просматривается один раз.
+     * Запоминает все ряды с заголовками, проверенные за проход: ряды подаются по возрастанию номеров.
+     * Живёт один проход по книге, см. {@link ParseRun#titleMatches(TitleIndex, XLSSheet)}
+     */
+    static final class Matched {
+        private final TitleIndex index;
+        private final String sheetName;
+        private int rowNum = -1;
+        private final BitSet found = new BitSet();
+        private final int[][] rows;
+        private final int[] counts;
+
+        Matched(TitleIndex index, String sheetName) {
+            this.index = index;
+            this.sheetName = sheetName;
+            this.rows = new int[index.titles.length][];
+            this.counts = new int[index.titles.length];
+        }
+
+        synchronized boolean matches(XLSRow row, int id) {
+            if (rowNum != row.getRowNum()) {
+                found.clear();
+                index.match(row, found);
+                rowNum = row.getRowNum();
+                for (int title = found.nextSetBit(0); title >= 0; title = found.nextSetBit(title + 1)) add(title, rowNum);
+            }
+            return found.get(id);
+        }
+
+        private void add(int id, int rowNum) {
+            if (rows[id] == null) rows[id] = new int[4];
+            else if (counts[id] == rows[id].length) rows[id] = Arrays.copyOf(rows[id], counts[id] * 2);
+            rows[id][counts[id]++] = rowNum;
+        }
+
+        /**
+         * @return Ряды с заголовками, найденные среди проверенных рядов
+         */
+        synchronized Rows toRows() {
+            int[][] copy = new int[rows.length][];
+            for (int id = 0; id < rows.length; id++) copy[id] = rows[id] == null ? new int[0] : Arrays.copyOf(rows[id], counts[id]);
+            return new Rows(index, sheetName, copy);
+        }
+    }
+
+    /**
+     * Класс для задания заголовков индекса
+     */
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class Titles {
+        private final int cellNum;
+
+        /**
+         * @param titles Заголовки разделов: ряд подходит заголовку, если строка ячейки его содержит. Повторы не учитываются
+         * @return Индекс заголовков
+         * @throws IllegalArgumentException Если заголовков нет или среди них есть пустой
+         */
+        public @NonNull TitleIndex containsAnyOf(@NonNull String... titles) {
+            if (titles.length == 0) throw new IllegalArgumentException("Нужен хотя бы один заголовок");
+            for (String title : titles) {
+                if (title == null || title.isEmpty()) throw new IllegalArgumentException("Заголовок не может быть пустым");
+            }
+            return new TitleIndex(cellNum, Arrays.stream(titles).distinct().toArray(String[]::new));
+        }
+    }
+
+    /**
+     * Условие начала таблицы по одному заголовку индекса
+     */
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    static final class Start implements Predicate<XLSRow> {
+        private final TitleIndex index;
+        private final int id;
+
+        TitleIndex getIndex() {
+            return index;
+        }
+
+        int getId() {
+            return id;
+        }
+
+        /**
+         * @param run Проход по книге
+         * @param sheet Лист таблицы
+         * @return Это же условие, запоминающее на этот проход заголовки последнего проверенного ряда листа
+         */
+        Predicate<XLSRow> in(ParseRun run, XLSSheet sheet) {
+            Matched matched = run.titleMatches(index, sheet);
+            return row -> matched.matches(row, id);
+        }
+
+        @Override
+        public boolean test(XLSRow row) {
+            return index.matches(row, id);
+        }
+    }
+
+    /**
+     * Ряды с заголовками, найденные на одном листе
+     */
+    public static final class Rows {
+        private final TitleIndex index;
+        private final String sheetName;
+        private final int[][] rows;
+
+        /**
+         * @param rows Номера рядов по номерам заголовков индекса, по возрастанию
+         */
+        Rows(TitleIndex index, String sheetName, int[][] rows) {
+            this.index = index;
+            this.sheetName = sheetName;
+            this.rows = rows;
+        }
+
+        /**
+         * @return Индекс, по которому найдены ряды
+         */
+        public @NonNull TitleIndex getIndex() {
+            return index;
+        }
+
+        /**
+         * @return Имя листа
+         */
+        public @NonNull String getSheetName() {
+            return sheetName;
+        }
+
+        /**
+         * @param title Заголовок индекса
+         * @return Номера рядов, содержащих заголовок, по возрастанию
+         * @throws IllegalArgumentException Если заголовка нет в индексе
+         */
+        public @NonNull List<Integer> getRows(@NonNull String title) {
+            return Arrays.stream(rows[index.start(title).getId()]).boxed().collect(Collectors.toUnmodifiableList());
+        }
+
+        /**
+         * @return Номера рядов по заголовкам в порядке задания заголовков
+         */
+        public @NonNull Map<String, List<Integer>> asMap() {
+            Map<String, List<Integer>> map = new LinkedHashMap<>();
+            for (String title : index.titles) map.put(title, getRows(title));
+            return Collections.unmodifiableMap(map);
+        }
+
+        /**
+         * @return Первый ряд с любым заголовком индекса или {@link Integer#MAX_VALUE}, если заголовков на листе нет
+         */
+        int firstRow() {
+            int first = Integer.MAX_VALUE;
+            for (int[] titleRows : rows) if (titleRows.length > 0) first = Math.min(first, titleRows[0]);
+            return first;
+        }
+
+        /**
+         * @return Номера рядов по номерам заголовков индекса
+         */
+        int[][] byTitle() {
+            return rows;
+        }
+
+        /**
+         * @param id Номер заголовка
+         * @param start Номер ряда, с которого начинается поиск
+         * @return Первый ряд с заголовком не раньше {@code start} или -1, если такого нет
+         */
+        int next(int id, int start) {
+            int[] titleRows = rows[id];
+            int i = Arrays.binarySearch(titleRows, start);
+            if (i < 0) i = -i - 1;
+            return i < titleRows.length ? titleRows[i] : -1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Заголовки на листе \"%s\": %s", sheetName, asMap());
+        }
+    }
+}
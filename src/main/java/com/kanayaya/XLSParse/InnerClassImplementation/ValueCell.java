@@ -0,0 +1,146 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * Ячейка, прочитанная потоковым способом. Хранит только значение и формат, без связи с книгой.
+ * <p>Повторяет поведение {@link org.apache.poi.xssf.usermodel.XSSFCell} при чтении значений</p>
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+final class ValueCell implements XLSCell {
+    private final int rowIndex;
+    private final int columnIndex;
+    /**
+     * Тип значения. Для формул -- тип сохранённого результата
+     */
+    private final CellType valueType;
+    private final @Nullable String formula;
+    /**
+     * Строковое значение или текст ошибки
+     */
+    private final @Nullable String stringValue;
+    /**
+     * Числовое значение. Для логических ячеек -- 1 или 0
+     */
+    private final double numericValue;
+    private final @Nullable String rawValue;
+    private final short dataFormat;
+    private final String dataFormatString;
+    private final boolean date1904;
+
+    @Override
+    public int getRowIndex() {
+        return rowIndex;
+    }
+
+    @Override
+    public int getColumnIndex() {
+        return columnIndex;
+    }
+
+    @Override
+    public CellType getCellType() {
+        return formula == null ? valueType : CellType.FORMULA;
+    }
+
+    @Override
+    public CellType getCachedFormulaResultType() {
+        if (formula == null) throw new IllegalStateException("Only formula cells have cached results");
+        return valueType;
+    }
+
+    @Override
+    public String getStringCellValue() {
+        if (valueType == CellType.BLANK) return "";
+        if (valueType != CellType.STRING) throw typeMismatch(CellType.STRING);
+        return stringValue;
+    }
+
+    @Override
+    public double getNumericCellValue() {
+        if (valueType == CellType.BLANK) return 0.0;
+        if (valueType != CellType.NUMERIC) throw typeMismatch(CellType.NUMERIC);
+        return numericValue;
+    }
+
+    @Override
+    public boolean getBooleanCellValue() {
+        if (valueType == CellType.BLANK) return false;
+        if (valueType != CellType.BOOLEAN) throw typeMismatch(CellType.BOOLEAN);
+        return numericValue != 0;
+    }
+
+    @Override
+    public String getErrorCellString() {
+        if (valueType != CellType.ERROR) throw typeMismatch(CellType.ERROR);
+        return stringValue;
+    }
+
+    @Override
+    public String getCellFormula() {
+        if (formula == null) throw typeMismatch(CellType.FORMULA);
+        return formula;
+    }
+
+    @Override
+    public @Nullable String getRawValue() {
+        return rawValue;
+    }
+
+    @Override
+    public @Nullable LocalDateTime getLocalDateTimeCellValue() {
+        if (valueType == CellType.BLANK) return null;
+        return DateUtil.getLocalDateTime(getNumericCellValue(), date1904);
+    }
+
+    @Override
+    public @Nullable Date getDateCellValue() {
+        if (valueType == CellType.BLANK) return null;
+        return DateUtil.getJavaDate(getNumericCellValue(), date1904);
+    }
+
+    @Override
+    public short getDataFormat() {
+        return dataFormat;
+    }
+
+    @Override
+    public String getDataFormatString() {
+        return dataFormatString;
+    }
+
+    @Override
+    public String getFormattedValue(DataFormatter formatter) {
+        if (formula != null && !formatter.useCachedValuesForFormulaCells()) return formula;
+        switch (valueType) {
+            case NUMERIC:
+                return formatter.formatRawCellContents(numericValue, dataFormat, dataFormatString, date1904);
+            case STRING:
+            case ERROR:
+                return stringValue;
+            case BOOLEAN:
+                return numericValue != 0 ? "TRUE" : "FALSE";
+            default:
+                return "";
+        }
+    }
+
+    @Override
+    public @Nullable Cell getPoiCell() {
+        return null;
+    }
+
+    private IllegalStateException typeMismatch(CellType expected) {
+        return new IllegalStateException("Cannot get a " + expected + " value from a " + valueType + " "
+                + (formula == null ? "" : "formula ") + "cell");
+    }
+}
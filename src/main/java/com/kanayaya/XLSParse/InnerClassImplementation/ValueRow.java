@@ -0,0 +1,71 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Ряд, прочитанный потоковым способом. Ячейки хранятся в массиве по номеру столбца.
+ */
+final class ValueRow implements XLSRow {
+    private static final XLSCell[] NO_CELLS = new XLSCell[0];
+    private final int rowNum;
+    private final XLSCell[] cells;
+    private final short firstCellNum;
+    private final int physicalCells;
+
+    /**
+     * @param rowNum Номер ряда
+     * @param cells Ячейки ряда
+     */
+    ValueRow(int rowNum, List<? extends XLSCell> cells) {
+        this.rowNum = rowNum;
+        this.physicalCells = cells.size();
+        if (cells.isEmpty()) {
+            this.cells = NO_CELLS;
+            this.firstCellNum = -1;
+            return;
+        }
+        int first = Integer.MAX_VALUE;
+        int last = 0;
+        for (XLSCell cell : cells) {
+            first = Math.min(first, cell.getColumnIndex());
+            last = Math.max(last, cell.getColumnIndex());
+        }
+        this.cells = new XLSCell[last + 1];
+        for (XLSCell cell : cells) this.cells[cell.getColumnIndex()] = cell;
+        this.firstCellNum = (short) first;
+    }
+
+    @Override
+    public int getRowNum() {
+        return rowNum;
+    }
+
+    @Override
+    public short getFirstCellNum() {
+        return firstCellNum;
+    }
+
+    @Override
+    public short getLastCellNum() {
+        return cells.length == 0 ? -1 : (short) cells.length;
+    }
+
+    @Override
+    public int getPhysicalNumberOfCells() {
+        return physicalCells;
+    }
+
+    @Override
+    public @Nullable XLSCell getCell(int cellNum) {
+        if (cellNum < 0) throw new IllegalArgumentException("Cell index must be >= 0");
+        return cellNum < cells.length ? cells[cellNum] : null;
+    }
+
+    @Override
+    public @Nullable Row getPoiRow() {
+        return null;
+    }
+}
@@ -0,0 +1,267 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.NonNull;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш открытых книг XLSX для повторного парсинга одних и тех же файлов разными инструкциями.
+ * <p>Книга открывается целиком ({@link XSSFWorkbook}) при первом обращении через
+ * {@link XLSTableParser#parse(Path, WorkbookCache)} и затем берётся из кэша без повторного разбора XML.
+ * Файл узнаётся по пути, размеру и времени изменения: изменённый файл открывается заново,
+ * а его прежняя книга удаляется из кэша</p>
+ * <p>Размер книги оценивается, как в {@link XLSTableParser#parseAll(java.util.Collection, long)}, --
+ * суммой распакованных размеров элементов архива. Книги в памяти занимают в несколько раз больше,
+ * это нужно учитывать при выборе бюджета. Когда сумма оценок превышает бюджет, вытесняются давно не использованные книги.
+ * Книга, оценка которой больше всего бюджета, не кэшируется</p>
+ * <p>Кэш можно разделять между парсерами и потоками: одну книгу могут одновременно читать несколько парсингов.
+ * Вытесненная книга закрывается, когда её дочитает последний из них. Парсинг не меняет книгу: вычисленные
+ * значения формул ({@link FormulaEvaluation}) хранятся в проходе, а сами вычисления разных проходов по одной книге
+ * выполняются по очереди</p>
+ */
+public final class WorkbookCache {
+    private final long maxBytes;
+    /**
+     * Книги в порядке обращения: первой идёт давно не использованная
+     */
+    private final Map<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes Бюджет суммарного оценочного размера книг в байтах
+     * @throws IllegalArgumentException Если бюджет не положителен
+     */
+    public WorkbookCache(long maxBytes) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("Бюджет кэша книг должен быть положительным, но пришло " + maxBytes);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Берёт книгу из кэша или открывает её. Книгу нужно вернуть, закрыв {@link Lease}
+     * @param path Путь к файлу XLSX
+     * @return Книга, удерживаемая от закрытия до закрытия {@link Lease}
+     * @throws IOException Если файл не является книгой XLSX или не читается
+     */
+    Lease open(@NonNull Path path) throws IOException {
+        Path file = path.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(file);
+            if (entry != null && (entry.size != size || entry.modified != modified)) {
+                evict(file, entry);
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry(size, modified);
+                entries.put(file, entry);
+                misses.increment();
+            } else {
+                hits.increment();
+            }
+            entry.users++;
+        }
+        XSSFWorkbook book;
+        try {
+            book = entry.load(file);
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                entries.remove(file, entry);
+                entry.users--;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            if (entries.get(file) != entry) entry.evicted = true;
+            else if (!entry.counted) {
+                entry.counted = true;
+                bytes += entry.weight;
+                trim(file, entry);
+            }
+        }
+        return new Lease(entry, book);
+    }
+
+    /**
+     * Вытесняет давно не использованные книги, пока сумма оценок больше бюджета. Если и одна только что
+     * открытая книга больше бюджета, вытесняется и она
+     */
+    private void trim(Path file, Entry opened) {
+        Iterator<Map.Entry<Path, Entry>> eldest = entries.entrySet().iterator();
+        List<Map.Entry<Path, Entry>> victims = new ArrayList<>();
+        long remaining = bytes;
+        while (remaining > maxBytes && eldest.hasNext()) {
+            Map.Entry<Path, Entry> candidate = eldest.next();
+            if (candidate.getValue() == opened || !candidate.getValue().counted) continue;
+            victims.add(candidate);
+            remaining -= candidate.getValue().weight;
+        }
+        for (Map.Entry<Path, Entry> victim : victims) evict(victim.getKey(), victim.getValue());
+        if (bytes > maxBytes) evict(file, opened);
+    }
+
+    /**
+     * Удаляет книгу из кэша и закрывает её, если её никто не читает
+     */
+    private void evict(Path file, Entry entry) {
+        entries.remove(file, entry);
+        if (entry.counted) {
+            bytes -= entry.weight;
+            entry.counted = false;
+        }
+        entry.evicted = true;
+        evictions.increment();
+        if (entry.users == 0) entry.close();
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.users--;
+        if (entry.evicted && entry.users == 0) entry.close();
+    }
+
+    /**
+     * @return Бюджет суммарного оценочного размера книг в байтах
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return Сумма оценок размера книг в кэше в байтах
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return Количество книг в кэше
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Количество обращений, для которых книга уже была в кэше
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Количество обращений, для которых книгу пришлось открыть
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Количество книг, удалённых из кэша: из-за бюджета, изменения файла или {@link #clear()}
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Удаляет все книги из кэша. Книги, которые сейчас читаются, закрываются по окончании чтения. Счётчики не сбрасываются
+     */
+    public synchronized void clear() {
+        for (Map.Entry<Path, Entry> entry : new ArrayList<>(entries.entrySet())) evict(entry.getKey(), entry.getValue());
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Кэш книг: %d книг, %d из %d байт, попаданий %d, промахов %d, вытеснено %d",
+                entries.size(), bytes, maxBytes, getHits(), getMisses(), getEvictions());
+    }
+
+    /**
+     * Книга в кэше. Поля, кроме книги, меняются под блокировкой кэша
+     */
+    private static final class Entry {
+        private final long size;
+        private final long modified;
+        private long weight;
+        private XSSFWorkbook book;
+        private int users;
+        private boolean counted;
+        private boolean evicted;
+
+        private Entry(long size, long modified) {
+            this.size = size;
+            this.modified = modified;
+        }
+
+        /**
+         * Открывает книгу при первом обращении. Остальные обращения ждут, пока она откроется
+         */
+        private synchronized XSSFWorkbook load(Path file) throws IOException {
+            if (book != null) return book;
+            long weight = BatchParsing.estimateSize(file);
+            OPCPackage pkg;
+            try {
+                pkg = OPCPackage.open(file.toFile(), PackageAccess.READ);
+            } catch (InvalidFormatException e) {
+                throw new IOException("Файл не является книгой XLSX: " + file, e);
+            }
+            try {
+                book = new XSSFWorkbook(pkg);
+            } catch (IOException | RuntimeException e) {
+                pkg.revert();
+                throw e;
+            }
+            this.weight = weight;
+            return book;
+        }
+
+        /**
+         * Закрывает открытый только на чтение пакет без сохранения
+         */
+        private synchronized void close() {
+            if (book != null) book.getPackage().revert();
+            book = null;
+        }
+    }
+
+    /**
+     * Книга, взятая из кэша. Пока она не закрыта, книга не закрывается, даже если её вытеснили
+     */
+    final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private final XSSFWorkbook book;
+        private boolean closed;
+
+        private Lease(Entry entry, XSSFWorkbook book) {
+            this.entry = entry;
+            this.book = book;
+        }
+
+        XSSFWorkbook getBook() {
+            return book;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            release(entry);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Книга, по листам которой проходит цепочка {@link XLSTableParser}.
+ * <p>Скрывает способ чтения: книгу, целиком прочитанную в память, или потоковое чтение файла</p>
+ */
+interface XLSBook {
+    /**
+     * @param name Имя листа. Сравнивается без учёта регистра, как в Excel
+     * @return Лист или {@code null}, если листа с таким именем нет
+     */
+    @Nullable XLSSheet getSheet(String name);
+
+    /**
+     * @param index Порядковый номер листа начиная с 0
+     * @return Имя листа
+     * @throws IllegalArgumentException Если листа с таким номером нет
+     */
+    String getSheetName(int index);
+
+    /**
+     * @param evaluation Способ получения значений формул
+     * @return Книга, ячейки которой выдают значения формул заданным способом. По умолчанию -- эта же книга
+     * с сохранёнными в файле значениями
+     */
+    default XLSBook withFormulaEvaluation(@NonNull FormulaEvaluation evaluation) {
+        return this;
+    }
+}
@@ -0,0 +1,104 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * Лёгкое представление ячейки таблицы, которое получают условия и наполнители DTO.
+ * <p>Методы повторяют одноимённые методы {@link org.apache.poi.xssf.usermodel.XSSFCell}
+ * и бросают те же исключения при несоответствии типа ячейки.</p>
+ */
+public interface XLSCell {
+    /**
+     * @return Номер ряда ячейки начиная с 0
+     */
+    int getRowIndex();
+
+    /**
+     * @return Номер столбца ячейки начиная с 0
+     */
+    int getColumnIndex();
+
+    /**
+     * @return Тип ячейки. Для формул -- {@link CellType#FORMULA}
+     */
+    CellType getCellType();
+
+    /**
+     * @return Тип сохранённого в файле результата формулы
+     * @throws IllegalStateException Если ячейка не содержит формулу
+     */
+    CellType getCachedFormulaResultType();
+
+    /**
+     * @return Строковое значение. Для пустой ячейки -- пустая строка
+     * @throws IllegalStateException Если ячейка не строковая
+     */
+    String getStringCellValue();
+
+    /**
+     * @return Числовое значение. Для пустой ячейки -- 0
+     * @throws IllegalStateException Если ячейка не числовая
+     */
+    double getNumericCellValue();
+
+    /**
+     * @return Логическое значение. Для пустой ячейки -- {@code false}
+     * @throws IllegalStateException Если ячейка не логическая
+     */
+    boolean getBooleanCellValue();
+
+    /**
+     * @return Текст ошибки, например {@code #DIV/0!}
+     * @throws IllegalStateException Если ячейка не содержит ошибку
+     */
+    String getErrorCellString();
+
+    /**
+     * @return Текст формулы
+     * @throws IllegalStateException Если ячейка не содержит формулу
+     */
+    String getCellFormula();
+
+    /**
+     * @return Значение в том виде, в котором оно записано в файле, или {@code null}
+     */
+    @Nullable String getRawValue();
+
+    /**
+     * @return Числовое значение, приведённое к дате, или {@code null} для пустой ячейки
+     */
+    @Nullable LocalDateTime getLocalDateTimeCellValue();
+
+    /**
+     * @return Числовое значение, приведённое к дате, или {@code null} для пустой ячейки
+     */
+    @Nullable Date getDateCellValue();
+
+    /**
+     * @return Номер формата отображения из стиля ячейки
+     */
+    short getDataFormat();
+
+    /**
+     * @return Строка формата отображения из стиля ячейки
+     */
+    String getDataFormatString();
+
+    /**
+     * Приводит значение ячейки к строке так, как это сделал бы {@link DataFormatter#formatCellValue(Cell)}
+     * @param formatter Форматтер, которым приводится значение
+     * @return Строковое представление ячейки
+     */
+    String getFormattedValue(DataFormatter formatter);
+
+    /**
+     * @return Ячейка Apache POI, если книга целиком прочитана в память, иначе {@code null}
+     */
+    @Nullable Cell getPoiCell();
+}
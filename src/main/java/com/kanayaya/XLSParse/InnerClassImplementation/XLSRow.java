@@ -0,0 +1,43 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Лёгкое представление ряда таблицы, которое получают условия и наполнители DTO.
+ * <p>Методы повторяют одноимённые методы {@link org.apache.poi.xssf.usermodel.XSSFRow}.
+ * При потоковом чтении в памяти находится только текущий ряд.</p>
+ */
+public interface XLSRow {
+    /**
+     * @return Номер ряда начиная с 0
+     */
+    int getRowNum();
+
+    /**
+     * @return Номер первой заполненной ячейки или -1, если ряд пуст
+     */
+    short getFirstCellNum();
+
+    /**
+     * @return Номер последней заполненной ячейки <b>плюс один</b> или -1, если ряд пуст (как в Apache POI)
+     */
+    short getLastCellNum();
+
+    /**
+     * @return Количество непустых (существующих в файле) ячеек ряда
+     */
+    int getPhysicalNumberOfCells();
+
+    /**
+     * @param cellNum Номер столбца начиная с 0
+     * @return Ячейка или {@code null}, если её нет в файле
+     * @throws IllegalArgumentException В случае отрицательного номера столбца
+     */
+    @Nullable XLSCell getCell(int cellNum);
+
+    /**
+     * @return Ряд Apache POI, если книга целиком прочитана в память, иначе {@code null}
+     */
+    @Nullable Row getPoiRow();
+}
@@ -0,0 +1,21 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import java.util.stream.Stream;
+
+/**
+ * Лист книги, из которого {@link TableFiller} читает ряды.
+ */
+interface XLSSheet {
+    /**
+     * @return Имя листа
+     */
+    String getSheetName();
+
+    /**
+     * Открывает последовательное чтение рядов листа. Отсутствующие в файле ряды пропускаются.
+     * <p>Поток держит открытые ресурсы и должен быть закрыт после использования</p>
+     * @param start Номер ряда, с которого начинается чтение
+     * @return Поток рядов по возрастанию номера. Пустой, если на листе нет рядов с номером не меньше {@code start}
+     */
+    Stream<XLSRow> rows(int start);
+}
@@ -4,19 +4,31 @@ import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 import org.apache.poi.ss.usermodel.CellType;
-import org.apache.poi.ss.usermodel.DataFormatter;
-import org.apache.poi.xssf.usermodel.XSSFCell;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * <h2>XLSTableParser</h2>
@@ -30,7 +42,9 @@ import java.util.function.Predicate;
  *     <li>Упаковать каждый новый DTO в коллекцию или передать в лямбду-{@link Consumer}</li>
  * </ul>
  * </p>
- * После всего требует экземпляр класса {@link XSSFWorkbook}, из которого попытается прочесть поля.
+ * После всего требует экземпляр класса {@link XSSFWorkbook}, из которого попытается прочесть поля,
+ * или {@link OPCPackage}, {@link POIFSFileSystem} (XLS), путь к файлу или поток для потокового чтения без загрузки всей книги в память.
+ * Условия и наполнители получают ряды и ячейки в виде {@link XLSRow} и {@link XLSCell}.
  * <h3>Примеры кода:</h3>
  * <p><b>1)</b> Простейший пример. Парсинг в словарь и вывод в консоль</p>
  * <pre>{@code XLSTableParser.fromSheet("Лист 1") // Листы также можно выбирать по их порядковому номеру
@@ -65,13 +79,17 @@ import java.util.function.Predicate;
  */
 @Slf4j
 public class XLSTableParser {
+    /**
+     * Размер потока, до которого {@link #parse(InputStream)} держит книгу в памяти. Более крупные потоки сбрасываются во временный файл
+     */
+    private static final int IN_MEMORY_LIMIT = 4 * 1024 * 1024;
     /**
      * Когда задана инструкция, сюда кладётся её формальное объявление как экземпляр класса {@link TableFiller}
      * <p>Таких инструкций может быть несколько -- они выполнятся последовательно</p>
      */
     private final TableFiller<?> lastFiller;
-    private final TransitiveBiFunction<XSSFWorkbook, Integer, Integer> parserChain;
-    private final Function<XSSFWorkbook, XSSFSheet> sheetGetter;
+    private final ParserChain parserChain;
+    private final Function<XLSBook, XLSSheet> sheetGetter;
 
     /**
      * Первый метод для задания инструкции парсинга XLSX
@@ -80,7 +98,7 @@ public class XLSTableParser {
      */
     @Contract("_ -> new")
     public static @NonNull StartConditionGetter fromSheet(@NonNull String sheetName) {
-        return new StartConditionGetter((workbook, i) -> i, (workbook) -> workbook.getSheet(sheetName));
+        return new StartConditionGetter(ParserChain.empty(), (workbook) -> workbook.getSheet(sheetName));
     }
 
     /**
@@ -90,10 +108,10 @@ public class XLSTableParser {
      */
     @Contract("_ -> new")
     public static @NonNull StartConditionGetter fromSheet(int sheetNumber) {
-        return new StartConditionGetter((workbook, i) -> i, (workbook) -> workbook.getSheet(workbook.getSheetName(sheetNumber)));
+        return new StartConditionGetter(ParserChain.empty(), (workbook) -> workbook.getSheet(workbook.getSheetName(sheetNumber)));
     }
 
-    private XLSTableParser(TableFiller<?> lastFiller, TransitiveBiFunction<XSSFWorkbook, Integer, Integer> parser, Function<XSSFWorkbook, XSSFSheet> sheetGetter) {
+    private XLSTableParser(TableFiller<?> lastFiller, ParserChain parser, Function<XLSBook, XLSSheet> sheetGetter) {
         this.lastFiller = lastFiller;
         this.parserChain = parser;
         this.sheetGetter = sheetGetter;
@@ -105,7 +123,7 @@ public class XLSTableParser {
      * @return {@link StartConditionGetter} Объект, задающий условия нахождения первого ряда
      */
     public @NonNull StartConditionGetter thenFromSheet(@NonNull String sheetName) {
-        return new StartConditionGetter(parserChain.andThen(lastFiller::fillFrom), (workbook) -> workbook.getSheet(sheetName));
+        return new StartConditionGetter(parserChain.closedWith(lastFiller), (workbook) -> workbook.getSheet(sheetName));
     }
 
     /**
@@ -114,7 +132,7 @@ public class XLSTableParser {
      * @return {@link StartConditionGetter} Объект, задающий условия нахождения первого ряда
      */
     public @NonNull StartConditionGetter thenFromSheet(int sheetNumber) {
-        return new StartConditionGetter(parserChain.andThen(lastFiller::fillFrom), (workbook) -> workbook.getSheet(workbook.getSheetName(sheetNumber)));
+        return new StartConditionGetter(parserChain.closedWith(lastFiller), (workbook) -> workbook.getSheet(workbook.getSheetName(sheetNumber)));
     }
 
     /**
@@ -123,7 +141,7 @@ public class XLSTableParser {
      * @return {@link StartConditionGetter} Объект, задающий условия нахождения первого ряда
      */
     public @NonNull StartConditionGetter thenRestartSameSheet() {
-        return new StartConditionGetter(parserChain.andThen(lastFiller::fillFrom), sheetGetter);
+        return new StartConditionGetter(parserChain.closedWith(lastFiller), sheetGetter);
     }
 
     /**
@@ -132,15 +150,356 @@ public class XLSTableParser {
      * @return {@link StartConditionGetter} Объект, задающий условия нахождения первого ряда
      */
     public @NonNull StartConditionGetter thenContinueSameSheet() {
-        return new StartConditionGetter(parserChain.andThen(lastFiller::fillContinuing), sheetGetter);
+        return new StartConditionGetter(parserChain.continuedWith(lastFiller), sheetGetter);
+    }
+
+    /**
+     * Включает параллельное заполнение DTO последней заданной таблицы в собственном пуле из {@code threads} потоков.
+     * <p>Начало и конец таблицы ищутся последовательно, затем ряды порциями заполняются в пуле.
+     * DTO передаются в {@code thenPutInto} в порядке листа и всегда из потока, вызвавшего {@code parse}.
+     * Генератор DTO и наполнители столбцов должны быть потокобезопасны</p>
+     * @param threads Количество потоков
+     * @return Этот же парсер с параллельным заполнением последней таблицы
+     * @throws IllegalStateException Если последняя таблица собирается по столбцам ({@link EndConditionLinker#collectColumns()}):
+     * она заполняется только последовательно
+     */
+    public @NonNull XLSTableParser inParallel(int threads) {
+        return inParallel(threads, true);
+    }
+
+    /**
+     * То же, что и {@link #inParallel(int)}, но с выбором порядка передачи DTO
+     * @param threads Количество потоков
+     * @param ordered {@code true} -- DTO передаются в порядке листа, {@code false} -- по мере готовности
+     * @return Этот же парсер с параллельным заполнением последней таблицы
+     */
+    public @NonNull XLSTableParser inParallel(int threads, boolean ordered) {
+        return new XLSTableParser(lastFiller.inParallel(ParallelFilling.ofThreads(threads, ordered)), parserChain, sheetGetter);
+    }
+
+    /**
+     * То же, что и {@link #inParallel(int)}, но DTO заполняются во внешнем пуле, например {@link java.util.concurrent.ForkJoinPool}
+     * @param executor Пул потоков. Закрывать его должен вызывающий код
+     * @return Этот же парсер с параллельным заполнением последней таблицы
+     */
+    public @NonNull XLSTableParser inParallel(@NonNull Executor executor) {
+        return inParallel(executor, true);
+    }
+
+    /**
+     * То же, что и {@link #inParallel(Executor)}, но с выбором порядка передачи DTO
+     * @param executor Пул потоков. Закрывать его должен вызывающий код
+     * @param ordered {@code true} -- DTO передаются в порядке листа, {@code false} -- по мере готовности
+     * @return Этот же парсер с параллельным заполнением последней таблицы
+     */
+    public @NonNull XLSTableParser inParallel(@NonNull Executor executor, boolean ordered) {
+        return new XLSTableParser(lastFiller.inParallel(ParallelFilling.ofExecutor(executor, ordered)), parserChain, sheetGetter);
+    }
+
+    /**
+     * Задаёт, что делать с рядами последней заданной таблицы, из которых не удалось заполнить DTO:
+     * генератор или наполнитель столбца бросил исключение.
+     * <p>По умолчанию первая ошибка прерывает парсинг. Ошибка любого ряда приходит как {@link RowParseException}
+     * с номерами ряда и столбца, исходное исключение -- в её причине. Пропущенные ряды не передаются в {@code thenPutInto},
+     * их ошибки доступны в {@link TableReport#getErrors()}</p>
+     * @param policy Политика ошибок рядов
+     * @return Этот же парсер с заданной политикой для последней таблицы
+     */
+    public @NonNull XLSTableParser onRowError(@NonNull RowErrorPolicy policy) {
+        return new XLSTableParser(lastFiller.withErrorPolicy(policy), parserChain, sheetGetter);
+    }
+
+    /**
+     * Разрешает выполнять независимые таблицы одновременно в заданном пуле.
+     * <p>Таблицы, связанные через {@link #thenContinueSameSheet()}, зависят от ряда, на котором закончилась
+     * предыдущая, и выполняются по порядку. Таблицы после {@link #thenFromSheet(int)}, {@link #thenFromSheet(String)}
+     * и {@link #thenRestartSameSheet()} начинают новый независимый отрезок, и такие отрезки выполняются одновременно.
+     * Потребители DTO из разных отрезков могут вызываться одновременно из разных потоков</p>
+     * <p>Действует на всю цепочку, в том числе на таблицы, заданные после вызова</p>
+     * @param executor Пул потоков. Закрывать его должен вызывающий код
+     * @return Этот же парсер с одновременным выполнением независимых таблиц
+     */
+    public @NonNull XLSTableParser inParallelTables(@NonNull Executor executor) {
+        return new XLSTableParser(lastFiller, parserChain.withExecutor(executor), sheetGetter);
+    }
+
+    /**
+     * Включает чтение каждого листа за один проход для всех отрезков цепочки, которые его парсят.
+     * <p>Без этого режима каждая таблица после {@link #thenRestartSameSheet()} читает лист заново с нулевого ряда,
+     * а при потоковом парсинге заново разбирает его XML. В этом режиме такие отрезки выполняются вместе над одним
+     * курсором рядов. Каждая таблица получает те же ряды и DTO, что и без него, и потребители получают их в том же
+     * порядке: DTO отрезка копятся в памяти, пока не закончатся предыдущие отрезки листа.
+     * Таблицы с {@link #inParallel(int)} читают лист отдельно</p>
+     * <p>Действует на всю цепочку, в том числе на таблицы, заданные после вызова</p>
+     * @return Этот же парсер с чтением каждого листа за один проход
+     */
+    public @NonNull XLSTableParser inSinglePass() {
+        return new XLSTableParser(lastFiller, parserChain.inSinglePass(), sheetGetter);
+    }
+
+    /**
+     * Включает проверку сначала ряда, на котором таблица начиналась в прошлых книгах.
+     * <p>Для книг одного шаблона условие начала не проверяется на каждом ряду перед таблицей, см. {@link StartRowCache}.
+     * Подсказки привязаны к таблицам этого парсера, поэтому кэш полезен при разборе многих книг одним парсером.
+     * Используется при обычном выполнении таблиц и в ленивых {@code stream}, но не в {@link #inSinglePass()}</p>
+     * <p>Действует на всю цепочку, в том числе на таблицы, заданные после вызова</p>
+     * @param cache Кэш подсказок. Можно разделять между парсерами и потоками
+     * @return Этот же парсер с подсказками рядов начала
+     */
+    public @NonNull XLSTableParser withStartRowCache(@NonNull StartRowCache cache) {
+        return new XLSTableParser(lastFiller, parserChain.withStartRows(cache), sheetGetter);
+    }
+
+    /**
+     * Задаёт локаль, по которой методы {@code *Stringified} форматируют числа и даты.
+     * <p>Действует на всю цепочку, в том числе на таблицы, заданные после вызова.
+     * По умолчанию используется локаль {@link org.apache.poi.util.LocaleUtil#getUserLocale()}</p>
+     * @param locale Локаль форматирования
+     * @return Этот же парсер с заданной локалью форматирования
+     */
+    public @NonNull XLSTableParser withLocale(@NonNull Locale locale) {
+        return new XLSTableParser(lastFiller, parserChain.withFormatting(parserChain.getFormatting().withLocale(locale)), sheetGetter);
+    }
+
+    /**
+     * Задаёт, откуда условия и наполнители DTO берут значения ячеек с формулами, см. {@link FormulaEvaluation}.
+     * <p>По умолчанию используются сохранённые в файле значения, а методы {@code *Stringified} выдают текст формулы.
+     * Вычисление возможно только для {@link #parse(XSSFWorkbook)} и {@link #parse(Path, WorkbookCache)}: результаты видны условиям и наполнителям,
+     * но не записываются в ячейки книги. Потоковое чтение всегда использует сохранённые значения</p>
+     * <p>Действует на всю цепочку, в том числе на таблицы, заданные после вызова</p>
+     * @param evaluation Способ получения значений формул
+     * @return Этот же парсер с заданным способом
+     */
+    public @NonNull XLSTableParser withFormulaEvaluation(@NonNull FormulaEvaluation evaluation) {
+        return new XLSTableParser(lastFiller, parserChain.withFormulas(evaluation), sheetGetter);
+    }
+
+    /**
+     * Пропускает строки, которые парсер выдаёт в DTO, через ограниченный пул, см. {@link StringPool}.
+     * <p>Действует на методы {@code *Stringified}, строковые поля {@link Column} и строковые столбцы
+     * {@link EndConditionLinker#collectColumns()}. Значения, которые наполнитель берёт из ячейки сам, не меняются</p>
+     * <p>Действует на всю цепочку, в том числе на таблицы, заданные после вызова</p>
+     * @param pool Пул строк. Можно разделять между парсерами и потоками
+     * @return Этот же парсер с пулом строк
+     */
+    public @NonNull XLSTableParser withStringPool(@NonNull StringPool pool) {
+        return new XLSTableParser(lastFiller, parserChain.withFormatting(parserChain.getFormatting().withPool(pool)), sheetGetter);
+    }
+
+    /**
+     * Задаёт версию инструкции для {@link ParseResultCache}. Действует на всю цепочку.
+     * <p>Версию нужно менять при любом изменении цепочки, влияющем на DTO: кэш не может сравнить
+     * условия и наполнители, заданные лямбдами</p>
+     * @param version Версия или идентификатор инструкции
+     * @return Этот же парсер с заданной версией
+     * @throws IllegalArgumentException Если версия пустая
+     */
+    public @NonNull XLSTableParser withPlanVersion(@NonNull String version) {
+        if (version.isEmpty()) throw new IllegalArgumentException("Версия инструкции не может быть пустой");
+        return new XLSTableParser(lastFiller, parserChain.withPlanVersion(version), sheetGetter);
+    }
+
+    /**
+     * Включает запись в лог отсутствующих ({@code null}) ячеек столбцов: каждой {@code every}-й в каждой таблице.
+     * <p>По умолчанию отсутствующие ячейки только считаются в {@link TableReport#getNullCells()}.
+     * Действует на всю цепочку, в том числе на таблицы, заданные после вызова</p>
+     * @param every Каждая какая ячейка пишется в лог. 1 -- каждая, 0 -- ни одна
+     * @return Этот же парсер с заданной записью в лог
+     */
+    public @NonNull XLSTableParser logNullCellsEvery(int every) {
+        if (every < 0) throw new IllegalArgumentException("Частота записи в лог не может быть отрицательной, но пришло " + every);
+        return new XLSTableParser(lastFiller, parserChain.withNullCellLogEvery(every), sheetGetter);
     }
 
     /**
      * Метод, запускающий парсинг по инструкции, заданной до того, как прийти к этому методу.
      * @param book Книга, которая подвергнется парсингу по заданной инструкции
+     * @return Статистика парсинга по каждой таблице
+     */
+    public @NonNull ParseReport parse(@NonNull XSSFWorkbook book) {
+        return parse(new XSSFWorkbookAdapter(book));
+    }
+
+    /**
+     * Метод, запускающий потоковый парсинг по инструкции, заданной до того, как прийти к этому методу.
+     * <p>Книга не загружается в память целиком: XML листов читается ряд за рядом,
+     * в памяти остаются только общие строки, форматы стилей и текущий ряд.
+     * Каждый проход по листу заново читает его XML</p>
+     * @param pkg Открытый пакет XLSX. Закрывать его должен вызывающий код
+     * @return Статистика парсинга по каждой таблице
+     * @throws IOException Если пакет не является книгой XLSX или не читается
+     */
+    public @NonNull ParseReport parse(@NonNull OPCPackage pkg) throws IOException {
+        return parse(new XSSFStreamingBook(pkg));
+    }
+
+    /**
+     * Метод, запускающий потоковый парсинг книги XLS (BIFF8) по инструкции, заданной до того, как прийти к этому методу.
+     * <p>Книга не загружается в память целиком: записи листов читаются ряд за рядом,
+     * в памяти остаются только общие строки, форматы и текущий ряд</p>
+     * @param fs Открытая файловая система OLE2 с книгой XLS. Закрывать её должен вызывающий код
+     * @return Статистика парсинга по каждой таблице
+     * @throws IOException Если книга не читается, зашифрована или файл не является книгой XLS
+     */
+    public @NonNull ParseReport parse(@NonNull POIFSFileSystem fs) throws IOException {
+        return parse(new HSSFStreamingBook(fs));
+    }
+
+    /**
+     * Метод, запускающий потоковый парсинг файла XLSX или XLS по инструкции, заданной до того, как прийти к этому методу.
+     * <p>Формат определяется по сигнатуре файла. Файл открывается только на чтение с произвольным доступом,
+     * без копирования в память. По окончании парсинга файл закрывается, в том числе в случае ошибки</p>
+     * @param path Путь к файлу XLSX или XLS
+     * @return Статистика парсинга по каждой таблице
+     * @throws IOException Если файл не является книгой XLSX или XLS или не читается
      */
-    public void parse(@NonNull XSSFWorkbook book) {
-        parserChain.andThen(lastFiller::fillFrom).apply(book, 0);
+    public @NonNull ParseReport parse(@NonNull Path path) throws IOException {
+        return parse(path, this::parse);
+    }
+
+    /**
+     * Открывает файл XLSX или XLS для потокового чтения и закрывает его по окончании парсинга
+     * @param run Парсинг открытой книги
+     */
+    private ParseReport parse(Path path, Function<XLSBook, ParseReport> run) throws IOException {
+        File file = path.toFile();
+        FileMagic magic = FileMagic.valueOf(file);
+        if (magic == FileMagic.OLE2) {
+            try (POIFSFileSystem fs = new POIFSFileSystem(file, true)) {
+                return run.apply(new HSSFStreamingBook(fs));
+            }
+        }
+        if (magic != FileMagic.OOXML) throw new IOException("Файл не является книгой XLSX или XLS: " + path);
+        try {
+            return parseAndRevert(OPCPackage.open(file, PackageAccess.READ), run);
+        } catch (InvalidFormatException e) {
+            throw new IOException("Файл не является книгой XLSX: " + path, e);
+        }
+    }
+
+    /**
+     * То же, что и {@link #parse(Path)}, но книга XLSX открывается целиком и берётся из кэша.
+     * <p>Нужно, когда один и тот же файл разбирают несколько инструкций: повторное обращение к файлу
+     * не разбирает XML книги заново. Книги XLS разбираются потоково, как в {@link #parse(Path)}, без кэша</p>
+     * @param path Путь к файлу XLSX или XLS
+     * @param cache Кэш книг, который можно разделять между парсерами и потоками
+     * @return Статистика парсинга по каждой таблице
+     * @throws IOException Если файл не является книгой XLSX или XLS или не читается
+     */
+    public @NonNull ParseReport parse(@NonNull Path path, @NonNull WorkbookCache cache) throws IOException {
+        if (FileMagic.valueOf(path.toFile()) != FileMagic.OOXML) return parse(path);
+        try (WorkbookCache.Lease lease = cache.open(path)) {
+            return parse(lease.getBook());
+        }
+    }
+
+    /**
+     * То же, что и {@link #parse(Path)}, но результат берётся из кэша на диске, если этот файл уже разбирался
+     * этой версией инструкции. Иначе файл разбирается, а DTO всех таблиц сохраняются в кэш
+     * <p>Потребители получают те же DTO, что и при парсинге, и {@link ParseReport#isFromCache()} показывает,
+     * откуда они взяты. Условия кэширования описаны в {@link ParseResultCache}</p>
+     * @param path Путь к файлу XLSX или XLS
+     * @param cache Кэш результатов
+     * @return Статистика парсинга по каждой таблице
+     * @throws IOException Если файл не является книгой XLSX или XLS или не читается
+     * @throws IllegalStateException Если не задана версия инструкции, см. {@link #withPlanVersion(String)}
+     */
+    public @NonNull ParseReport parse(@NonNull Path path, @NonNull ParseResultCache cache) throws IOException {
+        ParserChain chain = parserChain.closedWith(lastFiller);
+        if (chain.getPlanVersion() == null) throw new IllegalStateException("Для кэша результатов нужна версия инструкции: задайте её в withPlanVersion");
+        String key = cache.key(path, chain);
+        ParseReport cached = cache.replay(key, chain);
+        if (cached != null) return cached;
+        try (ParseResultCache.Recording recording = cache.record(key, chain)) {
+            ParseReport report = parse(path, book -> chain.run(book, recording));
+            recording.commit(report);
+            return report;
+        }
+    }
+
+    /**
+     * Метод, запускающий потоковый парсинг книги XLSX или XLS из потока по инструкции, заданной до того, как прийти к этому методу.
+     * <p>Формат определяется по сигнатуре. Небольшие книги читаются в память, крупные сначала сбрасываются
+     * во временный файл и разбираются как {@link #parse(Path)}. Временный файл удаляется по окончании парсинга.
+     * Сам поток не закрывается</p>
+     * @param in Поток с содержимым файла XLSX или XLS
+     * @return Статистика парсинга по каждой таблице
+     * @throws IOException Если поток не является книгой XLSX или XLS или не читается
+     */
+    public @NonNull ParseReport parse(@NonNull InputStream in) throws IOException {
+        byte[] head = in.readNBytes(IN_MEMORY_LIMIT);
+        if (head.length < IN_MEMORY_LIMIT) {
+            FileMagic magic = FileMagic.valueOf(head);
+            if (magic == FileMagic.OLE2) {
+                try (POIFSFileSystem fs = new POIFSFileSystem(new ByteArrayInputStream(head))) {
+                    return parse(fs);
+                }
+            }
+            if (magic != FileMagic.OOXML) throw new IOException("Поток не является книгой XLSX или XLS");
+            try {
+                return parseAndRevert(OPCPackage.open(new ByteArrayInputStream(head)), this::parse);
+            } catch (InvalidFormatException e) {
+                throw new IOException("Поток не является книгой XLSX", e);
+            }
+        }
+        Path temp = Files.createTempFile("xlsparse", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                out.write(head);
+                in.transferTo(out);
+            }
+            return parse(temp);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Метод, запускающий потоковый парсинг пакета файлов по инструкции, заданной до того, как прийти к этому методу.
+     * <p>Файлы разбираются одновременно, как {@link #parse(Path)}, в виртуальных потоках (если среда выполнения
+     * их поддерживает, иначе в пуле по числу процессоров). Одновременно открыты только книги, суммарный
+     * распакованный размер которых не больше четверти доступной JVM памяти</p>
+     * @param files Пути к файлам XLSX или XLS
+     * @return Результаты в порядке файлов. Ошибка одного файла не прерывает остальные
+     */
+    public @NonNull List<FileParseResult> parseAll(@NonNull Collection<Path> files) {
+        return parseAll(files, Runtime.getRuntime().maxMemory() / 4);
+    }
+
+    /**
+     * То же, что и {@link #parseAll(Collection)}, но с заданным бюджетом памяти
+     * @param files Пути к файлам XLSX или XLS
+     * @param memoryBudget Наибольший суммарный распакованный размер одновременно открытых книг в байтах
+     * @return Результаты в порядке файлов. Ошибка одного файла не прерывает остальные
+     */
+    public @NonNull List<FileParseResult> parseAll(@NonNull Collection<Path> files, long memoryBudget) {
+        return BatchParsing.run(files, memoryBudget, null, this::parse);
+    }
+
+    /**
+     * То же, что и {@link #parseAll(Collection, long)}, но файлы разбираются в заданном пуле
+     * @param files Пути к файлам XLSX или XLS
+     * @param memoryBudget Наибольший суммарный распакованный размер одновременно открытых книг в байтах
+     * @param executor Пул потоков. Закрывать его должен вызывающий код
+     * @return Результаты в порядке файлов. Ошибка одного файла не прерывает остальные
+     */
+    public @NonNull List<FileParseResult> parseAll(@NonNull Collection<Path> files, long memoryBudget, @NonNull Executor executor) {
+        return BatchParsing.run(files, memoryBudget, executor, this::parse);
+    }
+
+    /**
+     * Парсит открытый только на чтение пакет и закрывает его без сохранения
+     */
+    private ParseReport parseAndRevert(OPCPackage pkg, Function<XLSBook, ParseReport> run) throws IOException {
+        try {
+            return run.apply(new XSSFStreamingBook(pkg));
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    private ParseReport parse(XLSBook book) {
+        return parserChain.closedWith(lastFiller).run(book);
     }
 
     /**
@@ -148,8 +507,8 @@ public class XLSTableParser {
      */
     @AllArgsConstructor(access = AccessLevel.PRIVATE)
     public static final class StartConditionGetter {
-        private final TransitiveBiFunction<XSSFWorkbook, Integer, Integer> parser;
-        private final Function<XSSFWorkbook, XSSFSheet> sheetGetter;
+        private final ParserChain parser;
+        private final Function<XLSBook, XLSSheet> sheetGetter;
 
         /**
          * Метод, принимающий условие взятия ряда (и всех последующих рядов) в работу.
@@ -159,7 +518,7 @@ public class XLSTableParser {
          * @return {@link Skipper} Класс для пропуска лишних рядов
          */
         @Contract("_ -> new")
-        public @NonNull Skipper findRowThat(@NonNull Predicate<XSSFRow> startIf) {
+        public @NonNull Skipper findRowThat(@NonNull Predicate<XLSRow> startIf) {
             return new Skipper(parser, sheetGetter, startIf);
         }
 
@@ -171,7 +530,23 @@ public class XLSTableParser {
         @Contract("_ -> new")
         public @NonNull StartCondition findRowWhereCell(int cellNum) {
             if (cellNum < -2) throw new IllegalArgumentException("Неверный номер столбца: " + cellNum);
-            return new StartCondition(parser, sheetGetter, cellNum, rowCondition->rowCondition);
+            return new StartCondition(parser, sheetGetter, cellNum, null, false);
+        }
+
+        /**
+         * Начинает таблицу с ряда, содержащего заголовок из индекса.
+         * <p>Ряды всех заголовков индекса находятся одним проходом по листу при первом обращении к нему,
+         * затем таблица сразу переходит к первому ряду своего заголовка, не раньше ряда начала поиска.
+         * Если таблица выполняется не отдельно, например в {@link XLSTableParser#inSinglePass()},
+         * заголовок проверяется на каждом ряду, как обычное условие</p>
+         * @param index Индекс заголовков, общий для таблиц отчёта
+         * @param title Заголовок этой таблицы
+         * @return {@link Skipper} Класс для пропуска лишних рядов
+         * @throws IllegalArgumentException Если заголовка нет в индексе
+         */
+        @Contract("_, _ -> new")
+        public @NonNull Skipper findRowTitled(@NonNull TitleIndex index, @NonNull String title) {
+            return new Skipper(parser, sheetGetter, index.start(title));
         }
     }
 
@@ -180,20 +555,15 @@ public class XLSTableParser {
      */
     @AllArgsConstructor(access = AccessLevel.PRIVATE)
     public static final class StartCondition extends Condition<StartConditionLinker, StartCondition> {
-        private final TransitiveBiFunction<XSSFWorkbook, Integer, Integer> parser;
-        private final Function<XSSFWorkbook, XSSFSheet> sheetGetter;
+        private final ParserChain parser;
+        private final Function<XLSBook, XLSSheet> sheetGetter;
         private final int cellNum;
-        private final Function<Predicate<XSSFRow>, Predicate<XSSFRow>> initial;
+        private final @Nullable RowCondition previous;
+        private final boolean or;
 
         @Override
-        protected @NonNull StartConditionLinker test(@NotNull Predicate<XSSFCell> condition) {
-            return new StartConditionLinker(parser, sheetGetter, cellNum,
-                    initial.apply(row -> condition.test(row.getCell(
-                            cellNum == CellCodes.FIRST?
-                                    row.getFirstCellNum() :
-                                    cellNum == CellCodes.LAST?
-                                            row.getLastCellNum() :
-                                            cellNum))));
+        protected @NonNull StartConditionLinker test(@NotNull RowCondition.CellTest condition) {
+            return new StartConditionLinker(parser, sheetGetter, cellNum, link(previous, or, cellNum, condition));
         }
     }
 
@@ -201,17 +571,17 @@ public class XLSTableParser {
      * Класс, описывающий связку нескольких условий и переход далее по алгоритму
      */
     public static final class StartConditionLinker extends ConditionLinker<StartCondition, StartConditionLinker> {
-        private final TransitiveBiFunction<XSSFWorkbook, Integer, Integer> parser;
-        private final Function<XSSFWorkbook, XSSFSheet> sheetGetter;
-        private StartConditionLinker(@NonNull TransitiveBiFunction<XSSFWorkbook, Integer, Integer> parser, @NonNull Function<XSSFWorkbook, XSSFSheet> sheetGetter, int cellNum, @NonNull Predicate<XSSFRow> initial) {
+        private final ParserChain parser;
+        private final Function<XLSBook, XLSSheet> sheetGetter;
+        private StartConditionLinker(@NonNull ParserChain parser, @NonNull Function<XLSBook, XLSSheet> sheetGetter, int cellNum, @NonNull RowCondition initial) {
             super(cellNum, initial);
             this.parser = parser;
             this.sheetGetter = sheetGetter;
         }
 
         @Override
-        protected @NonNull StartCondition goBack(int cellNum, @NotNull Function<Predicate<XSSFRow>, Predicate<XSSFRow>> transformer) {
-            return new StartCondition(parser, sheetGetter, cellNum, transformer);
+        protected @NonNull StartCondition goBack(int cellNum, boolean or) {
+            return new StartCondition(parser, sheetGetter, cellNum, initial, or);
         }
 
         /**
@@ -237,9 +607,9 @@ public class XLSTableParser {
      */
     @AllArgsConstructor(access = AccessLevel.PRIVATE)
     public static final class Skipper {
-        private final TransitiveBiFunction<XSSFWorkbook, Integer, Integer> parser;
-        private final Function<XSSFWorkbook, XSSFSheet> sheetGetter;
-        private final Predicate<XSSFRow> filter;
+        private final ParserChain parser;
+        private final Function<XLSBook, XLSSheet> sheetGetter;
+        private final Predicate<XLSRow> filter;
 
         /**
          * @param skip Сколько строк таблицы пропустить после нахождения ряда по условию
@@ -260,9 +630,9 @@ public class XLSTableParser {
     }
     @AllArgsConstructor(access = AccessLevel.PRIVATE)
     public static final class EndConditionGetter {
-        private final TransitiveBiFunction<XSSFWorkbook, Integer, Integer> parser;
-        private final Function<XSSFWorkbook, XSSFSheet> sheetGetter;
-        private final Predicate<XSSFRow> filter;
+        private final ParserChain parser;
+        private final Function<XLSBook, XLSSheet> sheetGetter;
+        private final Predicate<XLSRow> filter;
         private final int skip;
 
         /**
@@ -270,7 +640,7 @@ public class XLSTableParser {
          * @return {@link EntityGetter} Класс для выставления типа DTO и метода его создания
          */
         @Contract("_ -> new")
-        public @NonNull EntityGetter endIf(@NonNull Predicate<XSSFRow> rowDecliner) {
+        public @NonNull EntityGetter endIf(@NonNull Predicate<XLSRow> rowDecliner) {
             return new EntityGetter(parser, sheetGetter, filter, skip, rowDecliner);
         }
 
@@ -282,35 +652,30 @@ public class XLSTableParser {
         @Contract("_ -> new")
         public @NonNull EndCondition endIfCell(int cellNum) {
             if (cellNum < -2) throw new IllegalArgumentException("Неверный номер столбца: " + cellNum);
-            return new EndCondition(parser, sheetGetter, filter, skip, cellNum, predicate->predicate);
+            return new EndCondition(parser, sheetGetter, filter, skip, cellNum, null, false);
         }
     }
     @AllArgsConstructor(access = AccessLevel.PRIVATE)
     public static final class EndCondition extends Condition<EndConditionLinker, EndCondition> {
-        private final TransitiveBiFunction<XSSFWorkbook, Integer, Integer> parser;
-        private final Function<XSSFWorkbook, XSSFSheet> sheetGetter;
-        private final Predicate<XSSFRow> filter;
+        private final ParserChain parser;
+        private final Function<XLSBook, XLSSheet> sheetGetter;
+        private final Predicate<XLSRow> filter;
         private final int skip;
         private final int cellNum;
-        private final Function<Predicate<XSSFRow>, Predicate<XSSFRow>> initial;
+        private final @Nullable RowCondition previous;
+        private final boolean or;
         @Contract("_ -> new")
-        protected @NonNull EndConditionLinker test(@NonNull Predicate<XSSFCell> condition) {
-            return new EndConditionLinker(parser, sheetGetter, filter, skip, cellNum,
-                    initial.apply(row -> condition.test(row.getCell(
-                            cellNum == CellCodes.FIRST?
-                                    row.getFirstCellNum() :
-                                    cellNum == CellCodes.LAST?
-                                            row.getLastCellNum() :
-                                            cellNum))));
+        protected @NonNull EndConditionLinker test(@NonNull RowCondition.CellTest condition) {
+            return new EndConditionLinker(parser, sheetGetter, filter, skip, cellNum, link(previous, or, cellNum, condition));
         }
     }
     public static final class EndConditionLinker extends ConditionLinker<EndCondition, EndConditionLinker>{
-        private final TransitiveBiFunction<XSSFWorkbook, Integer, Integer> parser;
-        private final Function<XSSFWorkbook, XSSFSheet> sheetGetter;
-        private final Predicate<XSSFRow> filter;
+        private final ParserChain parser;
+        private final Function<XLSBook, XLSSheet> sheetGetter;
+        private final Predicate<XLSRow> filter;
         private final int skip;
 
-        private EndConditionLinker(@NonNull TransitiveBiFunction<XSSFWorkbook, Integer, Integer> parser, Function<XSSFWorkbook, XSSFSheet> sheetGetter, @NonNull Predicate<XSSFRow> filter, int skip, int cellNum, @NonNull Predicate<XSSFRow> initial) {
+        private EndConditionLinker(@NonNull ParserChain parser, Function<XLSBook, XLSSheet> sheetGetter, @NonNull Predicate<XLSRow> filter, int skip, int cellNum, @NonNull RowCondition initial) {
             super(cellNum, initial);
             this.parser = parser;
             this.sheetGetter = sheetGetter;
@@ -318,8 +683,8 @@ public class XLSTableParser {
             this.skip = skip;
         }
         @Override
-        protected @NonNull EndCondition goBack(int cellNum, @NotNull Function<Predicate<XSSFRow>, @NonNull Predicate<XSSFRow>> transformer) {
-            return new EndCondition(parser, sheetGetter,filter,skip,cellNum,transformer);
+        protected @NonNull EndCondition goBack(int cellNum, boolean or) {
+            return new EndCondition(parser, sheetGetter, filter, skip, cellNum, initial, or);
         }
         /**
          * @param generator {@link UncheckedSupplier} Генератор DTO
@@ -330,14 +695,37 @@ public class XLSTableParser {
         public <T> @NonNull EntityFillerVariant<T> getEntityFrom(@NonNull UncheckedSupplier<T> generator) {
             return new EntityFillerVariant<>(parser, sheetGetter, filter, skip, initial, generator);
         }
+        /**
+         * Создаёт DTO конструктором без параметров и заполняет поля, отмеченные {@link Column}.
+         * <p>Привязка полей собирается один раз на класс. Столбцы, заданные через {@link Column#header()},
+         * ищутся в ряду, удовлетворившем условию начала таблицы. К привязанным столбцам можно добавить свои</p>
+         * @param type Класс DTO
+         * @param <T>  Тип DTO
+         * @return {@link EntityFillerNumberChooser} Класс для дальнейшего заполнения DTO или завершения инструкции
+         * @throws IllegalArgumentException Если класс нельзя привязать: нет конструктора без параметров, полей с {@link Column}
+         * или тип поля не поддерживается
+         */
+        @Contract("_ -> new")
+        public <T> @NonNull EntityFillerNumberChooser<T> getEntityFrom(@NonNull Class<T> type) {
+            AnnotatedEntity<T> entity = AnnotatedEntity.of(type);
+            return new EntityFillerNumberChooser<>(parser, sheetGetter, filter, skip, initial, entity.getGenerator()::get, entity.getColumns());
+        }
+        /**
+         * Вместо DTO на каждый ряд таблица собирается по столбцам в {@link ColumnarTable}
+         * @return {@link ColumnCollector} Класс для задания столбцов таблицы
+         */
+        @Contract("-> new")
+        public @NonNull ColumnCollector collectColumns() {
+            return new ColumnCollector(parser, sheetGetter, filter, skip, initial, List.of(), List.of(), ColumnPlan.builder());
+        }
     }
     @AllArgsConstructor(access = AccessLevel.PRIVATE)
     public static final class EntityGetter {
-        private final TransitiveBiFunction<XSSFWorkbook, Integer, Integer> parser;
-        private final Function<XSSFWorkbook, XSSFSheet> sheetGetter;
-        private final Predicate<XSSFRow> filter;
+        private final ParserChain parser;
+        private final Function<XLSBook, XLSSheet> sheetGetter;
+        private final Predicate<XLSRow> filter;
         private final int skip;
-        private final Predicate<XSSFRow> rowDecliner;
+        private final Predicate<XLSRow> rowDecliner;
 
         /**
          * @param generator {@link UncheckedSupplier} Генератор DTO
@@ -348,30 +736,123 @@ public class XLSTableParser {
         public <T> @NonNull EntityFillerVariant<T> getEntityFrom(@NonNull UncheckedSupplier<T> generator) {
             return new EntityFillerVariant<>(parser, sheetGetter, filter, skip, rowDecliner, generator);
         }
+        /**
+         * Создаёт DTO конструктором без параметров и заполняет поля, отмеченные {@link Column}.
+         * <p>Привязка полей собирается один раз на класс. Столбцы, заданные через {@link Column#header()},
+         * ищутся в ряду, удовлетворившем условию начала таблицы. К привязанным столбцам можно добавить свои</p>
+         * @param type Класс DTO
+         * @param <T>  Тип DTO
+         * @return {@link EntityFillerNumberChooser} Класс для дальнейшего заполнения DTO или завершения инструкции
+         * @throws IllegalArgumentException Если класс нельзя привязать: нет конструктора без параметров, полей с {@link Column}
+         * или тип поля не поддерживается
+         */
+        @Contract("_ -> new")
+        public <T> @NonNull EntityFillerNumberChooser<T> getEntityFrom(@NonNull Class<T> type) {
+            AnnotatedEntity<T> entity = AnnotatedEntity.of(type);
+            return new EntityFillerNumberChooser<>(parser, sheetGetter, filter, skip, rowDecliner, entity.getGenerator()::get, entity.getColumns());
+        }
+        /**
+         * Вместо DTO на каждый ряд таблица собирается по столбцам в {@link ColumnarTable}
+         * @return {@link ColumnCollector} Класс для задания столбцов таблицы
+         */
+        @Contract("-> new")
+        public @NonNull ColumnCollector collectColumns() {
+            return new ColumnCollector(parser, sheetGetter, filter, skip, rowDecliner, List.of(), List.of(), ColumnPlan.builder());
+        }
+    }
+
+    /**
+     * Класс задаёт столбцы таблицы, собираемой по столбцам в {@link ColumnarTable}.
+     * <p>Числовые столбцы накапливаются в массивы примитивов, строковые кодируются словарём, поэтому
+     * на ряд не создаётся ни DTO, ни упакованных значений. Таблица заполняется последовательно:
+     * вызов {@link XLSTableParser#inParallel(int)} для неё бросает {@link IllegalStateException}</p>
+     */
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class ColumnCollector {
+        private final ParserChain parser;
+        private final Function<XLSBook, XLSSheet> sheetGetter;
+        private final Predicate<XLSRow> filter;
+        private final int skip;
+        private final Predicate<XLSRow> rowDecliner;
+        private final List<String> names;
+        private final List<ColumnarBuilder.Kind> kinds;
+        private final ColumnPlan.Builder<ColumnarBuilder> columns;
+
+        /**
+         * Числовой столбец. Ячейки, не содержащие числа (в том числе кэшированного результата формулы), считаются пустыми
+         * @param name Имя столбца в {@link ColumnarTable}
+         * @param cellNum Номер столбца <b>ИЛИ</b> код из класса {@link CellCodes}
+         * @return Себя же, для дальнейшего заполнения
+         */
+        @Contract("_, _ -> new")
+        public @NonNull ColumnCollector doubleColumn(@NonNull String name, int cellNum) {
+            return with(name, ColumnarBuilder.Kind.DOUBLE, cellNum);
+        }
+        /**
+         * Целочисленный столбец. Ячейки, не содержащие числа, считаются пустыми, а дробное или не помещающееся
+         * в {@code long} число -- ошибка ряда, обрабатываемая по политике ошибок таблицы
+         * @param name Имя столбца в {@link ColumnarTable}
+         * @param cellNum Номер столбца <b>ИЛИ</b> код из класса {@link CellCodes}
+         * @return Себя же, для дальнейшего заполнения
+         */
+        @Contract("_, _ -> new")
+        public @NonNull ColumnCollector longColumn(@NonNull String name, int cellNum) {
+            return with(name, ColumnarBuilder.Kind.LONG, cellNum);
+        }
+        /**
+         * Строковый столбец: строковое представление ячейки, как в методах {@code *Stringified}, кодируется словарём.
+         * Пустыми считаются только отсутствующие ячейки
+         * @param name Имя столбца в {@link ColumnarTable}
+         * @param cellNum Номер столбца <b>ИЛИ</b> код из класса {@link CellCodes}
+         * @return Себя же, для дальнейшего заполнения
+         */
+        @Contract("_, _ -> new")
+        public @NonNull ColumnCollector stringColumn(@NonNull String name, int cellNum) {
+            return with(name, ColumnarBuilder.Kind.STRING, cellNum);
+        }
+        /**
+         * Метод завершает набор условий парсинга и возвращает развилку выбора на новый цикл или начала парсинга
+         * @param consumer Лямбда-потребитель, получающий собранную таблицу в конце каждого её парсинга
+         * @return Развилка для задания следующей таблицы на парсинг или начала парсинга
+         */
+        @Contract("_ -> new")
+        public @NonNull XLSTableParser thenPutInto(@NonNull UncheckedConsumer<? super ColumnarTable> consumer) {
+            if (names.isEmpty()) throw new IllegalStateException("Не задано ни одного столбца");
+            TableFiller<ColumnarBuilder> filler = new TableFiller<>(sheetGetter, columns.compile(),
+                    () -> { throw new IllegalStateException("Накопитель столбцов создаётся на каждый проход по таблице"); },
+                    filter, rowDecliner, skip,
+                    ColumnarBuilder.sink(names.toArray(new String[0]), kinds.toArray(new ColumnarBuilder.Kind[0]), consumer));
+            return new XLSTableParser(filler, parser, sheetGetter);
+        }
+
+        private ColumnCollector with(String name, ColumnarBuilder.Kind kind, int cellNum) {
+            if (cellNum < -2) throw new IllegalArgumentException("Неверный номер столбца: " + cellNum);
+            if (names.contains(name)) throw new IllegalArgumentException("Столбец уже задан: " + name);
+            List<String> names = new ArrayList<>(this.names);
+            names.add(name);
+            List<ColumnarBuilder.Kind> kinds = new ArrayList<>(this.kinds);
+            kinds.add(kind);
+            return new ColumnCollector(parser, sheetGetter, filter, skip, rowDecliner, names, kinds,
+                    columns.column(cellNum, ColumnarBuilder.filler(this.names.size())));
+        }
     }
 
     @AllArgsConstructor(access = AccessLevel.PRIVATE)
     public static final class EntityFillerVariant<T> {
-        private final TransitiveBiFunction<XSSFWorkbook, Integer, Integer> parser;
-        private final Function<XSSFWorkbook, XSSFSheet> sheetGetter;
-        private final Predicate<XSSFRow> filter;
+        private final ParserChain parser;
+        private final Function<XLSBook, XLSSheet> sheetGetter;
+        private final Predicate<XLSRow> filter;
         private final int skip;
-        private final Predicate<XSSFRow> rowDecliner;
+        private final Predicate<XLSRow> rowDecliner;
         private final UncheckedSupplier<T> generator;
-        public EntityFillerSequential<T> thenForNextColumn(@NonNull UncheckedBiConsumer<T, XSSFCell> filler) {
-            UncheckedBiConsumer<T, XSSFRow> columnFiller = (dto, row) -> filler.acceptUnchecked(dto, row.getCell(row.getFirstCellNum()));
-            return new EntityFillerSequential<>(parser, sheetGetter, filter, skip, rowDecliner, generator, columnFiller, 1);
+        public EntityFillerSequential<T> thenForNextColumn(@NonNull UncheckedBiConsumer<T, XLSCell> filler) {
+            return new EntityFillerSequential<>(parser, sheetGetter, filter, skip, rowDecliner, generator, ColumnPlan.<T>builder().fromFirst(0, ColumnPlan.ofCell(filler)), 1);
         }
         public EntityFillerSequential<T> thenForNextColumnStringified(@NonNull UncheckedBiConsumer<T, String> filler) {
-            return thenForNextColumn((dto, cell) -> filler.acceptUnchecked(dto, new DataFormatter().formatCellValue(cell)));
+            return new EntityFillerSequential<>(parser, sheetGetter, filter, skip, rowDecliner, generator, ColumnPlan.<T>builder().fromFirst(0, ColumnPlan.ofString(filler)), 1);
         }
-        public EntityFillerNumberChooser<T> thenForColumn(int cellNum, @NonNull UncheckedBiConsumer<T, XSSFCell> filler) {
-            UncheckedBiConsumer<T, XSSFRow> columnFiller = (dto, row) -> {
-                XSSFCell cell = row.getCell(cellNum == CellCodes.FIRST? row.getFirstCellNum() : cellNum == CellCodes.LAST? row.getLastCellNum() : cellNum);
-                if (cell == null) log.warn(String.format("Столбец ряда %d не содержит ячейку %d (null)", row.getRowNum(), cellNum));
-                filler.acceptUnchecked(dto, cell);
-            };
-            return new EntityFillerNumberChooser<>(parser, sheetGetter, filter, skip, rowDecliner, generator, columnFiller);
+        public EntityFillerNumberChooser<T> thenForColumn(int cellNum, @NonNull UncheckedBiConsumer<T, XLSCell> filler) {
+            return new EntityFillerNumberChooser<>(parser, sheetGetter, filter, skip, rowDecliner, generator, ColumnPlan.<T>builder().column(cellNum, ColumnPlan.ofCell(filler)));
         }
 
         /**
@@ -383,7 +864,35 @@ public class XLSTableParser {
          */
         @Contract("_, _ -> new")
         public @NotNull EntityFillerNumberChooser<T> thenForColumnStringified(int cellNum, @NonNull UncheckedBiConsumer<T, String> filler) {
-            return thenForColumn(cellNum, (dto, cell) -> filler.acceptUnchecked(dto, new DataFormatter().formatCellValue(cell)));
+            return new EntityFillerNumberChooser<>(parser, sheetGetter, filter, skip, rowDecliner, generator, ColumnPlan.<T>builder().column(cellNum, ColumnPlan.ofString(filler)));
+        }
+        /**
+         * См. {@link EntityFillerNumberChooser#thenForColumnNamed(String, UncheckedBiConsumer)}
+         */
+        @Contract("_, _ -> new")
+        public @NotNull EntityFillerNumberChooser<T> thenForColumnNamed(@NonNull String header, @NonNull UncheckedBiConsumer<T, XLSCell> filler) {
+            return thenForColumnNamed(header, HeaderMatching.EXACT, filler);
+        }
+        /**
+         * См. {@link EntityFillerNumberChooser#thenForColumnNamed(String, HeaderMatching, UncheckedBiConsumer)}
+         */
+        @Contract("_, _, _ -> new")
+        public @NotNull EntityFillerNumberChooser<T> thenForColumnNamed(@NonNull String header, @NonNull HeaderMatching matching, @NonNull UncheckedBiConsumer<T, XLSCell> filler) {
+            return new EntityFillerNumberChooser<>(parser, sheetGetter, filter, skip, rowDecliner, generator, ColumnPlan.<T>builder().header(header, matching, ColumnPlan.ofCell(filler)));
+        }
+        /**
+         * См. {@link EntityFillerNumberChooser#thenForColumnNamedStringified(String, UncheckedBiConsumer)}
+         */
+        @Contract("_, _ -> new")
+        public @NotNull EntityFillerNumberChooser<T> thenForColumnNamedStringified(@NonNull String header, @NonNull UncheckedBiConsumer<T, String> filler) {
+            return thenForColumnNamedStringified(header, HeaderMatching.EXACT, filler);
+        }
+        /**
+         * См. {@link EntityFillerNumberChooser#thenForColumnNamedStringified(String, HeaderMatching, UncheckedBiConsumer)}
+         */
+        @Contract("_, _, _ -> new")
+        public @NotNull EntityFillerNumberChooser<T> thenForColumnNamedStringified(@NonNull String header, @NonNull HeaderMatching matching, @NonNull UncheckedBiConsumer<T, String> filler) {
+            return new EntityFillerNumberChooser<>(parser, sheetGetter, filter, skip, rowDecliner, generator, ColumnPlan.<T>builder().header(header, matching, ColumnPlan.ofString(filler)));
         }
     }
 
@@ -394,8 +903,8 @@ public class XLSTableParser {
      * @param <T> Тип DTO
      */
     public static final class EntityFillerNumberChooser<T> extends EntityFiller<T> {
-        private EntityFillerNumberChooser(TransitiveBiFunction<XSSFWorkbook, Integer, Integer> parser, Function<XSSFWorkbook, XSSFSheet> sheetGetter, Predicate<XSSFRow> filter, int skip, Predicate<XSSFRow> rowDecliner, UncheckedSupplier<T> generator, UncheckedBiConsumer<T, XSSFRow> columnFiller) {
-            super(parser, sheetGetter, filter, skip, rowDecliner, generator, columnFiller);
+        private EntityFillerNumberChooser(ParserChain parser, Function<XLSBook, XLSSheet> sheetGetter, Predicate<XLSRow> filter, int skip, Predicate<XLSRow> rowDecliner, UncheckedSupplier<T> generator, ColumnPlan.Builder<T> columns) {
+            super(parser, sheetGetter, filter, skip, rowDecliner, generator, columns);
         }
 
         /**
@@ -405,13 +914,8 @@ public class XLSTableParser {
          * @return Себя же, для дальнейшего заполнения
          */
         @Contract("_, _ -> new")
-        public @NotNull EntityFillerNumberChooser<T> thenForColumn(int cellNum, @NonNull UncheckedBiConsumer<T, XSSFCell> filler) {
-            UncheckedBiConsumer<T, XSSFRow> newFiller = columnFiller.andThen((dto, row) -> {
-                XSSFCell cell = row.getCell(cellNum == CellCodes.FIRST? row.getFirstCellNum() : cellNum == CellCodes.LAST? row.getLastCellNum() : cellNum);
-                if (cell == null) log.warn(String.format("Столбец ряда %d не содержит ячейку %d (null)", row.getRowNum(), cellNum));
-                filler.accept(dto, cell);
-            });
-            return new EntityFillerNumberChooser<>(parser, sheetGetter, filter, skip, rowDecliner, generator, newFiller);
+        public @NotNull EntityFillerNumberChooser<T> thenForColumn(int cellNum, @NonNull UncheckedBiConsumer<T, XLSCell> filler) {
+            return new EntityFillerNumberChooser<>(parser, sheetGetter, filter, skip, rowDecliner, generator, columns.column(cellNum, ColumnPlan.ofCell(filler)));
         }
         /**
          * Метод для внесения способа заполнения DTO из строкового представления ячейки.
@@ -421,7 +925,53 @@ public class XLSTableParser {
          */
         @Contract("_, _ -> new")
         public @NotNull EntityFillerNumberChooser<T> thenForColumnStringified(int cellNum, @NonNull UncheckedBiConsumer<T, String> filler) {
-            return thenForColumn(cellNum, (dto, cell) -> filler.acceptUnchecked(dto, new DataFormatter().formatCellValue(cell)));
+            return new EntityFillerNumberChooser<>(parser, sheetGetter, filter, skip, rowDecliner, generator, columns.column(cellNum, ColumnPlan.ofString(filler)));
+        }
+        /**
+         * Метод для внесения способа заполнения DTO из ячейки столбца с заданным заголовком.
+         * <p>Заголовки читаются из ряда, удовлетворившего условию начала таблицы, один раз на таблицу.
+         * Если подходящих ячеек несколько, берётся самая левая. Если заголовка нет, парсинг таблицы
+         * завершается {@link IllegalArgumentException}</p>
+         * @param header Заголовок столбца. Сравнивается с текстом ячейки точно, без пробелов по краям
+         * @param filler Лямбда, говорящая о том, как положить содержимое ячейки в DTO
+         * @return Себя же, для дальнейшего заполнения
+         */
+        @Contract("_, _ -> new")
+        public @NotNull EntityFillerNumberChooser<T> thenForColumnNamed(@NonNull String header, @NonNull UncheckedBiConsumer<T, XLSCell> filler) {
+            return thenForColumnNamed(header, HeaderMatching.EXACT, filler);
+        }
+        /**
+         * То же, что и {@link #thenForColumnNamed(String, UncheckedBiConsumer)}, но с выбором способа сравнения заголовков
+         * @param header Заголовок столбца
+         * @param matching Способ сравнения заголовка с текстом ячеек
+         * @param filler Лямбда, говорящая о том, как положить содержимое ячейки в DTO
+         * @return Себя же, для дальнейшего заполнения
+         */
+        @Contract("_, _, _ -> new")
+        public @NotNull EntityFillerNumberChooser<T> thenForColumnNamed(@NonNull String header, @NonNull HeaderMatching matching, @NonNull UncheckedBiConsumer<T, XLSCell> filler) {
+            return new EntityFillerNumberChooser<>(parser, sheetGetter, filter, skip, rowDecliner, generator, columns.header(header, matching, ColumnPlan.ofCell(filler)));
+        }
+        /**
+         * Метод для внесения способа заполнения DTO из строкового представления ячейки столбца с заданным заголовком,
+         * см. {@link #thenForColumnNamed(String, UncheckedBiConsumer)}
+         * @param header Заголовок столбца. Сравнивается с текстом ячейки точно, без пробелов по краям
+         * @param filler Лямбда, говорящая о том, как положить содержимое ячейки в DTO
+         * @return Себя же, для дальнейшего заполнения
+         */
+        @Contract("_, _ -> new")
+        public @NotNull EntityFillerNumberChooser<T> thenForColumnNamedStringified(@NonNull String header, @NonNull UncheckedBiConsumer<T, String> filler) {
+            return thenForColumnNamedStringified(header, HeaderMatching.EXACT, filler);
+        }
+        /**
+         * То же, что и {@link #thenForColumnNamedStringified(String, UncheckedBiConsumer)}, но с выбором способа сравнения заголовков
+         * @param header Заголовок столбца
+         * @param matching Способ сравнения заголовка с текстом ячеек
+         * @param filler Лямбда, говорящая о том, как положить содержимое ячейки в DTO
+         * @return Себя же, для дальнейшего заполнения
+         */
+        @Contract("_, _, _ -> new")
+        public @NotNull EntityFillerNumberChooser<T> thenForColumnNamedStringified(@NonNull String header, @NonNull HeaderMatching matching, @NonNull UncheckedBiConsumer<T, String> filler) {
+            return new EntityFillerNumberChooser<>(parser, sheetGetter, filter, skip, rowDecliner, generator, columns.header(header, matching, ColumnPlan.ofString(filler)));
         }
     }
 
@@ -433,8 +983,8 @@ public class XLSTableParser {
      */
     public static final class EntityFillerSequential<T> extends EntityFiller<T> {
         private final int cellNum;
-        private EntityFillerSequential(TransitiveBiFunction<XSSFWorkbook, Integer, Integer> parser, Function<XSSFWorkbook, XSSFSheet> sheetGetter, Predicate<XSSFRow> filter, int skip, Predicate<XSSFRow> rowDecliner, UncheckedSupplier<T> generator, UncheckedBiConsumer<T, XSSFRow> columnFiller, int cellNum) {
-            super(parser, sheetGetter, filter, skip, rowDecliner, generator, columnFiller);
+        private EntityFillerSequential(ParserChain parser, Function<XLSBook, XLSSheet> sheetGetter, Predicate<XLSRow> filter, int skip, Predicate<XLSRow> rowDecliner, UncheckedSupplier<T> generator, ColumnPlan.Builder<T> columns, int cellNum) {
+            super(parser, sheetGetter, filter, skip, rowDecliner, generator, columns);
             this.cellNum = cellNum;
         }
         /**
@@ -443,14 +993,8 @@ public class XLSTableParser {
          * @return Себя же, для дальнейшего заполнения
          */
         @Contract("_ -> new")
-        public @NotNull EntityFillerSequential<T> thenForNextColumn(@NonNull UncheckedBiConsumer<T, XSSFCell> filler) {
-            UncheckedBiConsumer<T, XSSFRow> newFiller = columnFiller.andThen((dto, row) -> {
-                int cellNum = row.getFirstCellNum() + this.cellNum;
-                XSSFCell cell = row.getCell(cellNum);
-                if (cell == null) log.warn(String.format("Столбец ряда %d не содержит ячейку %d (null)", row.getRowNum(), cellNum));
-                filler.accept(dto, cell);
-            });
-            return new EntityFillerSequential<>(parser, sheetGetter, filter, skip, rowDecliner, generator, newFiller, cellNum + 1);
+        public @NotNull EntityFillerSequential<T> thenForNextColumn(@NonNull UncheckedBiConsumer<T, XLSCell> filler) {
+            return new EntityFillerSequential<>(parser, sheetGetter, filter, skip, rowDecliner, generator, columns.fromFirst(cellNum, ColumnPlan.ofCell(filler)), cellNum + 1);
         }
         /**
          * Метод для внесения способа заполнения DTO из строкового представления ячейки.
@@ -459,7 +1003,7 @@ public class XLSTableParser {
          */
         @Contract("_ -> new")
         public @NotNull EntityFillerSequential<T> thenForNextColumnStringified(@NonNull UncheckedBiConsumer<T, String> filler) {
-            return thenForNextColumn((dto, cell) -> filler.acceptUnchecked(dto, new DataFormatter().formatCellValue(cell)));
+            return new EntityFillerSequential<>(parser, sheetGetter, filter, skip, rowDecliner, generator, columns.fromFirst(cellNum, ColumnPlan.ofString(filler)), cellNum + 1);
         }
     }
 
@@ -471,13 +1015,21 @@ public class XLSTableParser {
      */
     @AllArgsConstructor(access = AccessLevel.PRIVATE)
     private static class EntityFiller<T> {
-        protected final TransitiveBiFunction<XSSFWorkbook, Integer, Integer> parser;
-        protected final Function<XSSFWorkbook, XSSFSheet> sheetGetter;
-        protected final Predicate<XSSFRow> filter;
+        protected final ParserChain parser;
+        protected final Function<XLSBook, XLSSheet> sheetGetter;
+        protected final Predicate<XLSRow> filter;
         protected final int skip;
-        protected final Predicate<XSSFRow> rowDecliner;
+        protected final Predicate<XLSRow> rowDecliner;
         protected final UncheckedSupplier<T> generator;
-        protected final UncheckedBiConsumer<T, XSSFRow> columnFiller;
+        /**
+         * Столбцы DTO в порядке их задания. Собираются в плоский {@link ColumnPlan} при вызове thenPutInto
+         */
+        protected final ColumnPlan.Builder<T> columns;
+        /**
+         * Таблица ленивых {@code stream}, создаётся при первом из них. Все потоки этой инструкции -- одна таблица
+         * для {@link StartRowCache}
+         */
+        private final AtomicReference<TableFiller<T>> streamed = new AtomicReference<>();
         /**
          * Метод завершает набор условий парсинга и возвращает развилку выбора на новый цикл или начала парсинга
          * @param consumer Лямбда-потребитель для DTO созданного из каждого ряда
@@ -485,7 +1037,7 @@ public class XLSTableParser {
          */
         @Contract("_ -> new")
         public @NonNull XLSTableParser thenPutInto(@NonNull UncheckedConsumer<? super T> consumer) {
-            TableFiller<T> filler = new TableFiller<>(sheetGetter, columnFiller, generator, filter, rowDecliner, skip, consumer);
+            TableFiller<T> filler = new TableFiller<>(sheetGetter, columns.compile(), generator, filter, rowDecliner, skip, TableSink.of(consumer));
             return new XLSTableParser(filler, parser, sheetGetter);
         }
         /**
@@ -495,9 +1047,199 @@ public class XLSTableParser {
          */
         @Contract("_ -> new")
         public @NonNull XLSTableParser thenPutInto(@NonNull Collection<? super T> collection) {
-            TableFiller<T> filler = new TableFiller<>(sheetGetter, columnFiller, generator, filter, rowDecliner, skip, collection::add);
+            TableFiller<T> filler = new TableFiller<>(sheetGetter, columns.compile(), generator, filter, rowDecliner, skip, TableSink.of(collection::add));
             return new XLSTableParser(filler, parser, sheetGetter);
         }
+        /**
+         * Метод завершает набор условий парсинга: DTO складываются в порции по {@code size} штук,
+         * и каждая порция передаётся потребителю одним вызовом, например для пакетной вставки в базу.
+         * <p>Последняя, неполная порция передаётся по достижении конца таблицы. Список, переданный потребителю,
+         * переиспользуется для следующих порций: его нельзя сохранять после возврата из потребителя, нужно копировать</p>
+         * @param size Размер порции
+         * @param consumer Потребитель порций DTO
+         * @return Развилка для задания следующей таблицы на парсинг или начала парсинга
+         */
+        @Contract("_, _ -> new")
+        public @NonNull XLSTableParser thenPutIntoBatches(int size, @NonNull UncheckedConsumer<? super List<T>> consumer) {
+            TableFiller<T> filler = new TableFiller<>(sheetGetter, columns.compile(), generator, filter, rowDecliner, skip, BatchingSink.of(size, consumer, null));
+            return new XLSTableParser(filler, parser, sheetGetter);
+        }
+        /**
+         * То же, что и {@link #thenPutIntoBatches(int, UncheckedConsumer)}, но порции передаются потребителю в пуле:
+         * пока одна порция записывается, парсер заполняет следующую.
+         * <p>В каждый момент времени потребитель обрабатывает не больше одной порции таблицы.
+         * Исключение потребителя перебрасывается из метода парсинга</p>
+         * @param size Размер порции
+         * @param consumer Потребитель порций DTO
+         * @param executor Пул, в котором вызывается потребитель. Закрывать его должен вызывающий код
+         * @return Развилка для задания следующей таблицы на парсинг или начала парсинга
+         */
+        @Contract("_, _, _ -> new")
+        public @NonNull XLSTableParser thenPutIntoBatches(int size, @NonNull UncheckedConsumer<? super List<T>> consumer, @NonNull Executor executor) {
+            TableFiller<T> filler = new TableFiller<>(sheetGetter, columns.compile(), generator, filter, rowDecliner, skip, BatchingSink.of(size, consumer, executor));
+            return new XLSTableParser(filler, parser, sheetGetter);
+        }
+        /**
+         * Метод завершает набор условий парсинга: DTO передаются потребителю в отдельном потоке через очередь
+         * вместимостью {@code capacity}, так что медленный потребитель (запись в сеть, в базу) не останавливает разбор рядов.
+         * <p>Если очередь заполнена, парсер ждёт потребителя. DTO приходят потребителю по одному, в порядке рядов листа.
+         * В конце таблицы парсер дожидается, пока потребитель обработает все DTO. Исключение потребителя
+         * перебрасывается из метода парсинга. Поток потребителя создаётся на время парсинга таблицы</p>
+         * @param consumer Лямбда-потребитель для DTO созданного из каждого ряда
+         * @param capacity Вместимость очереди между парсером и потребителем
+         * @return Развилка для задания следующей таблицы на парсинг или начала парсинга
+         */
+        @Contract("_, _ -> new")
+        public @NonNull XLSTableParser thenPutIntoAsync(@NonNull UncheckedConsumer<? super T> consumer, int capacity) {
+            TableFiller<T> filler = new TableFiller<>(sheetGetter, columns.compile(), generator, filter, rowDecliner, skip, AsyncSink.of(capacity, consumer, null));
+            return new XLSTableParser(filler, parser, sheetGetter);
+        }
+        /**
+         * То же, что и {@link #thenPutIntoAsync(UncheckedConsumer, int)}, но потребитель работает во внешнем пуле.
+         * <p>Если пул отклоняет задачу потребителя, парсинг прерывается {@link java.util.concurrent.RejectedExecutionException}.
+         * Если пул не начинает её 30 с, а очередь уже заполнена, задача отменяется и парсинг прерывается
+         * {@link IllegalStateException}</p>
+         * @param consumer Лямбда-потребитель для DTO созданного из каждого ряда
+         * @param capacity Вместимость очереди между парсером и потребителем
+         * @param executor Пул, в котором работает потребитель. Закрывать его должен вызывающий код
+         * @return Развилка для задания следующей таблицы на парсинг или начала парсинга
+         */
+        @Contract("_, _, _ -> new")
+        public @NonNull XLSTableParser thenPutIntoAsync(@NonNull UncheckedConsumer<? super T> consumer, int capacity, @NonNull Executor executor) {
+            TableFiller<T> filler = new TableFiller<>(sheetGetter, columns.compile(), generator, filter, rowDecliner, skip, AsyncSink.of(capacity, consumer, executor));
+            return new XLSTableParser(filler, parser, sheetGetter);
+        }
+        /**
+         * Метод завершает инструкцию и лениво выдаёт DTO этой таблицы по мере их запроса.
+         * <p>Таблицы цепочки, заданные до этой, выполняются сразу. Ряды этой таблицы читаются только тогда,
+         * когда из потока запрашивают следующий DTO, поэтому {@code limit}, {@code findFirst} и {@code anyMatch}
+         * прекращают чтение листа. Поток последовательный. Начало таблицы ищется так же, как для {@code thenPutInto},
+         * в том числе по {@link TitleIndex} и {@link StartRowCache}. Первая ошибка ряда прерывает поток</p>
+         * @param book Книга, которая подвергнется парсингу по заданной инструкции
+         * @return Поток DTO
+         */
+        public @NonNull Stream<T> stream(@NonNull XSSFWorkbook book) {
+            return stream(book, RowErrorPolicy.failFast());
+        }
+        /**
+         * То же, что и {@link #stream(XSSFWorkbook)}, но с заданной политикой ошибок рядов, см. {@link XLSTableParser#onRowError}
+         * @param book Книга, которая подвергнется парсингу по заданной инструкции
+         * @param errors Политика ошибок рядов этой таблицы
+         * @return Поток DTO без рядов, пропущенных по политике ошибок
+         */
+        public @NonNull Stream<T> stream(@NonNull XSSFWorkbook book, @NonNull RowErrorPolicy errors) {
+            return stream(new XSSFWorkbookAdapter(book), errors);
+        }
+        /**
+         * То же, что и {@link #stream(XSSFWorkbook)}, но лист читается потоково.
+         * <p>Поток нужно закрыть (например, через try-with-resources), чтобы освободить XML листа</p>
+         * @param pkg Открытый пакет XLSX. Закрывать его должен вызывающий код, после закрытия потока
+         * @return Поток DTO
+         * @throws IOException Если пакет не является книгой XLSX или не читается
+         */
+        public @NonNull Stream<T> stream(@NonNull OPCPackage pkg) throws IOException {
+            return stream(pkg, RowErrorPolicy.failFast());
+        }
+        /**
+         * То же, что и {@link #stream(OPCPackage)}, но с заданной политикой ошибок рядов
+         * @param pkg Открытый пакет XLSX. Закрывать его должен вызывающий код, после закрытия потока
+         * @param errors Политика ошибок рядов этой таблицы
+         * @return Поток DTO без рядов, пропущенных по политике ошибок
+         * @throws IOException Если пакет не является книгой XLSX или не читается
+         */
+        public @NonNull Stream<T> stream(@NonNull OPCPackage pkg, @NonNull RowErrorPolicy errors) throws IOException {
+            return stream(new XSSFStreamingBook(pkg), errors);
+        }
+        /**
+         * То же, что и {@link #stream(XSSFWorkbook)}, но книга XLS (BIFF8) читается потоково.
+         * <p>Поток нужно закрыть (например, через try-with-resources), чтобы освободить записи листа</p>
+         * @param fs Открытая файловая система OLE2 с книгой XLS. Закрывать её должен вызывающий код, после закрытия потока
+         * @return Поток DTO
+         * @throws IOException Если книга не читается, зашифрована или файл не является книгой XLS
+         */
+        public @NonNull Stream<T> stream(@NonNull POIFSFileSystem fs) throws IOException {
+            return stream(fs, RowErrorPolicy.failFast());
+        }
+        /**
+         * То же, что и {@link #stream(POIFSFileSystem)}, но с заданной политикой ошибок рядов
+         * @param fs Открытая файловая система OLE2 с книгой XLS. Закрывать её должен вызывающий код, после закрытия потока
+         * @param errors Политика ошибок рядов этой таблицы
+         * @return Поток DTO без рядов, пропущенных по политике ошибок
+         * @throws IOException Если книга не читается, зашифрована или файл не является книгой XLS
+         */
+        public @NonNull Stream<T> stream(@NonNull POIFSFileSystem fs, @NonNull RowErrorPolicy errors) throws IOException {
+            return stream(new HSSFStreamingBook(fs), errors);
+        }
+        /**
+         * Итератор по DTO этой таблицы, см. {@link #stream(XSSFWorkbook)}
+         * @param book Книга, которая подвергнется парсингу по заданной инструкции
+         * @return Итератор DTO
+         */
+        public @NonNull Iterator<T> iterator(@NonNull XSSFWorkbook book) {
+            return stream(book).iterator();
+        }
+        /**
+         * Итератор по DTO этой таблицы, см. {@link #stream(OPCPackage)}. XML листа освобождается,
+         * когда итератор дойдёт до конца таблицы; чтобы прервать чтение раньше, используйте {@link #stream(OPCPackage)}
+         * @param pkg Открытый пакет XLSX. Закрывать его должен вызывающий код
+         * @return Итератор DTO
+         * @throws IOException Если пакет не является книгой XLSX или не читается
+         */
+        public @NonNull Iterator<T> iterator(@NonNull OPCPackage pkg) throws IOException {
+            return closingIterator(stream(pkg));
+        }
+        /**
+         * Итератор по DTO этой таблицы, см. {@link #stream(POIFSFileSystem)}. Записи листа освобождаются,
+         * когда итератор дойдёт до конца таблицы; чтобы прервать чтение раньше, используйте {@link #stream(POIFSFileSystem)}
+         * @param fs Открытая файловая система OLE2 с книгой XLS. Закрывать её должен вызывающий код
+         * @return Итератор DTO
+         * @throws IOException Если книга не читается, зашифрована или файл не является книгой XLS
+         */
+        public @NonNull Iterator<T> iterator(@NonNull POIFSFileSystem fs) throws IOException {
+            return closingIterator(stream(fs));
+        }
+
+        private Stream<T> stream(XLSBook book, RowErrorPolicy errors) {
+            ParseRun run = parser.newRun(book);
+            int start = parser.runBeforeOpenEnd(run);
+            TableFiller<T> filler = streamed.updateAndGet(table -> table != null ? table
+                    : new TableFiller<>(sheetGetter, columns.compile(), generator, filter, rowDecliner, skip, TableSink.of(dto -> {})));
+            return filler.withErrorPolicy(errors).stream(run, parser.nextIndex(), start);
+        }
+
+        /**
+         * @return Итератор, закрывающий поток, когда DTO закончились или чтение прервалось ошибкой
+         */
+        private static <T> Iterator<T> closingIterator(Stream<T> stream) {
+            Iterator<T> iterator = stream.iterator();
+            return new Iterator<>() {
+                private boolean closed;
+
+                @Override
+                public boolean hasNext() {
+                    if (closed) return false;
+                    try {
+                        if (iterator.hasNext()) return true;
+                    } catch (RuntimeException | Error e) {
+                        close();
+                        throw e;
+                    }
+                    close();
+                    return false;
+                }
+
+                @Override
+                public T next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return iterator.next();
+                }
+
+                private void close() {
+                    closed = true;
+                    stream.close();
+                }
+            };
+        }
     }
 
     /**
@@ -514,20 +1256,29 @@ public class XLSTableParser {
     private static abstract class Condition<
             LINKER extends ConditionLinker<CONDITION, LINKER>,
             CONDITION extends Condition<LINKER, CONDITION>> {
-        private static final Predicate<XSSFCell> IS_NUMERIC = cell -> cell != null && cell.getCellType().equals(CellType.NUMERIC);
-        private static final Predicate<XSSFCell> IS_STRING = cell -> cell != null && cell.getCellType().equals(CellType.STRING);
-        private static final Predicate<XSSFCell> IS_BLANK = cell -> cell != null && cell.getCellType().equals(CellType.BLANK);
-        private static final Predicate<XSSFCell> IS_BOOLEAN = cell -> cell != null && cell.getCellType().equals(CellType.BOOLEAN);
-        private static final Predicate<XSSFCell> IS_ERROR = cell -> cell != null && cell.getCellType().equals(CellType.ERROR);
-        private static final Predicate<XSSFCell> IS_FORMULA = cell -> cell != null && cell.getCellType().equals(CellType.FORMULA);
-        private static final Predicate<XSSFCell> IS_NULL = Objects::isNull;
+        private static final RowCondition.CellTest IS_NUMERIC = (cell, type) -> type == CellType.NUMERIC;
+        private static final RowCondition.CellTest IS_STRING = (cell, type) -> type == CellType.STRING;
+        private static final RowCondition.CellTest IS_BLANK = (cell, type) -> type == CellType.BLANK;
+        private static final RowCondition.CellTest IS_BOOLEAN = (cell, type) -> type == CellType.BOOLEAN;
+        private static final RowCondition.CellTest IS_ERROR = (cell, type) -> type == CellType.ERROR;
+        private static final RowCondition.CellTest IS_FORMULA = (cell, type) -> type == CellType.FORMULA;
+        private static final RowCondition.CellTest IS_NULL = (cell, type) -> cell == null;
 
         /**
          * Добавляет в инструкцию для парсера проверку условия. Само условие предоставляется аргументом.
          * @param condition Условие для проверки
          * @return Класс-линкер для указания связи со следующим условием или перехода далее по алгоритму
          */
-        protected abstract LINKER test(@NonNull Predicate<XSSFCell> condition);
+        protected abstract LINKER test(@NonNull RowCondition.CellTest condition);
+
+        /**
+         * @param previous Уже заданная часть цепочки или {@code null}, если условие первое
+         * @param or Союз с предыдущей частью: {@code true} -- "или", {@code false} -- "и"
+         * @return Цепочка с добавленным условием
+         */
+        static RowCondition link(@Nullable RowCondition previous, boolean or, int cellNum, RowCondition.CellTest condition) {
+            return previous == null ? RowCondition.of(cellNum, condition) : previous.then(or, cellNum, condition);
+        }
 
         /**
          * Добавляет в инструкцию для парсера проверку ранее указанного столбца на тип {@link CellType#NUMERIC}
@@ -664,7 +1415,7 @@ public class XLSTableParser {
          */
         @Contract("_ -> new")
         public @NonNull LINKER stringValueEquals(@NonNull String other) {
-            return test(IS_STRING.and(cell -> cell.getStringCellValue().equals(other)));
+            return test((cell, type) -> type == CellType.STRING && cell.getStringCellValue().equals(other));
         }
         /**
          * Добавляет в инструкцию для парсера проверку содержимого ячейки на соответствие указанному значению без учета регистра
@@ -674,7 +1425,7 @@ public class XLSTableParser {
          */
         @Contract("_ -> new")
         public @NonNull LINKER stringValueEqualsIgnoreCase(@NonNull String other) {
-            return test(IS_STRING.and(cell -> cell.getStringCellValue().equalsIgnoreCase(other)));
+            return test((cell, type) -> type == CellType.STRING && cell.getStringCellValue().equalsIgnoreCase(other));
         }
         /**
          * Добавляет в инструкцию для парсера проверку содержимого ячейки на содержание указанного значения
@@ -684,7 +1435,7 @@ public class XLSTableParser {
          */
         @Contract("_ -> new")
         public @NonNull LINKER stringValueContains(@NonNull String other) {
-            return test(IS_STRING.and(cell -> cell.getStringCellValue().contains(other)));
+            return test((cell, type) -> type == CellType.STRING && cell.getStringCellValue().contains(other));
         }
         /**
          * Добавляет в инструкцию для парсера проверку содержимого ячейки на содержание указанного значения без учета регистра
@@ -694,7 +1445,8 @@ public class XLSTableParser {
          */
         @Contract("_ -> new")
         public @NonNull LINKER stringValueContainsIgnoreCase(@NonNull String other) {
-            return test(IS_STRING.and(cell -> cell.getStringCellValue().toLowerCase().contains(other.toLowerCase())));
+            String needle = other.toLowerCase();
+            return test((cell, type) -> type == CellType.STRING && cell.getStringCellValue().toLowerCase().contains(needle));
         }
     }
 
@@ -707,9 +1459,9 @@ public class XLSTableParser {
             CONDITION extends Condition<LINKER, CONDITION>,
             LINKER extends ConditionLinker<CONDITION, LINKER>> {
         private final int cellNum;
-        protected final Predicate<XSSFRow> initial;
+        protected final RowCondition initial;
 
-        private ConditionLinker(int cellNum, @NonNull Predicate<XSSFRow> initial) {
+        private ConditionLinker(int cellNum, @NonNull RowCondition initial) {
             this.cellNum = cellNum;
             this.initial = initial;
         }
@@ -717,10 +1469,10 @@ public class XLSTableParser {
         /**
          * Возвращается к связанному классу {@link Condition}, связывая его переданным способом
          * @param cellNum Номер столбца, с которым производят работу
-         * @param transformer Функция, применяемая к предыдущему условию, сочетающая его и условие, которое будет задано следующим вызовом
+         * @param or Союз предыдущего условия и условия, которое будет задано следующим вызовом: {@code true} -- "или", {@code false} -- "и"
          * @return {@link Condition}, для дальнейшего набора условия
          */
-        protected abstract CONDITION goBack(int cellNum, @NonNull Function<Predicate<XSSFRow>, @NonNull Predicate<XSSFRow>> transformer);
+        protected abstract CONDITION goBack(int cellNum, boolean or);
 
         /**
          * Аналог оператора {@code &&} для предыдущего и следующего условия.
@@ -729,7 +1481,7 @@ public class XLSTableParser {
          * @return Объект для задания следующего условия
          */
         public @NonNull CONDITION and() {
-            return goBack(cellNum, initial::and);
+            return goBack(cellNum, false);
         }
         /**
          * Аналог оператора {@code &&} для предыдущего и следующего условия. Следующее условие применяется к столбцу, на который указывает номер из аргумента
@@ -739,7 +1491,7 @@ public class XLSTableParser {
          * @return Объект для задания следующего условия
          */
         public @NonNull CONDITION andOtherCell(int otherCellNum) {
-            return goBack(otherCellNum, initial::and);
+            return goBack(otherCellNum, false);
         }
         /**
          * Аналог оператора {@code ||} для предыдущего и следующего условия.
@@ -748,7 +1500,7 @@ public class XLSTableParser {
          * @return Объект для задания следующего условия
          */
         public @NonNull CONDITION or() {
-            return goBack(cellNum, initial::or);
+            return goBack(cellNum, true);
         }
         /**
          * Аналог оператора {@code ||} для предыдущего и следующего условия. Следующее условие применяется к столбцу, на который указывает номер из аргумента
@@ -758,7 +1510,7 @@ public class XLSTableParser {
          * @return Объект для задания следующего условия
          */
         public @NonNull CONDITION orOtherCell(int otherCellNum) {
-            return goBack(otherCellNum, initial::or);
+            return goBack(otherCellNum, true);
         }
     }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.CellValue;
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Map;
 import java.util.function.Function;
@@ -17,9 +18,20 @@ public class XLSXCellConditions {
             CellType.ERROR, CellValue::formatAsString
     );
     private final XSSFCell cell;
-    private final FormulaEvaluator evaluator;
+    private final @Nullable FormulaEvaluator evaluator;
 
-    public XLSXCellConditions(XSSFCell cell, FormulaEvaluator evaluator) {
+    /**
+     * Условия по сохранённым в файле значениям формул, без вычисления
+     */
+    public XLSXCellConditions(XSSFCell cell) {
+        this(cell, null);
+    }
+
+    /**
+     * @param evaluator Вычислитель формул. Лучше один на книгу: он запоминает результаты между ячейками.
+     *                  {@code null} -- использовать сохранённые в файле значения
+     */
+    public XLSXCellConditions(XSSFCell cell, @Nullable FormulaEvaluator evaluator) {
         this.cell = cell;
         this.evaluator = evaluator;
     }
@@ -48,7 +60,23 @@ public class XLSXCellConditions {
         return cell.getStringCellValue();
     }
     public String stringEvaluatedValue() {
-        CellValue evaluate = evaluator.evaluate(cell);
+        CellValue evaluate = evaluator == null || !isFormula() ? storedValue() : evaluator.evaluate(cell);
+        if (evaluate == null) return "";
         return stringConverters.getOrDefault(evaluate.getCellType(), CellValue::formatAsString).apply(evaluate);
     }
+
+    private @Nullable CellValue storedValue() {
+        switch (isFormula() ? cell.getCachedFormulaResultType() : cell.getCellType()) {
+            case NUMERIC:
+                return new CellValue(cell.getNumericCellValue());
+            case STRING:
+                return new CellValue(cell.getStringCellValue());
+            case BOOLEAN:
+                return CellValue.valueOf(cell.getBooleanCellValue());
+            case ERROR:
+                return CellValue.getError(cell.getErrorCellValue());
+            default:
+                return null;
+        }
+    }
 }
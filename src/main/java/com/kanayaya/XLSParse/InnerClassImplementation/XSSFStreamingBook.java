@@ -0,0 +1,365 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.jetbrains.annotations.Nullable;
+import org.xml.sax.SAXException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Потоковое представление книги XLSX, читающее XML листов через StAX без построения {@link org.apache.poi.xssf.usermodel.XSSFWorkbook}.
+ * <p>В памяти держатся только таблица общих строк, форматы стилей и текущий ряд.
+ * Каждый вызов {@link XLSSheet#rows(int)} заново открывает XML листа.</p>
+ * <p>Текст общих (shared) формул доступен только в первой ячейке диапазона, в остальных ячейках он пуст</p>
+ */
+class XSSFStreamingBook implements XLSBook {
+    private static final XMLInputFactory XML_FACTORY = XMLHelper.newXMLInputFactory();
+    private static final String RELATIONSHIPS_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String GENERAL_FORMAT = "General";
+    private static final long NANOS_PER_DAY = 86_400_000_000_000L;
+
+    private final XSSFReader reader;
+    private final SharedStrings sharedStrings;
+    /**
+     * Строки общей таблицы по номерам, уже запрошенные ячейками. Все ячейки с одной общей строкой получают
+     * один экземпляр {@link String}, а {@link org.apache.poi.xssf.usermodel.XSSFRichTextString} создаётся один раз на строку
+     */
+    private final String[] sharedCache;
+    private final short[] dataFormats;
+    private final String[] dataFormatStrings;
+    private final List<String> sheetNames = new ArrayList<>();
+    /**
+     * Номера листов по именам. Имена сравниваются без учёта регистра, как в Excel и {@link XSSFWorkbookAdapter}
+     */
+    private final Map<String, Integer> sheetIndexes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final List<String> sheetIds = new ArrayList<>();
+    private boolean date1904;
+
+    /**
+     * @param pkg Открытый пакет XLSX. Закрывать его должен вызывающий код
+     * @throws IOException Если пакет не является книгой XLSX или не читается
+     */
+    XSSFStreamingBook(@NonNull OPCPackage pkg) throws IOException {
+        try {
+            reader = new XSSFReader(pkg);
+            sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            sharedCache = new String[Math.max(sharedStrings.getUniqueCount(), 0)];
+            StylesTable styles = reader.getStylesTable();
+            int styleCount = styles == null ? 0 : styles.getNumCellStyles();
+            dataFormats = new short[styleCount];
+            dataFormatStrings = new String[styleCount];
+            for (int i = 0; i < styleCount; i++) {
+                XSSFCellStyle style = styles.getStyleAt(i);
+                dataFormats[i] = style.getDataFormat();
+                dataFormatStrings[i] = style.getDataFormatString();
+            }
+            readWorkbook();
+        } catch (OpenXML4JException | SAXException | XMLStreamException e) {
+            throw new IOException("Не удалось открыть книгу XLSX", e);
+        }
+    }
+
+    @Override
+    public @Nullable XLSSheet getSheet(String name) {
+        Integer index = sheetIndexes.get(name);
+        return index == null ? null : new StreamingSheet(sheetNames.get(index), sheetIds.get(index));
+    }
+
+    @Override
+    public String getSheetName(int index) {
+        if (index < 0 || index >= sheetNames.size())
+            throw new IllegalArgumentException("Sheet index (" + index + ") is out of range (0.." + (sheetNames.size() - 1) + ")");
+        return sheetNames.get(index);
+    }
+
+    /**
+     * Читает из workbook.xml порядок листов, их идентификаторы и систему дат
+     */
+    private void readWorkbook() throws IOException, OpenXML4JException, XMLStreamException {
+        try (InputStream in = reader.getWorkbookData()) {
+            XMLStreamReader xml = XML_FACTORY.createXMLStreamReader(in);
+            try {
+                while (xml.hasNext()) {
+                    if (xml.next() != XMLStreamConstants.START_ELEMENT) continue;
+                    if (xml.getLocalName().equals("workbookPr")) {
+                        String value = xml.getAttributeValue(null, "date1904");
+                        date1904 = "1".equals(value) || "true".equals(value);
+                    } else if (xml.getLocalName().equals("sheet")) {
+                        String name = xml.getAttributeValue(null, "name");
+                        sheetIndexes.putIfAbsent(name, sheetNames.size());
+                        sheetNames.add(name);
+                        sheetIds.add(xml.getAttributeValue(RELATIONSHIPS_NS, "id"));
+                    }
+                }
+            } finally {
+                xml.close();
+            }
+        }
+    }
+
+    /**
+     * @param index Номер строки в общей таблице
+     * @return Строка общей таблицы. Гонка между потоками безопасна: они запишут равные строки
+     */
+    private String sharedString(int index) {
+        if (index >= sharedCache.length) return sharedStrings.getItemAt(index).getString();
+        String string = sharedCache[index];
+        if (string == null) {
+            string = sharedStrings.getItemAt(index).getString();
+            sharedCache[index] = string;
+        }
+        return string;
+    }
+
+    @AllArgsConstructor
+    private final class StreamingSheet implements XLSSheet {
+        private final String name;
+        private final String id;
+
+        @Override
+        public String getSheetName() {
+            return name;
+        }
+
+        @Override
+        public Stream<XLSRow> rows(int start) {
+            InputStream in = null;
+            try {
+                in = reader.getSheet(id);
+                XMLStreamReader xml = XML_FACTORY.createXMLStreamReader(in);
+                InputStream source = in;
+                return StreamSupport.stream(new RowSpliterator(xml, start), false)
+                        .onClose(() -> close(xml, source));
+            } catch (IOException | OpenXML4JException | XMLStreamException e) {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                }
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void close(XMLStreamReader xml, InputStream in) {
+            try (in) {
+                xml.close();
+            } catch (XMLStreamException e) {
+                throw new RuntimeException(e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Вытягивает ряды из XML листа по одному на каждый запрос потока
+     */
+    private final class RowSpliterator extends Spliterators.AbstractSpliterator<XLSRow> {
+        private final XMLStreamReader xml;
+        private final int start;
+        private int lastRowNum = -1;
+        private boolean finished;
+
+        private RowSpliterator(XMLStreamReader xml, int start) {
+            super(Long.MAX_VALUE, ORDERED | NONNULL);
+            this.xml = xml;
+            this.start = start;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super XLSRow> action) {
+            try {
+                while (!finished && xml.hasNext()) {
+                    int event = xml.next();
+                    if (event == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("row")) {
+                        String r = xml.getAttributeValue(null, "r");
+                        lastRowNum = r == null ? lastRowNum + 1 : Integer.parseInt(r) - 1;
+                        if (lastRowNum < start) {
+                            skipElement();
+                            continue;
+                        }
+                        action.accept(readRow(lastRowNum));
+                        return true;
+                    }
+                    if (event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("sheetData")) finished = true;
+                }
+                finished = true;
+                return false;
+            } catch (XMLStreamException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private XLSRow readRow(int rowNum) throws XMLStreamException {
+            List<ValueCell> cells = new ArrayList<>();
+            int column = -1;
+            while (true) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.END_ELEMENT) break;
+                if (event != XMLStreamConstants.START_ELEMENT) continue;
+                if (!xml.getLocalName().equals("c")) {
+                    skipElement();
+                    continue;
+                }
+                String r = xml.getAttributeValue(null, "r");
+                column = r == null ? column + 1 : columnIndex(r);
+                cells.add(readCell(rowNum, column));
+            }
+            return new ValueRow(rowNum, cells);
+        }
+
+        private ValueCell readCell(int rowNum, int column) throws XMLStreamException {
+            String style = xml.getAttributeValue(null, "s");
+            String type = xml.getAttributeValue(null, "t");
+            String value = null;
+            String formula = null;
+            String inline = null;
+            while (true) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.END_ELEMENT) break;
+                if (event != XMLStreamConstants.START_ELEMENT) continue;
+                switch (xml.getLocalName()) {
+                    case "v":
+                        value = xml.getElementText();
+                        break;
+                    case "f":
+                        formula = xml.getElementText();
+                        break;
+                    case "is":
+                        inline = readInlineString();
+                        break;
+                    default:
+                        skipElement();
+                }
+            }
+
+            int styleIndex = style == null ? 0 : Integer.parseInt(style);
+            short dataFormat = styleIndex < dataFormats.length ? dataFormats[styleIndex] : 0;
+            String dataFormatString = styleIndex < dataFormatStrings.length ? dataFormatStrings[styleIndex] : GENERAL_FORMAT;
+
+            CellType valueType;
+            String string = null;
+            double number = 0;
+            switch (type == null ? "n" : type) {
+                case "s":
+                    valueType = CellType.STRING;
+                    string = value == null ? "" : sharedString(Integer.parseInt(value));
+                    break;
+                case "inlineStr":
+                    valueType = CellType.STRING;
+                    string = inline == null ? "" : inline;
+                    break;
+                case "str":
+                    valueType = CellType.STRING;
+                    string = value == null ? "" : value;
+                    break;
+                case "b":
+                    valueType = CellType.BOOLEAN;
+                    number = "1".equals(value) || "true".equals(value) ? 1 : 0;
+                    break;
+                case "e":
+                    valueType = CellType.ERROR;
+                    string = value;
+                    break;
+                case "d":
+                    if (value == null || value.isEmpty()) {
+                        valueType = formula == null ? CellType.BLANK : CellType.NUMERIC;
+                    } else {
+                        valueType = CellType.NUMERIC;
+                        number = isoDateSerial(value, date1904);
+                    }
+                    break;
+                default:
+                    if (value == null && formula == null) {
+                        valueType = CellType.BLANK;
+                    } else {
+                        valueType = CellType.NUMERIC;
+                        number = value == null ? 0 : Double.parseDouble(value);
+                    }
+            }
+            return new ValueCell(rowNum, column, valueType, formula, string, number, value, dataFormat, dataFormatString, date1904);
+        }
+
+        private String readInlineString() throws XMLStreamException {
+            StringBuilder text = new StringBuilder();
+            while (true) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (xml.getLocalName().equals("is")) return text.toString();
+                    continue;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) continue;
+                if (xml.getLocalName().equals("t")) text.append(xml.getElementText());
+                else if (!xml.getLocalName().equals("r")) skipElement();
+            }
+        }
+
+        private void skipElement() throws XMLStreamException {
+            int depth = 1;
+            while (depth > 0) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) depth++;
+                else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+            }
+        }
+    }
+
+    /**
+     * @param value Дата ячейки с типом {@code d} в формате ISO 8601: дата, дата со временем или только время
+     * @param date1904 Используется ли в книге система дат 1904
+     * @return Номер даты Excel, как у числовой ячейки с форматом даты
+     */
+    private static double isoDateSerial(String value, boolean date1904) {
+        try {
+            if (value.startsWith("T")) return LocalTime.parse(value.substring(1)).toNanoOfDay() / (double) NANOS_PER_DAY;
+            LocalDateTime dateTime = value.indexOf('T') < 0
+                    ? LocalDate.parse(value).atStartOfDay()
+                    : LocalDateTime.parse(value, DateTimeFormatter.ISO_DATE_TIME);
+            return DateUtil.getExcelDate(dateTime, date1904);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Cannot parse ISO 8601 date cell value '" + value + "'", e);
+        }
+    }
+
+    /**
+     * @param reference Адрес ячейки вида {@code AB12}
+     * @return Номер столбца начиная с 0
+     */
+    private static int columnIndex(String reference) {
+        int column = 0;
+        for (int i = 0; i < reference.length(); i++) {
+            char c = reference.charAt(i);
+            if (c < 'A' || c > 'Z') break;
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+}
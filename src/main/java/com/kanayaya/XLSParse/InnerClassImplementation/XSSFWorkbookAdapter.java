@@ -0,0 +1,310 @@
+package com.kanayaya.XLSParse.InnerClassImplementation;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.Objects;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Представление книги {@link XSSFWorkbook}, целиком прочитанной в память.
+ * <p>Ряды и ячейки лишь оборачивают объекты Apache POI, доступные через {@link XLSRow#getPoiRow()} и {@link XLSCell#getPoiCell()}.
+ * Вычисленные значения формул хранятся в обёртках ячеек и не записываются в книгу</p>
+ */
+class XSSFWorkbookAdapter implements XLSBook {
+    private final @NonNull XSSFWorkbook book;
+    /**
+     * Вычислитель формул книги или {@code null}, если используются сохранённые в файле значения
+     */
+    private final @Nullable FormulaEvaluator evaluator;
+    /**
+     * Эта же книга со всеми вычисленными формулами, см. {@link FormulaEvaluation#ALL}, или {@code null}, если её ещё не просили
+     */
+    private @Nullable XSSFWorkbookAdapter evaluatedAll;
+
+    XSSFWorkbookAdapter(@NonNull XSSFWorkbook book) {
+        this(book, null);
+    }
+
+    private XSSFWorkbookAdapter(@NonNull XSSFWorkbook book, @Nullable FormulaEvaluator evaluator) {
+        this.book = book;
+        this.evaluator = evaluator;
+    }
+
+    @Override
+    public @Nullable XLSSheet getSheet(String name) {
+        XSSFSheet sheet = book.getSheet(name);
+        return sheet == null ? null : new SheetAdapter(sheet, evaluator);
+    }
+
+    @Override
+    public String getSheetName(int index) {
+        return book.getSheetName(index);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>Книга не меняется: сохранённые в ячейках значения формул остаются прежними. Для {@link FormulaEvaluation#ALL}
+     * формулы вычисляются один раз, при первом запросе, и их значения запоминаются вычислителем</p>
+     */
+    @Override
+    public XLSBook withFormulaEvaluation(@NonNull FormulaEvaluation evaluation) {
+        switch (evaluation) {
+            case ON_DEMAND:
+                return new XSSFWorkbookAdapter(book, book.getCreationHelper().createFormulaEvaluator());
+            case ALL:
+                return evaluatedAll();
+            default:
+                return this;
+        }
+    }
+
+    /**
+     * Вычисляет все формулы книги без записи результатов в ячейки
+     * @return Книга с вычислителем, который уже знает значения всех формул
+     */
+    private synchronized XSSFWorkbookAdapter evaluatedAll() {
+        if (evaluatedAll != null) return evaluatedAll;
+        FormulaEvaluator evaluator = book.getCreationHelper().createFormulaEvaluator();
+        synchronized (book) {
+            for (Sheet sheet : book) {
+                for (Row row : sheet) {
+                    for (Cell cell : row) {
+                        if (cell.getCellType() == CellType.FORMULA) evaluator.evaluate(cell);
+                    }
+                }
+            }
+        }
+        evaluatedAll = new XSSFWorkbookAdapter(book, evaluator);
+        return evaluatedAll;
+    }
+
+    @AllArgsConstructor
+    private static final class SheetAdapter implements XLSSheet {
+        private final XSSFSheet sheet;
+        private final @Nullable FormulaEvaluator evaluator;
+
+        @Override
+        public String getSheetName() {
+            return sheet.getSheetName();
+        }
+
+        @Override
+        public Stream<XLSRow> rows(int start) {
+            return IntStream.range(start, sheet.getLastRowNum() + 1)
+                    .mapToObj(sheet::getRow)
+                    .filter(Objects::nonNull)
+                    .map(row -> new RowAdapter(row, evaluator));
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class RowAdapter implements XLSRow {
+        private final XSSFRow row;
+        private final @Nullable FormulaEvaluator evaluator;
+
+        @Override
+        public int getRowNum() {
+            return row.getRowNum();
+        }
+
+        @Override
+        public short getFirstCellNum() {
+            return row.getFirstCellNum();
+        }
+
+        @Override
+        public short getLastCellNum() {
+            return row.getLastCellNum();
+        }
+
+        @Override
+        public int getPhysicalNumberOfCells() {
+            return row.getPhysicalNumberOfCells();
+        }
+
+        @Override
+        public @Nullable XLSCell getCell(int cellNum) {
+            XSSFCell cell = row.getCell(cellNum);
+            return cell == null ? null : new CellAdapter(cell, evaluator);
+        }
+
+        @Override
+        public XSSFRow getPoiRow() {
+            return row;
+        }
+    }
+
+    private static final class CellAdapter implements XLSCell {
+        private final XSSFCell cell;
+        /**
+         * Вычислитель, который ещё предстоит применить к формуле ячейки, или {@code null}, если значение готово
+         */
+        private @Nullable FormulaEvaluator evaluator;
+        /**
+         * Вычисленное значение формулы или {@code null}, если используется сохранённое в ячейке
+         */
+        private @Nullable ValueCell value;
+
+        private CellAdapter(XSSFCell cell, @Nullable FormulaEvaluator evaluator) {
+            this.cell = cell;
+            this.evaluator = cell.getCellType() == CellType.FORMULA ? evaluator : null;
+        }
+
+        /**
+         * Вычисляет формулу при первом обращении к значению. Вычислитель общий для прохода и запоминает результаты,
+         * но не потокобезопасен. Вычисления блокируют книгу: одну книгу из {@link WorkbookCache} могут одновременно
+         * читать несколько проходов, каждый со своим вычислителем
+         * @return Вычисленное значение формулы или {@code null}, если значения берутся из самой ячейки
+         */
+        private @Nullable ValueCell evaluated() {
+            FormulaEvaluator pending = evaluator;
+            if (pending != null) {
+                CellValue result;
+                synchronized (cell.getSheet().getWorkbook()) {
+                    result = pending.evaluate(cell);
+                }
+                value = result == null ? null : valueOf(result);
+                evaluator = null;
+            }
+            return value;
+        }
+
+        /**
+         * Повторяет то, что записал бы в ячейку {@link FormulaEvaluator#evaluateFormulaCell}
+         */
+        private ValueCell valueOf(CellValue result) {
+            CellType type = result.getCellType();
+            String string = null;
+            double number = 0;
+            String raw;
+            switch (type) {
+                case NUMERIC:
+                    number = result.getNumberValue();
+                    raw = String.valueOf(number);
+                    break;
+                case BOOLEAN:
+                    number = result.getBooleanValue() ? 1 : 0;
+                    raw = result.getBooleanValue() ? "1" : "0";
+                    break;
+                case ERROR:
+                    string = FormulaError.forInt(result.getErrorValue()).getString();
+                    raw = string;
+                    break;
+                default:
+                    string = result.getStringValue();
+                    raw = string;
+            }
+            return new ValueCell(cell.getRowIndex(), cell.getColumnIndex(), type, cell.getCellFormula(), string, number, raw,
+                    getDataFormat(), getDataFormatString(), cell.getSheet().getWorkbook().isDate1904());
+        }
+
+        @Override
+        public int getRowIndex() {
+            return cell.getRowIndex();
+        }
+
+        @Override
+        public int getColumnIndex() {
+            return cell.getColumnIndex();
+        }
+
+        @Override
+        public CellType getCellType() {
+            return cell.getCellType();
+        }
+
+        @Override
+        public CellType getCachedFormulaResultType() {
+            ValueCell value = evaluated();
+            return value == null ? cell.getCachedFormulaResultType() : value.getCachedFormulaResultType();
+        }
+
+        @Override
+        public String getStringCellValue() {
+            ValueCell value = evaluated();
+            return value == null ? cell.getStringCellValue() : value.getStringCellValue();
+        }
+
+        @Override
+        public double getNumericCellValue() {
+            ValueCell value = evaluated();
+            return value == null ? cell.getNumericCellValue() : value.getNumericCellValue();
+        }
+
+        @Override
+        public boolean getBooleanCellValue() {
+            ValueCell value = evaluated();
+            return value == null ? cell.getBooleanCellValue() : value.getBooleanCellValue();
+        }
+
+        @Override
+        public String getErrorCellString() {
+            ValueCell value = evaluated();
+            return value == null ? cell.getErrorCellString() : value.getErrorCellString();
+        }
+
+        @Override
+        public String getCellFormula() {
+            return cell.getCellFormula();
+        }
+
+        @Override
+        public @Nullable String getRawValue() {
+            ValueCell value = evaluated();
+            return value == null ? cell.getRawValue() : value.getRawValue();
+        }
+
+        @Override
+        public @Nullable LocalDateTime getLocalDateTimeCellValue() {
+            ValueCell value = evaluated();
+            return value == null ? cell.getLocalDateTimeCellValue() : value.getLocalDateTimeCellValue();
+        }
+
+        @Override
+        public @Nullable Date getDateCellValue() {
+            ValueCell value = evaluated();
+            return value == null ? cell.getDateCellValue() : value.getDateCellValue();
+        }
+
+        @Override
+        public short getDataFormat() {
+            return cell.getCellStyle().getDataFormat();
+        }
+
+        @Override
+        public String getDataFormatString() {
+            return cell.getCellStyle().getDataFormatString();
+        }
+
+        @Override
+        public String getFormattedValue(DataFormatter formatter) {
+            ValueCell value = evaluated();
+            return value == null ? formatter.formatCellValue(cell) : value.getFormattedValue(formatter);
+        }
+
+        /**
+         * @return Ячейка Apache POI. Для формулы в ней остаётся сохранённое в файле значение, а не вычисленное
+         */
+        @Override
+        public XSSFCell getPoiCell() {
+            return cell;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+import com.kanayaya.XLSParse.InnerClassImplementation.Column;
+
+/**
+ * Базовый DTO с приватными полями и сеттером. Отдельный класс верхнего уровня, чтобы привязка
+ * не получала доступ к нему как к вложенному классу теста
+ */
+class BaseItem {
+    @Column(header = "Name")
+    private String name;
+    @Column(index = 2)
+    private int quantity;
+    @Column(header = "Note")
+    private String note = "none";
+
+    private void setName(String name) {
+        this.name = name;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getQuantity() {
+        return quantity;
+    }
+
+    String getNote() {
+        return note;
+    }
+}
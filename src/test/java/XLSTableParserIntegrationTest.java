@@ -1,11 +1,83 @@
+import com.kanayaya.XLSParse.InnerClassImplementation.CellCodes;
+import com.kanayaya.XLSParse.InnerClassImplementation.Column;
+import com.kanayaya.XLSParse.InnerClassImplementation.ColumnarTable;
+import com.kanayaya.XLSParse.InnerClassImplementation.FileParseResult;
+import com.kanayaya.XLSParse.InnerClassImplementation.FormulaEvaluation;
+import com.kanayaya.XLSParse.InnerClassImplementation.HeaderMatching;
+import com.kanayaya.XLSParse.InnerClassImplementation.ParseReport;
+import com.kanayaya.XLSParse.InnerClassImplementation.ParseResultCache;
+import com.kanayaya.XLSParse.InnerClassImplementation.RowErrorPolicy;
+import com.kanayaya.XLSParse.InnerClassImplementation.RowParseException;
+import com.kanayaya.XLSParse.InnerClassImplementation.StartRowCache;
+import com.kanayaya.XLSParse.InnerClassImplementation.StringPool;
+import com.kanayaya.XLSParse.InnerClassImplementation.TableReport;
+import com.kanayaya.XLSParse.InnerClassImplementation.TitleIndex;
+import com.kanayaya.XLSParse.InnerClassImplementation.UncheckedConsumer;
+import com.kanayaya.XLSParse.InnerClassImplementation.WorkbookCache;
 import com.kanayaya.XLSParse.InnerClassImplementation.XLSTableParser;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.util.LittleEndian;
+import org.apache.poi.xssf.usermodel.XSSFCell;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class XLSTableParserIntegrationTest {
 
@@ -77,4 +149,1475 @@ class XLSTableParserIntegrationTest {
 
                 .parse(book);
     }
-}
\ No newline at end of file
+
+    @Test
+    void streamingMatchesWorkbook() throws IOException, URISyntaxException {
+        List<Map<String, String>> fromWorkbook = new ArrayList<>();
+        List<Map<String, String>> fromStream = new ArrayList<>();
+        try (XSSFWorkbook book = new XSSFWorkbook(new BufferedInputStream(getClass().getResourceAsStream("/test.xlsx")))) {
+            parserInto(fromWorkbook).parse(book);
+        }
+        parserInto(fromStream).parse(Path.of(getClass().getResource("/test.xlsx").toURI()));
+
+        assertFalse(fromWorkbook.isEmpty());
+        assertEquals(fromWorkbook, fromStream);
+
+        List<Map<String, String>> fromInputStream = new ArrayList<>();
+        try (InputStream in = getClass().getResourceAsStream("/test.xlsx")) {
+            parserInto(fromInputStream).parse(in);
+        }
+        assertEquals(fromWorkbook, fromInputStream);
+    }
+
+    @Test
+    void isoDateCellsReadAsDates(@TempDir Path dir) throws IOException, InvalidFormatException {
+        Path file = dir.resolve("dates.xlsx");
+        try (XSSFWorkbook book = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = book.createSheet("data");
+            sheet.createRow(0).createCell(0).setCellValue("title");
+            CellStyle style = book.createCellStyle();
+            style.setDataFormat(book.createDataFormat().getFormat("yyyy-mm-dd hh:mm"));
+            String[] values = {"2024-03-15T10:30:00", "2024-03-16"};
+            for (int i = 0; i < values.length; i++) {
+                XSSFCell cell = (XSSFCell) sheet.createRow(i + 1).createCell(0);
+                cell.setCellStyle(style);
+                cell.getCTCell().setT(STCellType.D);
+                cell.getCTCell().setV(values[i]);
+            }
+            book.write(out);
+        }
+        List<LocalDateTime> expected = List.of(LocalDateTime.of(2024, 3, 15, 10, 30), LocalDateTime.of(2024, 3, 16, 0, 0));
+
+        for (String backend : List.of("dom", "xlsx")) {
+            List<LocalDateTime> dates = new ArrayList<>();
+            List<String> formatted = new ArrayList<>();
+            XLSTableParser parser = XLSTableParser.fromSheet("data")
+                    .findRowWhereCell(0).stringValueEquals("title")
+                    .thenSkip(1)
+                    .endIfCell(0).isNull().or().isNotNumeric()
+                    .getEntityFrom(() -> new Object[2])
+                    .thenForColumn(0, (dto, cell) -> dto[0] = cell.getLocalDateTimeCellValue())
+                    .thenForColumnStringified(0, (dto, s) -> dto[1] = s)
+                    .thenPutInto(dto -> {
+                        dates.add((LocalDateTime) dto[0]);
+                        formatted.add((String) dto[1]);
+                    });
+            parseWith(backend, parser, file);
+
+            assertEquals(expected, dates, backend);
+            assertEquals(List.of("2024-03-15 10:30", "2024-03-16 00:00"), formatted, backend);
+        }
+    }
+
+    @Test
+    void xlsMatchesXlsx(@TempDir Path dir) throws IOException, URISyntaxException {
+        Path xlsx = Path.of(getClass().getResource("/test.xlsx").toURI());
+        Path xls = dir.resolve("test.xls");
+        try (XSSFWorkbook source = new XSSFWorkbook(xlsx.toFile()); HSSFWorkbook target = new HSSFWorkbook()) {
+            Sheet sheet = target.createSheet(source.getSheetName(0));
+            for (Row sourceRow : source.getSheetAt(0)) {
+                Row row = sheet.createRow(sourceRow.getRowNum());
+                for (Cell sourceCell : sourceRow) {
+                    Cell cell = row.createCell(sourceCell.getColumnIndex());
+                    if (sourceCell.getCellType() == CellType.NUMERIC) cell.setCellValue(sourceCell.getNumericCellValue());
+                    else cell.setCellValue(sourceCell.getStringCellValue());
+                }
+            }
+            try (OutputStream out = Files.newOutputStream(xls)) {
+                target.write(out);
+            }
+        } catch (InvalidFormatException e) {
+            throw new IOException(e);
+        }
+
+        List<Map<String, String>> fromXlsx = new ArrayList<>();
+        List<Map<String, String>> fromXls = new ArrayList<>();
+        xlsParserInto(fromXlsx).parse(xlsx);
+        xlsParserInto(fromXls).parse(xls);
+
+        assertFalse(fromXlsx.isEmpty());
+        assertEquals(fromXlsx, fromXls);
+    }
+
+    @Test
+    void xlsKeepsStringFormulaWithoutStringRecord(@TempDir Path dir) throws IOException {
+        Path written = writeBook(dir, "formulas", "xls", sheet -> {
+            Row first = sheet.createRow(0);
+            first.createCell(0).setCellFormula("\"a\"&\"b\"");
+            first.createCell(1).setCellValue(1);
+            Row second = sheet.createRow(1);
+            second.createCell(1).setCellValue(2);
+            second.createCell(2).setCellFormula("\"c\"&\"d\"");
+            sheet.getWorkbook().getCreationHelper().createFormulaEvaluator().evaluateAll();
+        });
+        byte[] records;
+        try (POIFSFileSystem fs = new POIFSFileSystem(written.toFile(), true);
+             InputStream in = fs.createDocumentInputStream("Workbook")) {
+            records = in.readAllBytes();
+        }
+        int removed = 0;
+        for (int offset = 0; offset + 4 <= records.length; offset += 4 + LittleEndian.getUShort(records, offset + 2)) {
+            if (LittleEndian.getShort(records, offset) == StringRecord.sid) {
+                LittleEndian.putShort(records, offset, (short) 0x0FFF);
+                removed++;
+            }
+        }
+        assertEquals(2, removed);
+        Path file = dir.resolve("stripped.xls");
+        try (POIFSFileSystem fs = new POIFSFileSystem(); OutputStream out = Files.newOutputStream(file)) {
+            fs.createDocument(new ByteArrayInputStream(records), "Workbook");
+            fs.writeFilesystem(out);
+        }
+
+        List<String> cells = new ArrayList<>();
+        XLSTableParser.fromSheet("Data")
+                .findRowWhereCell(1).isNumeric()
+                .noSkip()
+                .endIfCell(1).isNull()
+                .getEntityFrom(() -> new int[1])
+                .thenForColumn(0, (dto, cell) -> cells.add(cell.getCellFormula() + "=" + cell.getStringCellValue()))
+                .thenForColumn(2, (dto, cell) -> cells.add(cell.getCellFormula() + "=" + cell.getStringCellValue()))
+                .thenPutInto(dto -> {})
+                .parse(file);
+
+        assertEquals(List.of("\"a\"&\"b\"=", "\"c\"&\"d\"="), cells);
+    }
+
+    @Test
+    void ole2FileWithoutWorkbookFailsWithIOException(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("document.doc");
+        try (POIFSFileSystem fs = new POIFSFileSystem(); OutputStream out = Files.newOutputStream(file)) {
+            fs.createDocument(new ByteArrayInputStream(new byte[16]), "WordDocument");
+            fs.writeFilesystem(out);
+        }
+        XLSTableParser parser = xlsParserInto(new ArrayList<>());
+
+        assertThrows(IOException.class, () -> parser.parse(file));
+        try (POIFSFileSystem fs = new POIFSFileSystem(file.toFile(), true)) {
+            assertThrows(IOException.class, () -> parser.parse(fs));
+        }
+    }
+
+    @Test
+    void parallelFillingKeepsSheetOrder() throws IOException {
+        try (XSSFWorkbook book = new XSSFWorkbook()) {
+            Sheet sheet = book.createSheet("data");
+            sheet.createRow(0).createCell(0).setCellValue("title");
+            for (int i = 1; i <= 3000; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(i);
+                row.createCell(1).setCellValue("row " + i);
+            }
+
+            List<String> sequential = new ArrayList<>();
+            List<String> ordered = new ArrayList<>();
+            List<String> unordered = new ArrayList<>();
+            numberedRowsParser(sequential).parse(book);
+            numberedRowsParser(ordered).inParallel(4).parse(book);
+            numberedRowsParser(unordered).inParallel(4, false).parse(book);
+
+            assertEquals(3000, sequential.size());
+            assertEquals(sequential, ordered);
+            Collections.sort(sequential);
+            Collections.sort(unordered);
+            assertEquals(sequential, unordered);
+        }
+    }
+
+    @Test
+    void independentTablesRunConcurrently() throws IOException, URISyntaxException {
+        Path xlsx = Path.of(getClass().getResource("/test.xlsx").toURI());
+        List<List<Map<String, String>>> sequential = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        List<List<Map<String, String>>> concurrent = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            segmentedParser(sequential).parse(xlsx);
+            segmentedParser(concurrent).inParallelTables(executor).parse(xlsx);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertFalse(sequential.get(2).isEmpty());
+        assertEquals(sequential, concurrent);
+    }
+
+    @Test
+    void parseAllReportsFailuresPerFile(@TempDir Path dir) throws IOException, URISyntaxException {
+        Path xlsx = Path.of(getClass().getResource("/test.xlsx").toURI());
+        Path broken = Files.writeString(dir.resolve("broken.xlsx"), "not a workbook");
+        List<Map<String, String>> single = new ArrayList<>();
+        parserInto(single).parse(xlsx);
+
+        List<Map<String, String>> batch = Collections.synchronizedList(new ArrayList<>());
+        List<FileParseResult> results = parserInto(batch).parseAll(List.of(xlsx, broken, xlsx), 1024 * 1024);
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSuccessful());
+        assertFalse(results.get(1).isSuccessful());
+        assertTrue(results.get(2).isSuccessful());
+        assertEquals(single.size() * 2, batch.size());
+        assertEquals(3, results.get(0).getReport().getTables().size());
+        assertNull(results.get(1).getReport());
+        assertEquals(results.get(0).getReport().getTables().get(0).getRowsEmitted(),
+                results.get(2).getReport().getTables().get(0).getRowsEmitted());
+    }
+
+    @Test
+    void stringifiedValuesUseParserLocale() throws IOException {
+        try (XSSFWorkbook book = new XSSFWorkbook()) {
+            Sheet sheet = book.createSheet("data");
+            sheet.createRow(0).createCell(0).setCellValue("title");
+            CellStyle style = book.createCellStyle();
+            style.setDataFormat(book.createDataFormat().getFormat("#,##0.00"));
+            for (int i = 1; i <= 2; i++) {
+                Cell cell = sheet.createRow(i).createCell(0);
+                cell.setCellValue(1234.5 * i);
+                cell.setCellStyle(style);
+                sheet.getRow(i).createCell(1).setCellValue("row " + i);
+            }
+
+            List<String> english = new ArrayList<>();
+            List<String> german = new ArrayList<>();
+            numberedRowsParser(english).withLocale(Locale.US).parse(book);
+            numberedRowsParser(german).withLocale(Locale.GERMANY).parse(book);
+
+            assertEquals(List.of("1,234.50:row 1", "2,469.00:row 2"), english);
+            assertEquals(List.of("1.234,50:row 1", "2.469,00:row 2"), german);
+        }
+    }
+
+    @Test
+    void parseReportCountsRowsAndNullCells() throws IOException {
+        try (XSSFWorkbook book = new XSSFWorkbook()) {
+            Sheet sheet = book.createSheet("data");
+            sheet.createRow(0).createCell(0).setCellValue("preface");
+            sheet.createRow(1).createCell(0).setCellValue("title");
+            for (int i = 2; i <= 11; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(i);
+                if (i != 5) row.createCell(1).setCellValue("row " + i);
+            }
+            sheet.createRow(12).createCell(0).setCellValue("total");
+
+            List<String> result = new ArrayList<>();
+            ParseReport report = numberedRowsParser(result).logNullCellsEvery(1).parse(book);
+
+            assertEquals(1, report.getTables().size());
+            TableReport table = report.getTables().get(0);
+            assertEquals("data", table.getSheetName());
+            assertEquals(1, table.getRowsBeforeStart());
+            assertEquals(1, table.getRowsSkipped());
+            assertEquals(10, table.getRowsEmitted());
+            assertEquals(Map.of(1, 1L), table.getNullCells());
+            assertEquals(result.size(), report.getRowsEmitted());
+        }
+    }
+
+    @Test
+    void streamBuildsOnlyPulledDtos() throws IOException, URISyntaxException {
+        Path xlsx = Path.of(getClass().getResource("/test.xlsx").toURI());
+        List<Map<String, String>> parsed = new ArrayList<>();
+        parserInto(parsed).parse(xlsx);
+
+        AtomicInteger created = new AtomicInteger();
+        try (XSSFWorkbook book = new XSSFWorkbook(xlsx.toFile())) {
+            List<Map<String, String>> firstTwo = XLSTableParser.fromSheet(0)
+                    .findRowWhereCell(0).isString().and().stringValueContains("title 1")
+                    .thenSkip(1)
+                    .endIfCell(0).isNull().or().isEmpty().or().isNotNumeric()
+                    .getEntityFrom(() -> {
+                        created.incrementAndGet();
+                        return new LinkedHashMap<String, String>();
+                    })
+                    .thenForNextColumnStringified((dto, s) -> dto.put(s, s))
+                    .thenForNextColumn((dto, cell) -> dto.put(cell.getRawValue(), Integer.toString(Double.valueOf(cell.getNumericCellValue()).intValue())))
+                    .stream(book)
+                    .limit(2)
+                    .collect(Collectors.toList());
+            assertEquals(parsed.subList(0, 2), firstTwo);
+            assertEquals(2, created.get());
+        } catch (InvalidFormatException e) {
+            throw new IOException(e);
+        }
+
+        List<Map<String, String>> firstTable = new ArrayList<>();
+        OPCPackage pkg;
+        try {
+            pkg = OPCPackage.open(xlsx.toFile(), PackageAccess.READ);
+        } catch (InvalidFormatException e) {
+            throw new IOException(e);
+        }
+        try (Stream<LinkedHashMap<String, String>> secondTable = XLSTableParser.fromSheet(0)
+                .findRowWhereCell(0).isString().and().stringValueContains("title 1")
+                .thenSkip(1)
+                .endIfCell(0).isNull().or().isEmpty().or().isNotNumeric()
+                .getEntityFrom(() -> new LinkedHashMap<String, String>())
+                .thenForNextColumnStringified((dto, s) -> dto.put(s, s))
+                .thenForNextColumn((dto, cell) -> dto.put(cell.getRawValue(), Integer.toString(Double.valueOf(cell.getNumericCellValue()).intValue())))
+                .thenPutInto(firstTable)
+
+                .thenContinueSameSheet()
+                .findRowWhereCell(0).isNotNull().and().isNotEmpty().and().stringValueContains("title 1")
+                .thenSkip(1)
+                .endIfCell(2).isNull().or().isEmpty()
+                .getEntityFrom(() -> new LinkedHashMap<String, String>())
+                .thenForColumnStringified(0, (dto, s) -> dto.put(s, s))
+                .thenForColumn(1, (dto, cell) -> dto.put(cell.getRawValue(), cell.getStringCellValue()))
+                .stream(pkg)) {
+            assertFalse(firstTable.isEmpty());
+            assertEquals(parsed.get(firstTable.size()), secondTable.findFirst().orElseThrow());
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    @Test
+    void streamLocatesAndSkipsRowsLikeConsumer(@TempDir Path dir) throws IOException, InvalidFormatException {
+        TitleIndex index = TitleIndex.findRowsWhereCell(0).containsAnyOf("Alpha", "Beta");
+        Path xlsx = writeBook(dir, "sections", "xlsx", sheet -> {
+            String[] values = {"Alpha section", "1", "end", "Beta section", "10", "n/a", "30", "end"};
+            for (int i = 0; i < values.length; i++) sheet.createRow(i).createCell(0).setCellValue(values[i]);
+        });
+        Path xls = writeBook(dir, "sections", "xls", sheet -> {
+            String[] values = {"Alpha section", "1", "end", "Beta section", "10", "20", "end"};
+            for (int i = 0; i < values.length; i++) sheet.createRow(i).createCell(0).setCellValue(values[i]);
+        });
+        Supplier<XLSTableParser.EntityFillerNumberChooser<int[]>> beta = () -> XLSTableParser.fromSheet("Data")
+                .findRowTitled(index, "Beta")
+                .thenSkip(1)
+                .endIfCell(0).stringValueEquals("end")
+                .getEntityFrom(() -> new int[1])
+                .thenForColumnStringified(0, (dto, s) -> dto[0] = Integer.parseInt(s));
+
+        List<Integer> consumed = new ArrayList<>();
+        ParseReport report = beta.get().thenPutInto(dto -> consumed.add(dto[0])).onRowError(RowErrorPolicy.skipRows()).parse(xlsx);
+        assertEquals(List.of(10, 30), consumed);
+        assertEquals(1, report.getErrors().size());
+
+        OPCPackage pkg = OPCPackage.open(xlsx.toFile(), PackageAccess.READ);
+        try {
+            try (Stream<int[]> streamed = beta.get().stream(pkg, RowErrorPolicy.skipRows())) {
+                assertEquals(consumed, streamed.map(dto -> dto[0]).collect(Collectors.toList()));
+            }
+            Iterator<int[]> iterator = beta.get().iterator(pkg);
+            assertEquals(10, iterator.next()[0]);
+            RowParseException failed = assertThrows(RowParseException.class, iterator::hasNext);
+            assertEquals(5, failed.getRowNum());
+            assertFalse(iterator.hasNext());
+        } finally {
+            pkg.revert();
+        }
+
+        try (POIFSFileSystem fs = new POIFSFileSystem(xls.toFile(), true)) {
+            List<Integer> iterated = new ArrayList<>();
+            beta.get().iterator(fs).forEachRemaining(dto -> iterated.add(dto[0]));
+            assertEquals(List.of(10, 20), iterated);
+        }
+    }
+
+    @Test
+    void batchesCoverTableInOrder() throws IOException, URISyntaxException {
+        Path xlsx = Path.of(getClass().getResource("/test.xlsx").toURI());
+        List<Map<String, String>> parsed = new ArrayList<>();
+        parserInto(parsed).parse(xlsx);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (Executor flusher : new Executor[]{Runnable::run, executor}) {
+                List<List<Map<String, String>>> batches = new ArrayList<>();
+                XLSTableParser.fromSheet(0)
+                        .findRowWhereCell(0).isString().and().stringValueContains("title 1")
+                        .thenSkip(1)
+                        .endIfCell(0).isNull().or().isEmpty().or().isNotNumeric()
+                        .getEntityFrom(() -> new LinkedHashMap<String, String>())
+                        .thenForNextColumnStringified((dto, s) -> dto.put(s, s))
+                        .thenForNextColumn((dto, cell) -> dto.put(cell.getRawValue(), Integer.toString(Double.valueOf(cell.getNumericCellValue()).intValue())))
+                        .thenPutIntoBatches(3, batch -> batches.add(new ArrayList<>(batch)), flusher)
+                        .parse(xlsx);
+
+                List<Map<String, String>> flat = batches.stream().flatMap(List::stream).collect(Collectors.toList());
+                assertFalse(flat.isEmpty());
+                assertEquals(parsed.subList(0, flat.size()), flat);
+                assertTrue(batches.subList(0, batches.size() - 1).stream().allMatch(batch -> batch.size() == 3));
+                assertTrue(batches.get(batches.size() - 1).size() <= 3);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void asyncConsumerKeepsOrderAndPropagatesErrors() throws IOException, URISyntaxException {
+        Path xlsx = Path.of(getClass().getResource("/test.xlsx").toURI());
+        List<Map<String, String>> parsed = new ArrayList<>();
+        parserInto(parsed).parse(xlsx);
+
+        List<Map<String, String>> async = Collections.synchronizedList(new ArrayList<>());
+        asyncParser(dto -> {
+            Thread.sleep(1);
+            async.add(dto);
+        }).parse(xlsx);
+        assertFalse(async.isEmpty());
+        assertEquals(parsed.subList(0, async.size()), async);
+
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> asyncParser(dto -> {
+            throw new IOException("sink failed");
+        }).parse(xlsx));
+        assertEquals("sink failed", thrown.getCause().getMessage());
+    }
+
+    @Test
+    void asyncConsumerFailsOnRejectionAndStopsOnAbort() throws IOException, URISyntaxException, InterruptedException {
+        Path xlsx = Path.of(getClass().getResource("/test.xlsx").toURI());
+        ExecutorService shutDown = Executors.newSingleThreadExecutor();
+        shutDown.shutdown();
+        assertThrows(RejectedExecutionException.class, () -> asyncTable()
+                .thenPutIntoAsync(dto -> {
+                }, 2, shutDown)
+                .parse(xlsx));
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger rows = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertThrows(RowParseException.class, () -> XLSTableParser.fromSheet(0)
+                    .findRowWhereCell(0).isString().and().stringValueContains("title 1")
+                    .thenSkip(1)
+                    .endIfCell(0).isNull().or().isEmpty().or().isNotNumeric()
+                    .getEntityFrom(() -> {
+                        if (rows.incrementAndGet() == 3) throw new IllegalStateException("generator failed");
+                        return new Object();
+                    })
+                    .thenForColumn(0, (dto, cell) -> {
+                    })
+                    .thenPutIntoAsync(dto -> {
+                        running.incrementAndGet();
+                        Thread.sleep(200);
+                        calls.incrementAndGet();
+                        running.decrementAndGet();
+                    }, 2, executor)
+                    .parse(xlsx));
+            assertEquals(0, running.get());
+            int delivered = calls.get();
+            Thread.sleep(300);
+            assertEquals(delivered, calls.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static XLSTableParser.EntityFillerSequential<LinkedHashMap<String, String>> asyncTable() {
+        return XLSTableParser.fromSheet(0)
+                .findRowWhereCell(0).isString().and().stringValueContains("title 1")
+                .thenSkip(1)
+                .endIfCell(0).isNull().or().isEmpty().or().isNotNumeric()
+                .getEntityFrom(() -> new LinkedHashMap<String, String>())
+                .thenForNextColumnStringified((dto, s) -> dto.put(s, s));
+    }
+
+    private static XLSTableParser asyncParser(UncheckedConsumer<LinkedHashMap<String, String>> consumer) {
+        return XLSTableParser.fromSheet(0)
+                .findRowWhereCell(0).isString().and().stringValueContains("title 1")
+                .thenSkip(1)
+                .endIfCell(0).isNull().or().isEmpty().or().isNotNumeric()
+                .getEntityFrom(() -> new LinkedHashMap<String, String>())
+                .thenForNextColumnStringified((dto, s) -> dto.put(s, s))
+                .thenForNextColumn((dto, cell) -> dto.put(cell.getRawValue(), Integer.toString(Double.valueOf(cell.getNumericCellValue()).intValue())))
+                .thenPutIntoAsync(consumer, 2);
+    }
+
+    @Test
+    void columnarTableMatchesRowDtos() throws IOException, URISyntaxException {
+        Path xlsx = Path.of(getClass().getResource("/test.xlsx").toURI());
+        List<String[]> rows = new ArrayList<>();
+        firstTable()
+                .getEntityFrom(() -> new String[2])
+                .thenForColumnStringified(0, (dto, s) -> dto[0] = s)
+                .thenForColumn(1, (dto, cell) -> dto[1] = Double.toString(cell.getNumericCellValue()))
+                .thenPutInto(rows)
+                .parse(xlsx);
+
+        List<ColumnarTable> tables = new ArrayList<>();
+        firstTable()
+                .collectColumns()
+                .stringColumn("name", 0)
+                .doubleColumn("value", 1)
+                .longColumn("missing", 7)
+                .thenPutInto(tables::add)
+                .parse(xlsx);
+
+        assertEquals(1, tables.size());
+        ColumnarTable table = tables.get(0);
+        assertFalse(rows.isEmpty());
+        assertEquals(rows.size(), table.getRowCount());
+        assertEquals(List.of("name", "value", "missing"), table.getColumnNames());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(rows.get(i)[0], table.getString("name", i));
+            assertEquals(rows.get(i)[1], Double.toString(table.getDoubles("value")[i]));
+        }
+        assertEquals(rows.stream().map(row -> row[0]).distinct().count(), table.getDictionary("name").size());
+        assertEquals(0, table.getNullCount("value"));
+        assertEquals(rows.size(), table.getNullCount("missing"));
+
+        XLSTableParser columnar = firstTable()
+                .collectColumns()
+                .stringColumn("name", 0)
+                .thenPutInto(tables::add);
+        assertThrows(IllegalStateException.class, () -> columnar.inParallel(2));
+        assertThrows(IllegalStateException.class, () -> columnar.inParallel(Runnable::run, false));
+    }
+
+    private static XLSTableParser.EntityGetter firstTable() {
+        return XLSTableParser.fromSheet(0)
+                .findRowWhereCell(0).isString().and().stringValueContains("title 1")
+                .thenSkip(1)
+                .endIf(row -> row.getCell(0) == null || row.getCell(0).getCellType() != CellType.NUMERIC);
+    }
+
+    @Test
+    void annotatedEntityBindsByIndexAndHeader() throws IOException {
+        try (XSSFWorkbook book = new XSSFWorkbook()) {
+            CellStyle date = book.createCellStyle();
+            date.setDataFormat(book.createDataFormat().getFormat("yyyy-mm-dd"));
+            Sheet sheet = book.createSheet("items");
+            Row header = sheet.createRow(0);
+            String[] headers = {"Name", "Weight", "Quantity", "Price", "Date"};
+            for (int c = 0; c < headers.length; c++) header.createCell(c).setCellValue(headers[c]);
+            for (int i = 1; i <= 3; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue("item " + i);
+                row.createCell(1).setCellValue(i * 0.5);
+                row.createCell(2).setCellValue(i * 10);
+                row.createCell(3).setCellValue(i + 0.1);
+                Cell cell = row.createCell(4);
+                cell.setCellValue(LocalDate.of(2024, 1, i));
+                cell.setCellStyle(date);
+            }
+
+            List<Item> items = new ArrayList<>();
+            XLSTableParser.fromSheet("items")
+                    .findRowWhereCell(0).stringValueEquals("Name")
+                    .thenSkip(1)
+                    .endIfCell(0).isNull().or().isEmpty()
+                    .getEntityFrom(Item.class)
+                    .thenPutInto(items)
+                    .parse(book);
+
+            assertEquals(3, items.size());
+            for (int i = 1; i <= 3; i++) {
+                Item item = items.get(i - 1);
+                assertEquals("item " + i, item.name);
+                assertEquals(i * 0.5, item.weight);
+                assertEquals(i * 10, item.quantity);
+                assertEquals(new BigDecimal(i + ".1"), item.price);
+                assertEquals(LocalDate.of(2024, 1, i), item.date);
+            }
+        }
+    }
+
+    @Test
+    void annotatedEntityRejectsFractionalAndOverflowingIntegers() throws IOException {
+        try (XSSFWorkbook book = new XSSFWorkbook()) {
+            Sheet sheet = book.createSheet("items");
+            Row header = sheet.createRow(0);
+            String[] headers = {"Name", "Weight", "Quantity", "Price", "Date"};
+            for (int c = 0; c < headers.length; c++) header.createCell(c).setCellValue(headers[c]);
+            double[] quantities = {7, 2.5, 3e10, -4};
+            for (int i = 0; i < quantities.length; i++) {
+                Row row = sheet.createRow(i + 1);
+                row.createCell(0).setCellValue("item " + i);
+                row.createCell(2).setCellValue(quantities[i]);
+            }
+
+            List<Item> items = new ArrayList<>();
+            ParseReport report = XLSTableParser.fromSheet("items")
+                    .findRowWhereCell(0).stringValueEquals("Name")
+                    .thenSkip(1)
+                    .endIfCell(0).isNull().or().isEmpty()
+                    .getEntityFrom(Item.class)
+                    .thenPutInto(items)
+                    .onRowError(RowErrorPolicy.skipRows())
+                    .parse(book);
+
+            assertEquals(List.of(7, -4), items.stream().map(item -> item.quantity).collect(Collectors.toList()));
+            List<RowParseException> errors = report.getErrors();
+            assertEquals(List.of(2, 3), errors.stream().map(RowParseException::getRowNum).collect(Collectors.toList()));
+            for (RowParseException error : errors) {
+                assertEquals(2, error.getCellNum());
+                assertTrue(error.getCause() instanceof NumberFormatException);
+            }
+        }
+    }
+
+    @Test
+    void annotatedEntityBindsPrivateMembersOfSuperclass() throws IOException {
+        try (XSSFWorkbook book = new XSSFWorkbook()) {
+            Sheet sheet = book.createSheet("items");
+            Row header = sheet.createRow(0);
+            String[] headers = {"Name", "Weight", "Quantity", "Note"};
+            for (int c = 0; c < headers.length; c++) header.createCell(c).setCellValue(headers[c]);
+            for (int i = 1; i <= 2; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue("item " + i);
+                row.createCell(1).setCellValue(i * 0.5);
+                row.createCell(2).setCellValue(i * 10);
+                if (i == 1) row.createCell(3).setCellValue("fragile");
+                else row.createCell(3).setBlank();
+            }
+
+            List<DerivedItem> items = new ArrayList<>();
+            XLSTableParser.fromSheet("items")
+                    .findRowWhereCell(0).stringValueEquals("Name")
+                    .thenSkip(1)
+                    .endIfCell(0).isNull().or().isEmpty()
+                    .getEntityFrom(DerivedItem.class)
+                    .thenPutInto(items)
+                    .parse(book);
+
+            assertEquals(List.of("item 1", "item 2"), items.stream().map(BaseItem::getName).collect(Collectors.toList()));
+            assertEquals(List.of(10, 20), items.stream().map(BaseItem::getQuantity).collect(Collectors.toList()));
+            assertEquals(List.of("fragile", "none"), items.stream().map(BaseItem::getNote).collect(Collectors.toList()));
+            assertEquals(List.of(0.5, 1.0), items.stream().map(item -> item.weight).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void conditionChainsFoldLeftAcrossColumns() throws IOException {
+        try (XSSFWorkbook book = new XSSFWorkbook()) {
+            Sheet sheet = book.createSheet("chain");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Header");
+            header.createCell(1).setCellValue(5);
+            Row first = sheet.createRow(1);
+            first.createCell(0).setCellValue(1);
+            first.createCell(1).setCellValue("Box");
+            Row total = sheet.createRow(2);
+            total.createCell(0).setCellValue("Total");
+            total.createCell(1).setBlank();
+            sheet.createRow(3).createCell(1).setCellValue("END");
+
+            List<Integer> rows = new ArrayList<>();
+            XLSTableParser.fromSheet("chain")
+                    .findRowWhereCell(0).isNumeric().andOtherCell(1).stringValueContainsIgnoreCase("BOX")
+                    .noSkip()
+                    .endIfCell(0).isNull().or().isString().andOtherCell(1).stringValueEquals("END")
+                    .getEntityFrom(() -> new int[1])
+                    .thenForColumn(1, (dto, cell) -> dto[0] = cell.getRowIndex())
+                    .thenPutInto(dto -> rows.add(dto[0]))
+                    .parse(book);
+
+            assertEquals(List.of(1, 2), rows);
+        }
+    }
+
+    @Test
+    void titleIndexFindsSectionsInOnePass() throws IOException {
+        String[] titles = {"Alpha", "Beta", "Gamma"};
+        try (XSSFWorkbook book = new XSSFWorkbook()) {
+            Sheet sheet = book.createSheet("report");
+            int r = 0;
+            for (int section = 0; section < titles.length; section++) {
+                sheet.createRow(r++).createCell(0).setCellValue(titles[section] + " section");
+                for (int i = 0; i <= section; i++) sheet.createRow(r++).createCell(0).setCellValue(section * 10 + i);
+                sheet.createRow(r++).createCell(0).setCellValue("subtotal");
+            }
+            sheet.createRow(r).createCell(0).setCellValue("Beta totals");
+
+            TitleIndex index = TitleIndex.findRowsWhereCell(0).containsAnyOf(titles);
+            List<List<Double>> indexed = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+            List<List<Double>> scanned = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+            XLSTableParser byIndex = null;
+            XLSTableParser byScan = null;
+            for (int section = titles.length - 1; section >= 0; section--) {
+                List<Double> target = indexed.get(section);
+                XLSTableParser.StartConditionGetter start = byIndex == null ? XLSTableParser.fromSheet("report") : byIndex.thenRestartSameSheet();
+                byIndex = start.findRowTitled(index, titles[section])
+                        .thenSkip(1)
+                        .endIfCell(0).isNotNumeric()
+                        .getEntityFrom(() -> new double[1])
+                        .thenForColumn(0, (dto, cell) -> dto[0] = cell.getNumericCellValue())
+                        .thenPutInto(dto -> target.add(dto[0]));
+                List<Double> expected = scanned.get(section);
+                start = byScan == null ? XLSTableParser.fromSheet("report") : byScan.thenRestartSameSheet();
+                byScan = start.findRowWhereCell(0).stringValueContains(titles[section])
+                        .thenSkip(1)
+                        .endIfCell(0).isNotNumeric()
+                        .getEntityFrom(() -> new double[1])
+                        .thenForColumn(0, (dto, cell) -> dto[0] = cell.getNumericCellValue())
+                        .thenPutInto(dto -> expected.add(dto[0]));
+            }
+
+            ParseReport report = byIndex.parse(book);
+            byScan.parse(book);
+
+            assertEquals(scanned, indexed);
+            assertEquals(List.of(20.0, 21.0, 22.0), indexed.get(2));
+            assertEquals(1, report.getTitleRows().size());
+            assertEquals(Map.of("Alpha", List.of(0), "Beta", List.of(3, 12), "Gamma", List.of(7)), report.getTitleRows().get(0).asMap());
+        }
+    }
+
+    @Test
+    void titleRowsAreReportedInSinglePassInSheetOrder() throws IOException {
+        try (XSSFWorkbook book = new XSSFWorkbook()) {
+            Object[][] sheets = {{"b", new String[]{"Beta section", "5", "end"}},
+                    {"a", new String[]{"Alpha section", "1", "2", "end", "Beta section", "3", "end"}}};
+            for (Object[] data : sheets) {
+                Sheet sheet = book.createSheet((String) data[0]);
+                String[] values = (String[]) data[1];
+                for (int i = 0; i < values.length; i++) {
+                    Cell cell = sheet.createRow(i).createCell(0);
+                    if (values[i].matches("\\d+")) cell.setCellValue(Double.parseDouble(values[i]));
+                    else cell.setCellValue(values[i]);
+                }
+            }
+            TitleIndex index = TitleIndex.findRowsWhereCell(0).containsAnyOf("Alpha", "Beta");
+            List<Double> result = Collections.synchronizedList(new ArrayList<>());
+            XLSTableParser parser = XLSTableParser.fromSheet("a")
+                    .findRowTitled(index, "Alpha")
+                    .thenSkip(1)
+                    .endIfCell(0).isNotNumeric()
+                    .getEntityFrom(() -> new double[1])
+                    .thenForColumn(0, (dto, cell) -> dto[0] = cell.getNumericCellValue())
+                    .thenPutInto(dto -> result.add(dto[0]))
+                    .thenRestartSameSheet()
+                    .findRowTitled(index, "Beta")
+                    .thenSkip(1)
+                    .endIfCell(0).isNotNumeric()
+                    .getEntityFrom(() -> new double[1])
+                    .thenForColumn(0, (dto, cell) -> dto[0] = cell.getNumericCellValue())
+                    .thenPutInto(dto -> result.add(dto[0]))
+                    .thenFromSheet("b")
+                    .findRowTitled(index, "Beta")
+                    .thenSkip(1)
+                    .endIfCell(0).isNotNumeric()
+                    .getEntityFrom(() -> new double[1])
+                    .thenForColumn(0, (dto, cell) -> dto[0] = cell.getNumericCellValue())
+                    .thenPutInto(dto -> result.add(dto[0]));
+
+            Function<ParseReport, List<String>> titleRows = report -> report.getTitleRows().stream()
+                    .map(rows -> rows.getSheetName() + rows.asMap())
+                    .collect(Collectors.toList());
+            List<String> expected = List.of("a{Alpha=[0], Beta=[4]}", "b{Alpha=[], Beta=[0]}");
+            assertEquals(expected, titleRows.apply(parser.inSinglePass().parse(book)));
+            ExecutorService executor = Executors.newFixedThreadPool(3);
+            try {
+                for (int i = 0; i < 5; i++) assertEquals(expected, titleRows.apply(parser.inParallelTables(executor).parse(book)));
+            } finally {
+                executor.shutdown();
+            }
+            assertEquals(List.of(1.0, 2.0, 3.0, 5.0), result.subList(0, 4));
+        }
+    }
+
+    @Test
+    void stringPoolSharesRepeatedValues() throws IOException {
+        try (XSSFWorkbook book = new XSSFWorkbook()) {
+            Sheet sheet = book.createSheet("currencies");
+            for (int i = 0; i < 100; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(i % 2 == 0 ? "EUR" : "USD");
+                row.createCell(1).setCellValue(i);
+            }
+
+            StringPool pool = new StringPool(4);
+            List<String[]> result = new ArrayList<>();
+            XLSTableParser.fromSheet("currencies")
+                    .findRowWhereCell(0).isString()
+                    .noSkip()
+                    .endIfCell(0).isNull()
+                    .getEntityFrom(() -> new String[2])
+                    .thenForColumnStringified(0, (dto, s) -> dto[0] = s)
+                    .thenForColumnStringified(1, (dto, s) -> dto[1] = s)
+                    .thenPutInto(result)
+                    .withStringPool(pool)
+                    .parse(book);
+
+            assertEquals(100, result.size());
+            for (int i = 2; i < 100; i++) assertSame(result.get(i % 2)[0], result.get(i)[0]);
+            assertEquals("42", result.get(42)[1]);
+            assertTrue(pool.getHits() >= 98, pool.toString());
+            assertTrue(pool.size() <= pool.getCapacity());
+            assertEquals(4, pool.getCapacity());
+            assertEquals(4, new StringPool(1).getCapacity());
+            assertEquals(8, new StringPool(5).getCapacity());
+            assertEquals(8, new StringPool(8).getCapacity());
+            assertThrows(IllegalArgumentException.class, () -> new StringPool((1 << 30) + 1));
+            assertThrows(IllegalArgumentException.class, () -> new StringPool(Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void formulaEvaluationPolicies() throws IOException {
+        for (FormulaEvaluation evaluation : FormulaEvaluation.values()) {
+            try (XSSFWorkbook book = new XSSFWorkbook()) {
+                Sheet sheet = book.createSheet("formulas");
+                for (int i = 0; i < 3; i++) {
+                    Row row = sheet.createRow(i);
+                    row.createCell(0).setCellValue(i + 1);
+                    row.createCell(1).setCellFormula("A" + (i + 1) + "*2");
+                }
+
+                List<String[]> result = new ArrayList<>();
+                XLSTableParser.fromSheet("formulas")
+                        .findRowWhereCell(0).isNumeric()
+                        .noSkip()
+                        .endIfCell(0).isNull()
+                        .getEntityFrom(() -> new String[2])
+                        .thenForColumn(1, (dto, cell) -> dto[0] = Double.toString(cell.getNumericCellValue()))
+                        .thenForColumnStringified(1, (dto, s) -> dto[1] = s)
+                        .thenPutInto(result)
+                        .withFormulaEvaluation(evaluation)
+                        .parse(book);
+
+                assertEquals(3, result.size());
+                for (int i = 0; i < 3; i++) {
+                    String expected = evaluation == FormulaEvaluation.CACHED ? "0" : Integer.toString((i + 1) * 2);
+                    assertEquals(expected + ".0", result.get(i)[0], evaluation.name());
+                    assertEquals(expected, result.get(i)[1], evaluation.name());
+                    assertEquals(0, sheet.getRow(i).getCell(1).getNumericCellValue(), evaluation.name());
+                }
+            }
+        }
+    }
+
+    @Test
+    void rowErrorPolicySkipsOrCollectsBadRows() throws IOException {
+        try (XSSFWorkbook book = new XSSFWorkbook()) {
+            Sheet sheet = book.createSheet("quantities");
+            for (int i = 0; i < 6; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue("item" + i);
+                row.createCell(1).setCellValue(i == 2 || i == 4 ? "n/a" : String.valueOf(i * 10));
+            }
+            Function<RowErrorPolicy, XLSTableParser> parser = policy -> XLSTableParser.fromSheet("quantities")
+                    .findRowWhereCell(0).isString()
+                    .noSkip()
+                    .endIfCell(0).isNull()
+                    .getEntityFrom(() -> new int[1])
+                    .thenForColumnStringified(1, (dto, s) -> dto[0] = Integer.parseInt(s))
+                    .thenPutInto(new ArrayList<>())
+                    .onRowError(policy);
+
+            ParseReport report = parser.apply(RowErrorPolicy.skipRows()).parse(book);
+            assertEquals(4, report.getRowsEmitted());
+            List<RowParseException> errors = report.getErrors();
+            assertEquals(List.of(2, 4), errors.stream().map(RowParseException::getRowNum).collect(Collectors.toList()));
+            assertEquals(1, errors.get(0).getCellNum());
+            assertTrue(errors.get(0).getCause() instanceof NumberFormatException);
+            assertEquals(0, errors.get(0).getStackTrace().length);
+
+            RowParseException failed = assertThrows(RowParseException.class, () -> parser.apply(RowErrorPolicy.collectUpTo(1)).parse(book));
+            assertEquals(4, failed.getRowNum());
+            assertEquals(1, failed.getSuppressed().length);
+
+            failed = assertThrows(RowParseException.class, () -> parser.apply(RowErrorPolicy.failFast()).parse(book));
+            assertEquals(2, failed.getRowNum());
+        }
+    }
+
+    @Test
+    void skippedRowsLeaveNoMarksInColumnarTable() throws IOException {
+        try (XSSFWorkbook book = new XSSFWorkbook()) {
+            Sheet sheet = book.createSheet("columns");
+            for (int i = 0; i < 5; i++) {
+                boolean broken = i == 1 || i == 4;
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue("row" + i);
+                if (i == 3) row.createCell(1).setCellValue(3.5);
+                else if (!broken) row.createCell(1).setCellValue(i);
+                if (broken) row.createCell(2).setCellFormula("INFO(\"osversion\")");
+                else row.createCell(2).setCellValue(i * 10);
+            }
+            List<ColumnarTable> tables = new ArrayList<>();
+            ParseReport report = XLSTableParser.fromSheet("columns")
+                    .findRowWhereCell(0).isString()
+                    .noSkip()
+                    .endIfCell(0).isNull()
+                    .collectColumns()
+                    .longColumn("number", 1)
+                    .longColumn("tens", 2)
+                    .thenPutInto(tables::add)
+                    .onRowError(RowErrorPolicy.skipRows())
+                    .withFormulaEvaluation(FormulaEvaluation.ON_DEMAND)
+                    .parse(book);
+
+            List<RowParseException> errors = report.getErrors();
+            assertEquals(List.of(1, 3, 4), errors.stream().map(RowParseException::getRowNum).collect(Collectors.toList()));
+            assertTrue(errors.get(1).getCause() instanceof NumberFormatException);
+            ColumnarTable table = tables.get(0);
+            assertEquals(2, table.getRowCount());
+            assertArrayEquals(new long[]{0, 2}, table.getLongs("number"));
+            assertArrayEquals(new long[]{0, 20}, table.getLongs("tens"));
+            assertEquals(0, table.getNullCount("number"));
+            assertEquals(0, table.getNullCount("tens"));
+        }
+    }
+
+    @Test
+    void workbookCacheReusesBookUntilFileChanges(@TempDir Path dir) throws IOException, URISyntaxException {
+        Path xlsx = Files.copy(Path.of(getClass().getResource("/test.xlsx").toURI()), dir.resolve("test.xlsx"));
+        List<Map<String, String>> direct = new ArrayList<>();
+        parserInto(direct).parse(xlsx);
+
+        WorkbookCache cache = new WorkbookCache(Long.MAX_VALUE);
+        List<Map<String, String>> first = new ArrayList<>();
+        List<Map<String, String>> second = new ArrayList<>();
+        parserInto(first).parse(xlsx, cache);
+        parserInto(second).parse(xlsx, cache);
+        assertEquals(direct, first);
+        assertEquals(direct, second);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.size());
+        assertTrue(cache.getBytes() > 0);
+
+        Files.setLastModifiedTime(xlsx, FileTime.fromMillis(Files.getLastModifiedTime(xlsx).toMillis() + 60_000));
+        parserInto(new ArrayList<>()).parse(xlsx, cache);
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(1, cache.size());
+
+        WorkbookCache small = new WorkbookCache(1);
+        List<Map<String, String>> uncached = new ArrayList<>();
+        parserInto(uncached).parse(xlsx, small);
+        assertEquals(direct, uncached);
+        assertEquals(0, small.size());
+        assertEquals(0, small.getBytes());
+    }
+
+    @Test
+    void cachedBookEvaluatesFormulasForConcurrentLeases(@TempDir Path dir) throws Exception {
+        Path xlsx = dir.resolve("formulas.xlsx");
+        try (XSSFWorkbook book = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(xlsx)) {
+            Sheet sheet = book.createSheet("formulas");
+            for (int i = 0; i < 200; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(i + 1);
+                row.createCell(1).setCellFormula(i == 0 ? "A1*2" : "B" + i + "+A" + (i + 1) + "*2");
+            }
+            book.write(out);
+        }
+        List<Double> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) expected.add((double) (i + 1) * (i + 2));
+
+        WorkbookCache cache = new WorkbookCache(Long.MAX_VALUE);
+        CyclicBarrier bothOpen = new CyclicBarrier(2);
+        Callable<List<Double>> parse = () -> {
+            List<Double> result = new ArrayList<>();
+            XLSTableParser.fromSheet("formulas")
+                    .findRowWhereCell(0).isNumeric()
+                    .noSkip()
+                    .endIfCell(0).isNull()
+                    .getEntityFrom(() -> new double[1])
+                    .thenForColumn(1, (dto, cell) -> dto[0] = cell.getNumericCellValue())
+                    .thenPutInto(dto -> {
+                        if (result.isEmpty()) awaitUnchecked(bothOpen);
+                        result.add(dto[0]);
+                    })
+                    .withFormulaEvaluation(FormulaEvaluation.ON_DEMAND)
+                    .parse(xlsx, cache);
+            return result;
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<Double>> first = executor.submit(parse);
+            Future<List<Double>> second = executor.submit(parse);
+            assertEquals(expected, first.get(30, TimeUnit.SECONDS));
+            assertEquals(expected, second.get(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+
+        List<Double> cached = new ArrayList<>();
+        XLSTableParser.fromSheet("formulas")
+                .findRowWhereCell(0).isNumeric()
+                .noSkip()
+                .endIfCell(0).isNull()
+                .getEntityFrom(() -> new double[1])
+                .thenForColumn(1, (dto, cell) -> dto[0] = cell.getNumericCellValue())
+                .thenPutInto(dto -> cached.add(dto[0]))
+                .parse(xlsx, cache);
+        assertTrue(cached.stream().allMatch(value -> value == 0), "Вычисления не должны записываться в книгу из кэша");
+    }
+
+    private static void awaitUnchecked(CyclicBarrier barrier) {
+        try {
+            barrier.await(30, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void parseResultCacheReplaysUnchangedFile(@TempDir Path dir) throws IOException, URISyntaxException {
+        Path xlsx = Files.copy(Path.of(getClass().getResource("/test.xlsx").toURI()), dir.resolve("test.xlsx"));
+        List<Map<String, String>> direct = new ArrayList<>();
+        parserInto(direct).parse(xlsx);
+
+        ParseResultCache cache = new ParseResultCache(dir.resolve("cache"), 1 << 20);
+        assertThrows(IllegalStateException.class, () -> parserInto(new ArrayList<>()).parse(xlsx, cache));
+
+        List<Map<String, String>> first = new ArrayList<>();
+        List<Map<String, String>> second = new ArrayList<>();
+        ParseReport parsed = parserInto(first).withPlanVersion("v1").parse(xlsx, cache);
+        ParseReport replayed = parserInto(second).withPlanVersion("v1").parse(xlsx, cache);
+        assertFalse(parsed.isFromCache());
+        assertTrue(replayed.isFromCache());
+        assertEquals(direct, first);
+        assertEquals(direct, second);
+        assertEquals(parsed.getRowsEmitted(), replayed.getRowsEmitted());
+        assertEquals(parsed.getTables().size(), replayed.getTables().size());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.size());
+
+        parserInto(new ArrayList<>()).withPlanVersion("v2").parse(xlsx, cache);
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+
+        ParseResultCache small = new ParseResultCache(dir.resolve("small"), 1);
+        List<Map<String, String>> uncached = new ArrayList<>();
+        assertFalse(parserInto(uncached).withPlanVersion("v1").parse(xlsx, small).isFromCache());
+        assertEquals(direct, uncached);
+        assertEquals(0, small.size());
+    }
+
+    @Test
+    void parseResultCacheKeepsTitleRowsAndPolymorphicValues(@TempDir Path dir) throws IOException {
+        Path xlsx = dir.resolve("sections.xlsx");
+        try (XSSFWorkbook book = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(xlsx)) {
+            Sheet sheet = book.createSheet("report");
+            sheet.createRow(0).createCell(0).setCellValue("Alpha section");
+            sheet.createRow(1).createCell(0).setCellValue(1);
+            sheet.createRow(2).createCell(0).setCellValue(2);
+            sheet.createRow(3).createCell(0).setCellValue("Beta section");
+            sheet.createRow(4).createCell(0).setCellValue(3);
+            book.write(out);
+        }
+        TitleIndex index = TitleIndex.findRowsWhereCell(0).containsAnyOf("Alpha", "Beta");
+        ParseResultCache cache = new ParseResultCache(dir.resolve("cache"), 1 << 20);
+
+        Function<List<Weighed>, XLSTableParser> parser = result -> XLSTableParser.fromSheet("report")
+                .findRowTitled(index, "Alpha")
+                .thenSkip(1)
+                .endIfCell(0).isNotNumeric()
+                .getEntityFrom(Weighed::new)
+                .thenForColumn(0, (dto, cell) -> dto.weight = new Weight(cell.getNumericCellValue()))
+                .thenPutInto(result::add)
+                .withPlanVersion("v1");
+        List<Weighed> first = new ArrayList<>();
+        List<Weighed> second = new ArrayList<>();
+        ParseReport parsed = parser.apply(first).parse(xlsx, cache);
+        ParseReport replayed = parser.apply(second).parse(xlsx, cache);
+        assertTrue(replayed.isFromCache());
+        assertEquals(List.of(1.0, 2.0), second.stream().map(dto -> dto.weight.value).collect(Collectors.toList()));
+        assertEquals(parsed.getTitleRows().get(0).asMap(), replayed.getTitleRows().get(0).asMap());
+        assertSame(index, replayed.getTitleRows().get(0).getIndex());
+
+        Function<List<Object[]>, XLSTableParser> untyped = result -> XLSTableParser.fromSheet("report")
+                .findRowTitled(index, "Alpha")
+                .thenSkip(1)
+                .endIfCell(0).isNotNumeric()
+                .getEntityFrom(() -> new Object[1])
+                .thenForColumn(0, (dto, cell) -> dto[0] = new Weight(cell.getNumericCellValue()))
+                .thenPutInto(result::add)
+                .withPlanVersion("v2");
+        untyped.apply(new ArrayList<>()).parse(xlsx, cache);
+        assertEquals(2, cache.size());
+        List<Object[]> untypedReplayed = new ArrayList<>();
+        assertTrue(untyped.apply(untypedReplayed).parse(xlsx, cache).isFromCache());
+        assertEquals(List.of(1.0, 2.0), untypedReplayed.stream().map(dto -> ((Weight) dto[0]).value).collect(Collectors.toList()));
+        assertEquals(2, cache.getHits());
+
+        Function<List<Object[]>, XLSTableParser> platform = result -> XLSTableParser.fromSheet("report")
+                .findRowTitled(index, "Alpha")
+                .thenSkip(1)
+                .endIfCell(0).isNotNumeric()
+                .getEntityFrom(() -> new Object[1])
+                .thenForColumn(0, (dto, cell) -> dto[0] = new AtomicInteger((int) cell.getNumericCellValue()))
+                .thenPutInto(result::add)
+                .withPlanVersion("v3");
+        List<Object[]> uncached = new ArrayList<>();
+        assertFalse(platform.apply(new ArrayList<>()).parse(xlsx, cache).isFromCache());
+        assertFalse(platform.apply(uncached).parse(xlsx, cache).isFromCache());
+        assertEquals(2, uncached.size());
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    void namedColumnsFollowHeaderOrder() throws IOException {
+        try (XSSFWorkbook book = new XSSFWorkbook()) {
+            for (String[] headers : new String[][]{{"Name", "Unit  price, USD"}, {"unit price usd", " NAME "}}) {
+                Sheet sheet = book.createSheet(String.join("|", headers));
+                Row header = sheet.createRow(0);
+                header.createCell(0).setCellValue(headers[0]);
+                header.createCell(1).setCellValue(headers[1]);
+                int name = headers[0].trim().equalsIgnoreCase("name") ? 0 : 1;
+                for (int i = 1; i <= 2; i++) {
+                    Row row = sheet.createRow(i);
+                    row.createCell(name).setCellValue("item " + i);
+                    row.createCell(1 - name).setCellValue(i * 1.5);
+                }
+            }
+
+            for (int sheet = 0; sheet < 2; sheet++) {
+                List<Map<String, String>> result = new ArrayList<>();
+                XLSTableParser.fromSheet(sheet)
+                        .findRowWhereCell(0).isString()
+                        .thenSkip(1)
+                        .endIfCell(0).isNull()
+                        .getEntityFrom(() -> new LinkedHashMap<String, String>())
+                        .thenForColumnNamedStringified("name", HeaderMatching.IGNORE_CASE, (dto, s) -> dto.put("name", s))
+                        .thenForColumnNamed("Unit price USD", HeaderMatching.NORMALIZED, (dto, cell) -> dto.put("price", Double.toString(cell.getNumericCellValue())))
+                        .thenPutInto(result)
+                        .parse(book);
+                assertEquals(List.of(Map.of("name", "item 1", "price", "1.5"), Map.of("name", "item 2", "price", "3.0")), result);
+            }
+        }
+    }
+
+    @Test
+    void singlePassMatchesSequentialTables() throws IOException, URISyntaxException {
+        Path xlsx = Path.of(getClass().getResource("/test.xlsx").toURI());
+        List<List<Map<String, String>>> sequential = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        List<List<Map<String, String>>> fused = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        ParseReport sequentialReport = segmentedParser(sequential).parse(xlsx);
+        ParseReport fusedReport = segmentedParser(fused).inSinglePass().parse(xlsx);
+
+        assertFalse(sequential.get(1).isEmpty());
+        assertFalse(sequential.get(2).isEmpty());
+        assertEquals(sequential, fused);
+        for (int i = 0; i < 3; i++) {
+            TableReport expected = sequentialReport.getTables().get(i);
+            TableReport actual = fusedReport.getTables().get(i);
+            assertEquals(expected.getStartRow(), actual.getStartRow());
+            assertEquals(expected.getRowsBeforeStart(), actual.getRowsBeforeStart());
+            assertEquals(expected.getRowsEmitted(), actual.getRowsEmitted());
+        }
+    }
+
+    @Test
+    void singlePassKeepsSequentialOrderForSharedConsumer() throws IOException {
+        try (XSSFWorkbook book = new XSSFWorkbook()) {
+            Sheet sheet = book.createSheet("data");
+            sheet.createRow(0).createCell(0).setCellValue("title");
+            for (int i = 1; i <= 9; i++) sheet.createRow(i).createCell(0).setCellValue(i);
+            List<String> shared = new ArrayList<>();
+            Function<String, XLSTableParser.EntityFillerNumberChooser<StringBuilder>> table = name -> XLSTableParser.fromSheet("data")
+                    .findRowWhereCell(0).isNumeric()
+                    .noSkip()
+                    .endIfCell(0).isNull()
+                    .getEntityFrom(() -> new StringBuilder(name))
+                    .thenForColumnStringified(0, StringBuilder::append);
+            XLSTableParser parser = table.apply("A:")
+                    .thenPutInto(dto -> shared.add(dto.toString()))
+                    .thenRestartSameSheet()
+                    .findRowWhereCell(0).stringValueEquals("title")
+                    .thenSkip(1)
+                    .endIfCell(0).isNull()
+                    .getEntityFrom(() -> new StringBuilder("B:"))
+                    .thenForColumnStringified(0, StringBuilder::append)
+                    .thenPutInto(dto -> shared.add(dto.toString()));
+
+            parser.parse(book);
+            List<String> sequential = new ArrayList<>(shared);
+            shared.clear();
+            parser.inSinglePass().parse(book);
+
+            assertEquals(18, sequential.size());
+            assertEquals("B:1", sequential.get(9));
+            assertEquals(sequential, shared);
+        }
+    }
+
+    @Test
+    void startRowCacheSkipsSearchForSameTemplate() throws IOException, URISyntaxException {
+        Path xlsx = Path.of(getClass().getResource("/test.xlsx").toURI());
+        List<List<Map<String, String>>> result = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        StartRowCache cache = new StartRowCache();
+        XLSTableParser parser = segmentedParser(result).withStartRowCache(cache);
+
+        ParseReport first = parser.parse(xlsx);
+        assertEquals(0, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        List<Integer> sizes = result.stream().map(List::size).collect(Collectors.toList());
+        ParseReport second = parser.parse(xlsx);
+        assertEquals(3, cache.getHits());
+
+        for (int i = 0; i < 3; i++) {
+            List<Map<String, String>> table = result.get(i);
+            int size = sizes.get(i);
+            assertEquals(table.subList(0, size), table.subList(size, table.size()));
+            assertEquals(first.getTables().get(i).getRowsEmitted(), second.getTables().get(i).getRowsEmitted());
+        }
+    }
+
+    @Test
+    void startRowCacheKeepsOnlyRecentHints() throws IOException, URISyntaxException {
+        Path xlsx = Path.of(getClass().getResource("/test.xlsx").toURI());
+        StartRowCache cache = new StartRowCache(3);
+        assertThrows(IllegalArgumentException.class, () -> new StartRowCache(0));
+        for (int i = 0; i < 5; i++) {
+            segmentedParser(List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>())).withStartRowCache(cache).parse(xlsx);
+            assertEquals(3, cache.size());
+        }
+        assertEquals(0, cache.getHits());
+
+        XLSTableParser parser = segmentedParser(List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>())).withStartRowCache(cache);
+        parser.parse(xlsx);
+        parser.parse(xlsx);
+        assertEquals(3, cache.getHits());
+    }
+
+    @Test
+    void hintedStartRowIsTestedOnce() throws IOException {
+        try (XSSFWorkbook book = new XSSFWorkbook()) {
+            Sheet sheet = book.createSheet("hinted");
+            for (int i = 0; i < 5; i++) sheet.createRow(i).createCell(0).setCellValue("note " + i);
+            sheet.createRow(5).createCell(0).setCellValue("start");
+            for (int i = 6; i < 9; i++) sheet.createRow(i).createCell(0).setCellValue(i);
+            List<Integer> tested = new ArrayList<>();
+            List<Double> result = new ArrayList<>();
+            XLSTableParser parser = XLSTableParser.fromSheet("hinted")
+                    .findRowThat(row -> {
+                        tested.add(row.getRowNum());
+                        return row.getCell(0).getCellType() == CellType.STRING && row.getCell(0).getStringCellValue().equals("start");
+                    })
+                    .thenSkip(1)
+                    .endIfCell(0).isNull()
+                    .getEntityFrom(() -> new double[1])
+                    .thenForColumn(0, (dto, cell) -> dto[0] = cell.getNumericCellValue())
+                    .thenPutInto(dto -> result.add(dto[0]))
+                    .withStartRowCache(new StartRowCache());
+
+            parser.parse(book);
+            assertEquals(List.of(0, 1, 2, 3, 4, 5), tested);
+            tested.clear();
+            ParseReport hinted = parser.parse(book);
+            assertEquals(List.of(5), tested);
+            assertEquals(0, hinted.getTables().get(0).getRowsBeforeStart());
+            assertTrue(hinted.getTables().get(0).getPredicateNanos() > 0);
+            assertEquals(List.of(6.0, 7.0, 8.0, 6.0, 7.0, 8.0), result);
+        }
+    }
+
+    @Test
+    void unorderedParallelStopsFillersAfterFailure() throws IOException, InterruptedException {
+        try (XSSFWorkbook book = new XSSFWorkbook()) {
+            Sheet sheet = book.createSheet("rows");
+            for (int i = 0; i < 5000; i++) sheet.createRow(i).createCell(0).setCellValue(i);
+            AtomicInteger calls = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            XLSTableParser parser = XLSTableParser.fromSheet("rows")
+                    .findRowWhereCell(0).isNumeric()
+                    .noSkip()
+                    .endIfCell(0).isNull()
+                    .getEntityFrom(() -> new int[1])
+                    .thenForColumn(0, (dto, cell) -> {
+                        calls.incrementAndGet();
+                        if (cell.getNumericCellValue() == 0) throw new IllegalStateException("bad row");
+                        Thread.sleep(1);
+                    })
+                    .thenPutInto(dto -> {})
+                    .inParallel(pool, false);
+
+            try {
+                assertThrows(RowParseException.class, () -> parser.parse(book));
+                int afterFailure = calls.get();
+                Thread.sleep(100);
+                assertEquals(afterFailure, calls.get());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"dom", "xlsx", "xls"})
+    void backendsAgreeOnSheetNamesAndRowRange(String backend, @TempDir Path dir) throws IOException, InvalidFormatException {
+        Path longer = writeBook(dir, "longer", backend, sheet -> {
+            for (int i = 0; i < 5; i++) sheet.createRow(i).createCell(0).setCellValue("text");
+            for (int i = 5; i < 7; i++) sheet.createRow(i).createCell(0).setCellValue(i);
+            sheet.createRow(7).setHeightInPoints(30);
+            sheet.createRow(8).createCell(0).setCellValue(8);
+        });
+        Path shorter = writeBook(dir, "shorter", backend, sheet -> {
+            for (int i = 0; i < 2; i++) sheet.createRow(i).createCell(0).setCellValue(i);
+        });
+        List<Integer> result = new ArrayList<>();
+        StartRowCache cache = new StartRowCache();
+        XLSTableParser parser = XLSTableParser.fromSheet("DATA")
+                .findRowWhereCell(0).isNumeric()
+                .noSkip()
+                .endIfCell(0).isNull()
+                .getEntityFrom(() -> new int[1])
+                .thenForColumn(0, (dto, cell) -> dto[0] = (int) cell.getNumericCellValue())
+                .thenPutInto(dto -> result.add(dto[0]))
+                .withStartRowCache(cache);
+
+        parseWith(backend, parser, longer);
+        assertEquals(List.of(5, 6), result);
+        result.clear();
+        ParseReport report = parseWith(backend, parser, shorter);
+        assertEquals(List.of(0, 1), result);
+        assertEquals("Data", report.getTables().get(0).getSheetName());
+        assertEquals(2, cache.getMisses());
+    }
+
+    private static Path writeBook(Path dir, String name, String backend, Consumer<Sheet> filler) throws IOException {
+        Path file = dir.resolve(name + (backend.equals("xls") ? ".xls" : ".xlsx"));
+        try (Workbook book = backend.equals("xls") ? new HSSFWorkbook() : new XSSFWorkbook();
+             OutputStream out = Files.newOutputStream(file)) {
+            filler.accept(book.createSheet("Data"));
+            book.write(out);
+        }
+        return file;
+    }
+
+    private static ParseReport parseWith(String backend, XLSTableParser parser, Path file) throws IOException, InvalidFormatException {
+        if (!backend.equals("dom")) return parser.parse(file);
+        try (XSSFWorkbook book = new XSSFWorkbook(file.toFile())) {
+            return parser.parse(book);
+        }
+    }
+
+    private static XLSTableParser segmentedParser(List<List<Map<String, String>>> result) {
+        return XLSTableParser.fromSheet(0)
+                .findRowWhereCell(0).isString().and().stringValueContains("title 1")
+                .thenSkip(1)
+                .endIfCell(0).isNull().or().isNotNumeric()
+                .getEntityFrom(() -> new LinkedHashMap<String, String>())
+                .thenForNextColumnStringified((dto, s) -> dto.put("a", s))
+                .thenPutInto(result.get(0))
+
+                .thenContinueSameSheet()
+                .findRowWhereCell(0).isString().and().stringValueContains("title 1")
+                .thenSkip(1)
+                .endIfCell(2).isNull().or().isEmpty()
+                .getEntityFrom(() -> new LinkedHashMap<String, String>())
+                .thenForColumnStringified(0, (dto, s) -> dto.put("b", s))
+                .thenPutInto(result.get(1))
+
+                .thenRestartSameSheet()
+                .findRowWhereCell(0).isString().and().stringValueContains("title 3")
+                .thenSkip(1)
+                .endIfCell(0).isNull().or().isNotNumeric()
+                .getEntityFrom(() -> new LinkedHashMap<String, String>())
+                .thenForColumnStringified(CellCodes.FIRST, (dto, s) -> dto.put("c", s))
+                .thenPutInto(result.get(2));
+    }
+
+    private static XLSTableParser numberedRowsParser(List<String> result) {
+        return XLSTableParser.fromSheet("data")
+                .findRowWhereCell(0).stringValueEquals("title")
+                .thenSkip(1)
+                .endIfCell(0).isNotNumeric()
+                .getEntityFrom(StringBuilder::new)
+                .thenForColumnStringified(0, StringBuilder::append)
+                .thenForColumnStringified(1, (dto, s) -> dto.append(':').append(s))
+                .thenPutInto(dto -> result.add(dto.toString()));
+    }
+
+    private static XLSTableParser xlsParserInto(List<Map<String, String>> result) {
+        return XLSTableParser.fromSheet(0)
+                .findRowWhereCell(0).isString().and().stringValueContains("title 1")
+                .thenSkip(1)
+                .endIfCell(0).isNull().or().isEmpty().or().isNotNumeric()
+                .getEntityFrom(() -> new LinkedHashMap<String, String>())
+
+                .thenForNextColumnStringified((dto, s) -> dto.put(s, s))
+                .thenForNextColumn((dto, cell) -> dto.put(cell.getRawValue(), Double.toString(cell.getNumericCellValue())))
+                .thenPutInto(result)
+
+                .thenContinueSameSheet()
+                .findRowWhereCell(0).isString().and().stringValueContains("title 1")
+                .thenSkip(1)
+                .endIfCell(2).isNull().or().isEmpty()
+                .getEntityFrom(() -> new LinkedHashMap<String, String>())
+
+                .thenForColumn(CellCodes.FIRST, (dto, cell) -> dto.put(cell.getStringCellValue(), Integer.toString(cell.getColumnIndex())))
+                .thenForColumnStringified(2, (dto, s) -> dto.put("c", s))
+                .thenPutInto(result);
+    }
+
+    private static XLSTableParser parserInto(List<Map<String, String>> result) {
+        return XLSTableParser.fromSheet(0)
+                .findRowThat(row -> row.getCell(row.getFirstCellNum()).getStringCellValue().contains("title 1"))
+                .thenSkip(1)
+                .endIfCell(0).isNull().or().isEmpty().or().isNotNumeric()
+                .getEntityFrom(() -> new LinkedHashMap<String, String>())
+
+                .thenForNextColumnStringified((dto, s) -> dto.put(s, s))
+                .thenForNextColumn((dto, cell) -> dto.put(cell.getRawValue(), Integer.toString(Double.valueOf(cell.getNumericCellValue()).intValue())))
+                .thenPutInto(result)
+
+                .thenContinueSameSheet()
+                .findRowWhereCell(0).isNotNull().and().isNotEmpty().and().stringValueContains("title 1")
+                .thenSkip(1)
+                .endIfCell(2).isNull().or().isEmpty()
+                .getEntityFrom(() -> new LinkedHashMap<String, String>())
+
+                .thenForColumnStringified(0, (dto, s) -> dto.put(s, s))
+                .thenForColumn(1, (dto, cell) -> dto.put(cell.getRawValue(), cell.getStringCellValue()))
+                .thenPutInto(result)
+
+                .thenRestartSameSheet()
+                .findRowWhereCell(0).isNotNull().and().isNotEmpty().and().stringValueContains("title 1")
+                .noSkip()
+                .endIfCell(0).isNull().or().isEmpty().or().isNotString()
+                .getEntityFrom(() -> new LinkedHashMap<String, String>())
+
+                .thenForColumn(0, (dto, cell) -> dto.put(cell.getStringCellValue(), cell.getStringCellValue()))
+                .thenPutInto(result);
+    }
+
+    public static class Weighed implements Serializable {
+        private Weight weight;
+    }
+
+    public static class Weight implements Serializable {
+        private final double value;
+
+        Weight(double value) {
+            this.value = value;
+        }
+    }
+
+    public static class DerivedItem extends BaseItem {
+        @Column(header = "Weight")
+        private double weight;
+    }
+
+    public static class Item {
+        @Column(header = "Name")
+        private String name;
+        @Column(header = "Weight")
+        double weight;
+        @Column(index = 2)
+        private int quantity;
+        @Column(header = "Price")
+        private BigDecimal price;
+        @Column(header = "Date")
+        private LocalDate date;
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+
+        public void setPrice(BigDecimal price) {
+            this.price = price;
+        }
+
+        public void setDate(LocalDate date) {
+            this.date = date;
+        }
+    }
+}